@@ -16,6 +16,8 @@ public class ChessClient {
     private ChessGameplay gameplay;
     private final String serverUrl;
     private State state = State.SIGNEDOUT;
+    private GameQuery lastQuery;
+    private Integer nextCursor;
 
     public ChessClient(String serverUrl) {
         server = new ServerFacade(serverUrl);
@@ -36,7 +38,8 @@ public class ChessClient {
                 case "login" -> login(params);
                 case "register" -> register(params);
                 case "create" -> createGame(params);
-                case "list" -> listGames();
+                case "list" -> listGames(params);
+                case "more" -> moreGames();
                 case "join" -> joinGame(params);
                 case "observe" -> observeGame(params);
                 case "logout" -> logout();
@@ -86,9 +89,25 @@ public class ChessClient {
         throw new ResponseException(400, "Expected: <NAME>");
     }
 
-    public String listGames() throws ResponseException {
+    public String listGames(String... params) throws ResponseException {
         assertSignedIn();
-        var games = server.listGames(authData.authToken());
+        String filter = params.length >= 1 ? params[0] : "";
+        lastQuery = new GameQuery(null, GameQuery.DEFAULT_LIMIT, filter.equals("open"),
+                filter.equals("mine") ? loggedInUser : null, null);
+        return showGames(server.listGames(authData.authToken(), lastQuery));
+    }
+
+    public String moreGames() throws ResponseException {
+        assertSignedIn();
+        if (lastQuery == null || nextCursor == null) {
+            return "No more games";
+        }
+        lastQuery = lastQuery.after(nextCursor);
+        return showGames(server.listGames(authData.authToken(), lastQuery));
+    }
+
+    private String showGames(GameList games) {
+        nextCursor = games.nextCursor();
         var result = new StringBuilder();
 
         if (games.games().isEmpty()) {
@@ -104,6 +123,9 @@ public class ChessClient {
             result.append(String.format("   White Username: %s", whiteUsername)).append('\n');
             result.append(String.format("   Black Username: %s", blackUsername)).append('\n');
         }
+        if (nextCursor != null) {
+            result.append("Type 'more' for the next page").append('\n');
+        }
         return result.toString();
     }
 
@@ -173,7 +195,8 @@ public class ChessClient {
                 SET_TEXT_COLOR_BLUE + "help" + SET_TEXT_COLOR_WHITE + " - with possible commands\n";
         }
         return SET_TEXT_COLOR_BLUE + "create <NAME>" + SET_TEXT_COLOR_WHITE + " - a game\n" +
-            SET_TEXT_COLOR_BLUE + "list" + SET_TEXT_COLOR_WHITE + " - games\n" +
+            SET_TEXT_COLOR_BLUE + "list [open|mine]" + SET_TEXT_COLOR_WHITE + " - games, all or just those with a free seat or yours\n" +
+            SET_TEXT_COLOR_BLUE + "more" + SET_TEXT_COLOR_WHITE + " - games after the last page listed\n" +
             SET_TEXT_COLOR_BLUE + "join <ID> [WHITE|BLACK|<empty>]" + SET_TEXT_COLOR_WHITE + " - a game\n" +
             SET_TEXT_COLOR_BLUE + "observe <ID>" + SET_TEXT_COLOR_WHITE + " - a game\n" +
             SET_TEXT_COLOR_BLUE + "logout" + SET_TEXT_COLOR_WHITE + " - when you are done\n" +
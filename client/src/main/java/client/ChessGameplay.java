@@ -3,7 +3,6 @@ package client;
 import chess.*;
 import client.webSocket.NotificationHandler;
 import client.webSocket.WebSocketFacade;
-import com.google.gson.Gson;
 import exception.ResponseException;
 import model.AuthData;
 import webSocketMessages.serverMessages.LoadGame;
@@ -243,25 +242,23 @@ public class ChessGameplay implements NotificationHandler {
     }
 
     @Override
-    public void notify(String message) {
-        ServerMessage serverMessage = new Gson().fromJson(message, ServerMessage.class);
-        ServerMessage.ServerMessageType messageType = serverMessage.getServerMessageType();
-        switch (messageType) {
+    public void notify(ServerMessage serverMessage) {
+        switch (serverMessage.getServerMessageType()) {
             case LOAD_GAME -> {
-                LoadGame loadGame = new Gson().fromJson(message, LoadGame.class);
+                LoadGame loadGame = (LoadGame) serverMessage;
                 setGameState(loadGame.getGame());
                 System.out.println();
                 System.out.println(boardLayout(playerColor, false, null));
                 printPrompt();
             }
             case ERROR -> {
-                Error error = new Gson().fromJson(message, Error.class);
+                Error error = (Error) serverMessage;
                 System.out.println();
                 System.out.println(SET_TEXT_COLOR_RED + error.getErrorMessage() + SET_TEXT_COLOR_WHITE);
                 printPrompt();
             }
             case NOTIFICATION -> {
-                Notification notification = new Gson().fromJson(message, Notification.class);
+                Notification notification = (Notification) serverMessage;
                 System.out.println();
                 System.out.println(SET_TEXT_COLOR_GREEN + notification.getMessage() + SET_TEXT_COLOR_WHITE);
                 printPrompt();
@@ -1,5 +1,7 @@
 package client.webSocket;
 
+import webSocketMessages.serverMessages.ServerMessage;
+
 public interface NotificationHandler {
-    void notify(String message);
+    void notify(ServerMessage serverMessage);
 }
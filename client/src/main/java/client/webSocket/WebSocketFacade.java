@@ -2,49 +2,157 @@ package client.webSocket;
 
 import chess.ChessGame;
 import chess.ChessMove;
-import com.google.gson.Gson;
 import exception.ResponseException;
 import model.AuthData;
+import serialization.Serializer;
+import webSocketMessages.BinaryProtocol;
+import webSocketMessages.FrameEnvelope;
+import webSocketMessages.serverMessages.ServerMessage;
 import webSocketMessages.userCommands.*;
 
 import javax.websocket.*;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 
 public class WebSocketFacade extends Endpoint {
+    private static final int MAX_RESUME_ATTEMPTS = 5;
+
     Session session;
     NotificationHandler notificationHandler;
+    private final URI socketURI;
+    private final boolean binary;
+    private volatile boolean closing = false;
+    private volatile long lastSequence = 0;
+    private Integer gameID = null;
+    private AuthData authData = null;
 
     public WebSocketFacade(String url, NotificationHandler notificationHandler) throws ResponseException {
+        this(url, notificationHandler, Boolean.getBoolean("chess.binaryProtocol"));
+    }
+
+    /**
+     * @param binary whether to use the compact binary frame format instead of JSON
+     */
+    public WebSocketFacade(String url, NotificationHandler notificationHandler, boolean binary) throws ResponseException {
+        this(url, notificationHandler, binary, !Boolean.getBoolean("chess.noCompression"));
+    }
+
+    /**
+     * @param compress whether to ask the server to deflate large messages and to batch
+     * the messages from one move into a single frame
+     */
+    public WebSocketFacade(String url, NotificationHandler notificationHandler, boolean binary, boolean compress) throws ResponseException {
         try {
             url = url.replace("http", "ws");
-            URI socketURI = new URI(url + "/connect");
+            this.binary = binary;
+            var query = new StringBuilder();
+            if (binary) {
+                query.append("&protocol=").append(BinaryProtocol.NAME);
+            }
+            if (compress) {
+                query.append("&").append(FrameEnvelope.DEFLATE_PARAM).append("=true");
+                query.append("&").append(FrameEnvelope.BATCH_PARAM).append("=true");
+            }
+            socketURI = new URI(url + "/connect" + (query.isEmpty() ? "" : "?" + query.substring(1)));
             this.notificationHandler = notificationHandler;
+            connect();
+        } catch (DeploymentException | IOException | URISyntaxException ex) {
+            throw new ResponseException(500, ex.getMessage());
+        }
+    }
+
+    private void connect() throws DeploymentException, IOException {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        this.session = container.connectToServer(this, socketURI);
 
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            this.session = container.connectToServer(this, socketURI);
+        this.session.addMessageHandler(new MessageHandler.Whole<String>() {
+            @Override
+            public void onMessage(String message) {
+                deliver(decode(message));
+            }
+        });
 
-            this.session.addMessageHandler(new MessageHandler.Whole<String>() {
-                @Override
-                public void onMessage(String message) {
-                    notificationHandler.notify(message);
+        this.session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+            @Override
+            public void onMessage(ByteBuffer message) {
+                try {
+                    byte[] payload = new byte[message.remaining()];
+                    message.get(payload);
+                    if (!FrameEnvelope.isEnvelope(payload, 0, payload.length)) {
+                        deliver(BinaryProtocol.decodeServerMessage(payload, 0, payload.length));
+                        return;
+                    }
+                    for (var entry : FrameEnvelope.decode(payload, 0, payload.length)) {
+                        deliver(entry.text() ? decode(entry.asText()) :
+                                BinaryProtocol.decodeServerMessage(entry.payload(), 0, entry.payload().length));
+                    }
+                } catch (IOException ignored) {
                 }
-            });
-        } catch (DeploymentException | IOException | URISyntaxException ex) {
-            throw new ResponseException(500, ex.getMessage());
+            }
+        });
+    }
+
+    private void deliver(ServerMessage serverMessage) {
+        lastSequence = Math.max(lastSequence, serverMessage.getSequence());
+        notificationHandler.notify(serverMessage);
+    }
+
+    private void send(UserGameCommand command) throws IOException {
+        if (binary) {
+            this.session.getBasicRemote().sendBinary(ByteBuffer.wrap(BinaryProtocol.encodeCommand(command)));
+        } else {
+            this.session.getBasicRemote().sendText(Serializer.toJson(command));
         }
     }
 
+    private static ServerMessage decode(String message) {
+        return Serializer.fromJson(message, ServerMessage.class);
+    }
+
     @Override
     public void onOpen(Session session, EndpointConfig endPointConfig) {
     }
 
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        boolean dropped = closeReason.getCloseCode() != CloseReason.CloseCodes.NORMAL_CLOSURE;
+        if (dropped && !closing && gameID != null) {
+            var resumeThread = new Thread(this::resume, "websocket-resume");
+            resumeThread.setDaemon(true);
+            resumeThread.start();
+        }
+    }
+
+    /**
+     * Reconnects after the connection drops and asks the server to replay only the
+     * game events this client has not seen yet.
+     */
+    private void resume() {
+        for (int attempt = 1; attempt <= MAX_RESUME_ATTEMPTS && !closing; attempt++) {
+            try {
+                Thread.sleep(250L * attempt);
+                connect();
+                var resumeCommand = new Resume(authData, gameID, lastSequence);
+                resumeCommand.setCommandType(UserGameCommand.CommandType.RESUME);
+                send(resumeCommand);
+                return;
+            } catch (DeploymentException | IOException ignored) {
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     public void joinGame(int gameID, ChessGame.TeamColor playerColor, AuthData authData) throws ResponseException {
         try {
             var joinCommand = new JoinPlayer(authData, gameID, playerColor);
             joinCommand.setCommandType(UserGameCommand.CommandType.JOIN_PLAYER);
-            this.session.getBasicRemote().sendText(new Gson().toJson(joinCommand));
+            send(joinCommand);
+            this.gameID = gameID;
+            this.authData = authData;
         } catch (IOException ex) {
             throw new ResponseException(500, ex.getMessage());
         }
@@ -54,7 +162,9 @@ public class WebSocketFacade extends Endpoint {
         try {
             var observeCommand = new JoinObserver(authData, gameID);
             observeCommand.setCommandType(UserGameCommand.CommandType.JOIN_OBSERVER);
-            this.session.getBasicRemote().sendText(new Gson().toJson(observeCommand));
+            send(observeCommand);
+            this.gameID = gameID;
+            this.authData = authData;
         } catch (IOException ex) {
             throw new ResponseException(500, ex.getMessage());
         }
@@ -64,7 +174,7 @@ public class WebSocketFacade extends Endpoint {
         try {
             var moveCommand = new MakeMove(authData, gameID, move);
             moveCommand.setCommandType(UserGameCommand.CommandType.MAKE_MOVE);
-            this.session.getBasicRemote().sendText(new Gson().toJson(moveCommand));
+            send(moveCommand);
         } catch (IOException ex) {
             throw new ResponseException(500, ex.getMessage());
         }
@@ -74,7 +184,8 @@ public class WebSocketFacade extends Endpoint {
         try {
             var leaveCommand = new Leave(authData, gameID);
             leaveCommand.setCommandType(UserGameCommand.CommandType.LEAVE);
-            this.session.getBasicRemote().sendText(new Gson().toJson(leaveCommand));
+            closing = true;
+            send(leaveCommand);
             this.session.close();
         } catch (IOException ex) {
             throw new ResponseException(500, ex.getMessage());
@@ -85,7 +196,7 @@ public class WebSocketFacade extends Endpoint {
         try {
             var resignCommand = new Resign(authData, gameID);
             resignCommand.setCommandType(UserGameCommand.CommandType.RESIGN);
-            this.session.getBasicRemote().sendText(new Gson().toJson(resignCommand));
+            send(resignCommand);
         } catch (IOException ex) {
             throw new ResponseException(500, ex.getMessage());
         }
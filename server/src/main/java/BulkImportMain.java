@@ -0,0 +1,265 @@
+import chess.*;
+import com.google.gson.JsonParseException;
+import dataAccess.DataAccess;
+import dataAccess.GameWrite;
+import model.GameData;
+import model.UserData;
+import serialization.Serializer;
+import server.Server;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads users and games into the configured store in bulk, for seeding test
+ * environments. Reads JSON lines such as
+ * <pre>
+ * {"type":"user","username":"alice","password":"secret","email":"alice@mail.com"}
+ * {"type":"game","gameName":"first","whiteUsername":"alice","blackUsername":"bob","moves":["e2e4","e7e5"]}
+ * </pre>
+ * or generates numbered users and games with --generate. Lines missing a required
+ * field, and users whose username is already taken, are skipped. Passwords are hashed on
+ * every core. With --reuse-hashes, users that share a password share one hash, which
+ * is much faster but only suitable for test data.
+ */
+public class BulkImportMain {
+    private static final int USER_CHUNK = 5000;
+    private static final int GAME_CHUNK = 1000;
+
+    private record ImportRecord(String type, String username, String password, String email,
+                                String gameName, String whiteUsername, String blackUsername, List<String> moves) {}
+
+    private record PlayedGame(GameData gameData, List<ChessMove> moves) {}
+
+    private final DataAccess dataAccess;
+    private final boolean reuseHashes;
+    private final ConcurrentHashMap<String, String> hashes = new ConcurrentHashMap<>();
+    // hashPassword blocks its caller and refuses work once PasswordHasher's queue is
+    // full, so these threads are the callers: one per hashing thread keeps every core
+    // busy without ever overflowing that queue
+    private final ExecutorService hashers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final List<UserData> pendingUsers = new ArrayList<>();
+    private final List<PlayedGame> pendingGames = new ArrayList<>();
+    private final Set<String> usernames = new HashSet<>();
+    private long users;
+    private long games;
+
+    private BulkImportMain(DataAccess dataAccess, boolean reuseHashes) {
+        this.dataAccess = dataAccess;
+        this.reuseHashes = reuseHashes;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: BulkImportMain <file.jsonl> [--reuse-hashes]");
+            System.out.println("       BulkImportMain --generate <users> <games>");
+            return;
+        }
+
+        DataAccess dataAccess = null;
+        BulkImportMain importer = null;
+        try {
+            dataAccess = Server.createDataAccess();
+            long started = System.nanoTime();
+            if (args[0].equals("--generate") && args.length >= 3) {
+                importer = new BulkImportMain(dataAccess, true);
+                importer.generate(Long.parseLong(args[1]), Long.parseLong(args[2]));
+            } else {
+                importer = new BulkImportMain(dataAccess, Arrays.asList(args).contains("--reuse-hashes"));
+                importer.importFile(Path.of(args[0]));
+            }
+            System.out.printf("Imported %d users and %d games in %d seconds%n", importer.users, importer.games,
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+        } catch (Throwable ex) {
+            System.out.printf("Unable to import: %s%n", ex.getMessage());
+        } finally {
+            if (importer != null) {
+                importer.hashers.shutdownNow();
+            }
+            if (dataAccess != null) {
+                try {
+                    dataAccess.close();
+                } catch (Exception ex) {
+                    System.out.printf("Unable to close data access: %s%n", ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private void importFile(Path file) throws Exception {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    var record = Serializer.fromJson(line, ImportRecord.class);
+                    switch (String.valueOf(record.type())) {
+                        case "user" -> {
+                            require(record.username(), "username");
+                            require(record.password(), "password");
+                            require(record.email(), "email");
+                            if (!usernames.add(record.username())) {
+                                throw new IllegalArgumentException("duplicate username " + record.username());
+                            }
+                            addUser(new UserData(record.username(), record.password(), record.email()));
+                        }
+                        case "game" -> {
+                            require(record.gameName(), "gameName");
+                            addGame(record.gameName(), record.whiteUsername(), record.blackUsername(),
+                                    record.moves() == null ? List.of() : record.moves());
+                        }
+                        default -> throw new IllegalArgumentException("unknown type " + record.type());
+                    }
+                } catch (JsonParseException | IllegalArgumentException | InvalidMoveException ex) {
+                    System.out.printf("Skipping line %d: %s%n", lineNumber, ex.getMessage());
+                }
+            }
+        }
+        flushUsers();
+        flushGames();
+    }
+
+    private static void require(String value, String field) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("missing " + field);
+        }
+    }
+
+    private void generate(long userCount, long gameCount) throws Exception {
+        for (long i = 1; i <= userCount; i++) {
+            addUser(new UserData("user" + i, "password", "user" + i + "@mail.com"));
+        }
+        flushUsers();
+        for (long i = 1; i <= gameCount; i++) {
+            String white = userCount > 0 ? "user" + ((2 * i - 2) % userCount + 1) : null;
+            String black = userCount > 1 ? "user" + ((2 * i - 1) % userCount + 1) : null;
+            addGame("game" + i, white, black, List.of());
+        }
+        flushGames();
+    }
+
+    private void addUser(UserData user) throws Exception {
+        pendingUsers.add(user);
+        if (pendingUsers.size() >= USER_CHUNK) {
+            flushUsers();
+        }
+    }
+
+    private void addGame(String gameName, String whiteUsername, String blackUsername, List<String> moves) throws Exception {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        var played = new ArrayList<ChessMove>(moves.size());
+        for (var notation : moves) {
+            var move = parseMove(notation);
+            game.makeMove(move);
+            played.add(move);
+        }
+
+        pendingGames.add(new PlayedGame(new GameData(0, whiteUsername, blackUsername, gameName, game), played));
+        if (pendingGames.size() >= GAME_CHUNK) {
+            flushGames();
+        }
+    }
+
+    private void flushUsers() throws Exception {
+        if (pendingUsers.isEmpty()) {
+            return;
+        }
+
+        var hashing = new ArrayList<Future<UserData>>(pendingUsers.size());
+        for (var user : pendingUsers) {
+            // One existing username would roll back the whole batch
+            if (dataAccess.getUser(user.username()) != null) {
+                System.out.printf("Skipping user %s: username already exists%n", user.username());
+                continue;
+            }
+            hashing.add(hashers.submit(() -> new UserData(user.username(), hash(user.password()), user.email())));
+        }
+        var hashed = new ArrayList<UserData>(hashing.size());
+        for (var result : hashing) {
+            hashed.add(result.get());
+        }
+
+        if (!hashed.isEmpty()) {
+            dataAccess.createUsers(hashed);
+        }
+        users += hashed.size();
+        pendingUsers.clear();
+        System.out.printf("%d users%n", users);
+    }
+
+    private String hash(String password) throws Exception {
+        if (!reuseHashes) {
+            return dataAccess.hashPassword(password);
+        }
+        String hash = hashes.get(password);
+        if (hash == null) {
+            hash = dataAccess.hashPassword(password);
+            String existing = hashes.putIfAbsent(password, hash);
+            hash = existing != null ? existing : hash;
+        }
+        return hash;
+    }
+
+    private void flushGames() throws Exception {
+        if (pendingGames.isEmpty()) {
+            return;
+        }
+
+        var names = new ArrayList<String>(pendingGames.size());
+        for (var game : pendingGames) {
+            names.add(game.gameData().getGameName());
+        }
+        var gameIDs = dataAccess.createGameIDs(names);
+
+        var writes = new ArrayList<GameWrite>(pendingGames.size());
+        for (int i = 0; i < pendingGames.size(); i++) {
+            GameData gameData = pendingGames.get(i).gameData();
+            writes.add(new GameWrite(new GameData(gameIDs.get(i), gameData.getWhiteUsername(), gameData.getBlackUsername(),
+                    gameData.getGameName(), gameData.getGame()), pendingGames.get(i).moves()));
+        }
+
+        dataAccess.createGames(writes);
+        games += writes.size();
+        pendingGames.clear();
+        System.out.printf("%d games%n", games);
+    }
+
+    /**
+     * Parses coordinate notation such as e2e4, or e7e8q for a promotion
+     */
+    private static ChessMove parseMove(String notation) {
+        if (notation == null || notation.length() != 4 && notation.length() != 5) {
+            throw new IllegalArgumentException("bad move " + notation);
+        }
+        ChessPiece.PieceType promotion = null;
+        if (notation.length() == 5) {
+            promotion = switch (Character.toLowerCase(notation.charAt(4))) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                case 'n' -> ChessPiece.PieceType.KNIGHT;
+                default -> throw new IllegalArgumentException("bad promotion in " + notation);
+            };
+        }
+        return new ChessMove(parsePosition(notation, 0), parsePosition(notation, 2), promotion);
+    }
+
+    private static ChessPosition parsePosition(String notation, int index) {
+        int col = Character.toLowerCase(notation.charAt(index)) - 'a' + 1;
+        int row = notation.charAt(index + 1) - '0';
+        if (col < 1 || col > 8 || row < 1 || row > 8) {
+            throw new IllegalArgumentException("bad square in " + notation);
+        }
+        return new ChessPosition(row, col);
+    }
+}
@@ -8,7 +8,9 @@ public class ServerMain {
                 port = Integer.parseInt(args[0]);
             }
 
-            var portNumber = new Server().run(port);
+            var server = new Server();
+            var portNumber = server.run(port);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "server-shutdown"));
             System.out.printf("Server started on port %d%n", portNumber);
         } catch (Throwable ex) {
             System.out.printf("Unable to start server: %s%n", ex.getMessage());
@@ -0,0 +1,40 @@
+package config;
+
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Tunable server settings. Values are read from an optional server.properties
+ * file on the classpath, and any key can be overridden with a JVM system property
+ * of the same name (e.g. -Dws.resumeBufferSize=128).
+ */
+public class ServerConfig {
+    private static final Properties properties = new Properties();
+
+    static {
+        try (InputStream propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("server.properties")) {
+            if (propStream != null) {
+                properties.load(propStream);
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("unable to process server.properties. " + ex.getMessage());
+        }
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return Integer.parseInt(getString(key, Integer.toString(defaultValue)));
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        return Long.parseLong(getString(key, Long.toString(defaultValue)));
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, Boolean.toString(defaultValue)));
+    }
+}
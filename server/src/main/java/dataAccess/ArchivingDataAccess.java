@@ -0,0 +1,63 @@
+package dataAccess;
+
+import exception.ResponseException;
+import model.GameData;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Keeps finished games out of the hot store. archiveFinishedGames copies old finished
+ * games into a GameArchive and only then deletes them from the store below, and
+ * getGameData falls back to the archive for games the store no longer has. Listings
+ * only show games that are still in the store.
+ */
+public class ArchivingDataAccess extends ForwardingDataAccess {
+    private final GameArchive archive;
+
+    public ArchivingDataAccess(DataAccess delegate, GameArchive archive) {
+        super(delegate);
+        this.archive = archive;
+    }
+
+    @Override
+    public GameData getGameData(int gameID) throws DataAccessException, SQLException, ResponseException {
+        GameData gameData = delegate.getGameData(gameID);
+        return gameData != null ? gameData : archive.read(gameID);
+    }
+
+    /**
+     * A crash between archiving and deleting leaves the games in both places. They are
+     * archived again on the next run, and reads of the archive prefer the newest copy.
+     */
+    @Override
+    public int archiveFinishedGames(long finishedBeforeMillis, int batchSize) throws DataAccessException, ResponseException {
+        var games = delegate.listFinishedGames(finishedBeforeMillis, batchSize);
+        if (games.isEmpty()) {
+            return 0;
+        }
+
+        archive.append(games);
+        var gameIDs = new ArrayList<Integer>(games.size());
+        for (var game : games) {
+            gameIDs.add(game.getGameID());
+        }
+        delegate.deleteFinishedGames(gameIDs);
+        return games.size();
+    }
+
+    @Override
+    public void clearGames() throws DataAccessException, ResponseException, SQLException {
+        delegate.clearGames();
+        archive.clear();
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        try {
+            delegate.close();
+        } finally {
+            archive.close();
+        }
+    }
+}
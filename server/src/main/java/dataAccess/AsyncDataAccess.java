@@ -0,0 +1,97 @@
+package dataAccess;
+
+import chess.ChessMove;
+import exception.ResponseException;
+import model.AuthData;
+import model.GameData;
+
+import java.sql.SQLException;
+import java.util.concurrent.*;
+
+/**
+ * Runs DataAccess calls on a database pool of their own and returns futures, so
+ * request threads can start several lookups at once and carry on when they finish
+ * instead of waiting on the database. Calls fail with the same exceptions the
+ * blocking methods throw. When threads and queue are both full, a call fails with a
+ * 503 straight away instead of queueing without bound.
+ */
+public class AsyncDataAccess {
+    /**
+     * One call against the blocking store
+     */
+    public interface Call<T> {
+        T call(DataAccess dataAccess) throws DataAccessException, ResponseException, SQLException, InvalidGameID, UnauthorizedException;
+    }
+
+    private final DataAccess delegate;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncDataAccess(DataAccess delegate, int threads, int queueSize) {
+        this.delegate = delegate;
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                    var thread = new Thread(runnable, "db-async");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        // Threads only exist while there is work, so an idle store holds none
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> CompletableFuture<T> supply(Call<T> call) {
+        var result = new CompletableFuture<T>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(call.call(delegate));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new ResponseException(503, "Server is busy, try again shortly"));
+        }
+        return result;
+    }
+
+    public CompletableFuture<AuthData> getAuth(String authToken) {
+        return supply(dataAccess -> dataAccess.getAuth(authToken));
+    }
+
+    public CompletableFuture<GameData> getGameData(int gameID) {
+        return supply(dataAccess -> dataAccess.getGameData(gameID));
+    }
+
+    public CompletableFuture<Void> updateGame(GameData gameData) {
+        return supply(dataAccess -> {
+            dataAccess.updateGame(gameData);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> recordMove(GameData gameData, ChessMove move) {
+        return supply(dataAccess -> {
+            dataAccess.recordMove(gameData, move);
+            return null;
+        });
+    }
+
+    /**
+     * @return the checked exception a failed future completed with, unwrapped from
+     * the CompletionException that composed stages add
+     */
+    public static Throwable causeOf(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Stops taking calls. Calls already queued still run.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,171 @@
+package dataAccess;
+
+import exception.ResponseException;
+import model.AuthData;
+import model.UserData;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches auth tokens in memory so validating a token doesn't need a database round
+ * trip. A cached token is dropped after ttlMillis no matter how often it is used, or
+ * after idleMillis without use, whichever comes first. Logging out removes the token
+ * right away. When the cache is over maxEntries, the least recently used tokens go.
+ * <p>
+ * Only tokens that exist are cached, so a token created by another server is found on
+ * the first lookup. A token that server deletes can still validate here for up to ttlMillis.
+ */
+public class AuthCacheDataAccess extends ForwardingDataAccess {
+    public record Metrics(long hits, long misses, long evictions, int size) {}
+
+    private static final class Entry {
+        final AuthData auth;
+        final long loadedAt;
+        volatile long lastUsed;
+
+        Entry(AuthData auth, long now) {
+            this.auth = auth;
+            this.loadedAt = now;
+            this.lastUsed = now;
+        }
+    }
+
+    private record Candidate(String token, Entry entry, long lastUsed) {}
+
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long idleMillis;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    public AuthCacheDataAccess(DataAccess delegate, int maxEntries, long ttlMillis, long idleMillis) {
+        super(delegate);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.idleMillis = idleMillis;
+    }
+
+    @Override
+    public AuthData createAuth(UserData userData) throws DataAccessException, ResponseException, SQLException {
+        AuthData auth = delegate.createAuth(userData);
+        cache(auth);
+        return auth;
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException, ResponseException {
+        if (authToken == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(authToken);
+        if (entry != null) {
+            if (!isExpired(entry, now)) {
+                entry.lastUsed = now;
+                hits.increment();
+                return entry.auth;
+            }
+            remove(authToken, entry);
+        }
+
+        misses.increment();
+        long seenInvalidations = invalidations.get();
+        AuthData auth = delegate.getAuth(authToken);
+        if (auth != null) {
+            Entry loaded = cache(auth);
+            // A logout that raced with the lookup may have deleted this token already
+            if (invalidations.get() != seenInvalidations) {
+                cache.remove(authToken, loaded);
+            }
+        }
+        return auth;
+    }
+
+    @Override
+    public void deleteAuth(AuthData auth) throws DataAccessException, ResponseException, SQLException {
+        delegate.deleteAuth(auth);
+        invalidations.incrementAndGet();
+        cache.remove(auth.authToken());
+    }
+
+    @Override
+    public void clearAuthTokens() throws DataAccessException, ResponseException, SQLException {
+        cache.clear();
+        delegate.clearAuthTokens();
+    }
+
+    @Override
+    public void clearUsers() throws DataAccessException, ResponseException, SQLException {
+        cache.clear();
+        delegate.clearUsers();
+    }
+
+    public Metrics getMetrics() {
+        return new Metrics(hits.sum(), misses.sum(), evictions.sum(), cache.size());
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.loadedAt >= ttlMillis || now - entry.lastUsed >= idleMillis;
+    }
+
+    private Entry cache(AuthData auth) {
+        var entry = new Entry(auth, System.currentTimeMillis());
+        cache.put(auth.authToken(), entry);
+        if (cache.size() > maxEntries) {
+            evict();
+        }
+        return entry;
+    }
+
+    /**
+     * Drops expired tokens, then the least recently used ones until the cache is a
+     * tenth below maxEntries, so a full cache isn't scanned on every insert
+     */
+    private void evict() {
+        if (!evictLock.tryLock()) {
+            return;
+        }
+        try {
+            if (cache.size() <= maxEntries) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            var live = new ArrayList<Candidate>(cache.size());
+            for (var entry : cache.entrySet()) {
+                if (isExpired(entry.getValue(), now)) {
+                    remove(entry.getKey(), entry.getValue());
+                } else {
+                    live.add(new Candidate(entry.getKey(), entry.getValue(), entry.getValue().lastUsed));
+                }
+            }
+
+            int target = maxEntries - maxEntries / 10;
+            if (live.size() > target) {
+                live.sort(Comparator.comparingLong(Candidate::lastUsed));
+                for (var candidate : live.subList(0, live.size() - target)) {
+                    remove(candidate.token(), candidate.entry());
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private void remove(String token, Entry entry) {
+        if (cache.remove(token, entry)) {
+            evictions.increment();
+        }
+    }
+}
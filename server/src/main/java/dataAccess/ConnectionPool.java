@@ -0,0 +1,365 @@
+package dataAccess;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A fixed-capacity pool of JDBC connections. Borrowers wait up to the borrow timeout
+ * for a free slot, connections that sat idle for a while are validated before they
+ * are handed out, and connections held longer than the leak threshold are reported,
+ * along with the code that borrowed them when captureLeakStacks is on. Closing a
+ * borrowed connection returns it to the pool.
+ */
+public class ConnectionPool implements DataSource {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String catalog;
+    private final Settings settings;
+
+    private final Semaphore slots;
+    private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Borrowed> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private final AtomicBoolean used = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    /**
+     * @param minIdle connections kept open and ready once the pool has been used
+     * @param maxSize most connections open at once, borrowed or idle
+     * @param borrowTimeoutMillis how long getConnection waits for a free connection
+     * @param validationTimeoutSeconds how long an idle connection gets to prove it is still alive
+     * @param validateAfterIdleMillis connections idle for less than this are handed out without
+     * the validation round trip
+     * @param leakThresholdMillis report connections borrowed for longer than this, or 0 to disable
+     * @param captureLeakStacks record where each connection was borrowed so leak reports
+     * can name it. This costs a stack trace per borrow, so it is meant for debugging
+     */
+    public record Settings(int minIdle, int maxSize, long borrowTimeoutMillis, int validationTimeoutSeconds,
+                           long validateAfterIdleMillis, long leakThresholdMillis, boolean captureLeakStacks) {}
+
+    public record Metrics(int active, int idle, long borrows, long timeouts, long averageWaitMicros,
+                          long maxWaitMicros, long created, long discarded, long leaks) {}
+
+    private record Idle(Connection connection, long idleSinceMillis) {}
+
+    private record Borrowed(Connection connection, long borrowedAtMillis, Throwable borrowedBy, AtomicBoolean reported) {}
+
+    public ConnectionPool(String url, String user, String password, String catalog, Settings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.catalog = catalog;
+        this.settings = settings;
+        this.slots = new Semaphore(Math.max(1, settings.maxSize()), true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 5, 5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(settings.borrowTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+        recordWait(System.nanoTime() - start);
+        if (!acquired) {
+            timeouts.incrementAndGet();
+            throw new SQLException(String.format("Timed out after %dms waiting for a database connection (%d in use)",
+                    settings.borrowTimeoutMillis(), borrowed.size()));
+        }
+
+        try {
+            Connection connection = takeIdle();
+            if (connection == null) {
+                connection = open();
+            }
+            used.set(true);
+            borrows.incrementAndGet();
+            return lend(connection);
+        } catch (SQLException | RuntimeException ex) {
+            slots.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only hands out connections for its configured user");
+    }
+
+    public Metrics getMetrics() {
+        long attempts = borrows.get() + timeouts.get();
+        return new Metrics(borrowed.size(), idle.size(), borrows.get(), timeouts.get(),
+                attempts == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get() / attempts),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()), created.get(), discarded.get(), leaks.get());
+    }
+
+    /**
+     * Closes idle connections and stops housekeeping. Borrowed connections are closed
+     * when their borrowers give them back, and anything borrowed after this gets a
+     * connection of its own that is closed on return.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        for (Idle entry; (entry = idle.poll()) != null; ) {
+            discard(entry.connection());
+        }
+    }
+
+    private Connection takeIdle() {
+        for (Idle entry; (entry = idle.pollFirst()) != null; ) {
+            long idleMillis = System.currentTimeMillis() - entry.idleSinceMillis();
+            if (idleMillis < settings.validateAfterIdleMillis() || isValid(entry.connection())) {
+                return entry.connection();
+            }
+            discard(entry.connection());
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(settings.validationTimeoutSeconds());
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        var connection = DriverManager.getConnection(url, user, password);
+        if (catalog != null) {
+            connection.setCatalog(catalog);
+        }
+        created.incrementAndGet();
+        return connection;
+    }
+
+    private void discard(Connection connection) {
+        discarded.incrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private Connection lend(Connection connection) {
+        Throwable borrowedBy = settings.leakThresholdMillis() > 0 && settings.captureLeakStacks() ?
+                new Throwable("Connection borrowed here") : null;
+        var loan = new Borrowed(connection, System.currentTimeMillis(), borrowedBy, new AtomicBoolean());
+        borrowed.add(loan);
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new LoanHandler(loan));
+    }
+
+    /**
+     * Puts a connection back in a clean state so the next borrower does not inherit
+     * an open transaction or a changed catalog.
+     */
+    private void giveBack(Borrowed loan) {
+        borrowed.remove(loan);
+        var connection = loan.connection();
+        try {
+            if (connection.isClosed()) {
+                discarded.incrementAndGet();
+                return;
+            }
+            if (closed) {
+                discard(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (catalog != null && !catalog.equals(connection.getCatalog())) {
+                connection.setCatalog(catalog);
+            }
+            connection.clearWarnings();
+            idle.addFirst(new Idle(connection, System.currentTimeMillis()));
+        } catch (SQLException ex) {
+            discard(connection);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private void housekeep() {
+        try {
+            reportLeaks();
+            topUp();
+        } catch (RuntimeException ex) {
+            System.out.printf("Connection pool housekeeping failed: %s%n", ex.getMessage());
+        }
+    }
+
+    private void reportLeaks() {
+        long threshold = settings.leakThresholdMillis();
+        if (threshold <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (var loan : borrowed) {
+            if (now - loan.borrowedAtMillis() > threshold && loan.reported().compareAndSet(false, true)) {
+                leaks.incrementAndGet();
+                System.out.printf("Possible connection leak: borrowed %dms ago%s%n", now - loan.borrowedAtMillis(),
+                        loan.borrowedBy() == null ? "" : " by " + borrower(loan.borrowedBy()));
+            }
+        }
+    }
+
+    /**
+     * @return the first frame outside the pool, which is the code that asked for the connection
+     */
+    private static StackTraceElement borrower(Throwable borrowedBy) {
+        for (var frame : borrowedBy.getStackTrace()) {
+            if (!frame.getClassName().equals(ConnectionPool.class.getName()) &&
+                    !frame.getClassName().equals(DatabaseManager.class.getName())) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens connections ahead of demand until minIdle are ready. Waits for the first
+     * borrow so the pool doesn't connect to a database that hasn't been created yet.
+     * <p>
+     * Slots only count borrowers, so a new idle connection is opened only while the
+     * slots held, this one included, plus the idle connections stay within maxSize.
+     * Holding the slot while opening keeps a borrower from taking it meanwhile.
+     */
+    private void topUp() {
+        while (used.get() && !closed && idle.size() < settings.minIdle() && slots.tryAcquire()) {
+            try {
+                if (idle.size() > slots.availablePermits()) {
+                    return;
+                }
+                idle.addLast(new Idle(open(), System.currentTimeMillis()));
+            } catch (SQLException ex) {
+                return;
+            } finally {
+                slots.release();
+            }
+        }
+    }
+
+    private class LoanHandler implements InvocationHandler {
+        private final Borrowed loan;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        LoanHandler(Borrowed loan) {
+            this.loan = loan;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (returned.compareAndSet(false, true)) {
+                        giveBack(loan);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned.get() || loan.connection().isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled " + loan.connection();
+                }
+            }
+
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(loan.connection(), args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -1,14 +1,20 @@
 package dataAccess;
 
+import chess.ChessMove;
 import exception.ResponseException;
 import model.AuthData;
 import model.GameData;
+import model.GameList;
+import model.GameQuery;
 import model.UserData;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 public interface DataAccess {
     void createUser(UserData userData) throws DataAccessException, ResponseException, SQLException;
@@ -19,6 +25,35 @@ public interface DataAccess {
 
     void createGame(GameData gameData) throws DataAccessException, ResponseException, SQLException;
 
+    /**
+     * Stores many users at once, for imports. Unlike createUser, the passwords must
+     * already be hashed with hashPassword.
+     */
+    void createUsers(Collection<UserData> users) throws DataAccessException, ResponseException;
+
+    /**
+     * Allocates an ID for each game name, in order. Stores that can insert them in
+     * batches should override this.
+     */
+    default List<Integer> createGameIDs(List<String> gameNames) throws DataAccessException, ResponseException, SQLException {
+        var gameIDs = new ArrayList<Integer>(gameNames.size());
+        for (var gameName : gameNames) {
+            gameIDs.add(createGameID(gameName));
+        }
+        return gameIDs;
+    }
+
+    /**
+     * Stores many games at once, for imports. Each write's moves are the game's
+     * history up to its current state. Stores that keep a move log should override
+     * this to store the moves too.
+     */
+    default void createGames(Collection<GameWrite> games) throws DataAccessException, ResponseException, SQLException {
+        for (var write : games) {
+            createGame(write.gameData());
+        }
+    }
+
     UserData getUser(String username) throws DataAccessException, ResponseException;
 
     AuthData getAuth(String authToken) throws DataAccessException, ResponseException;
@@ -27,12 +62,93 @@ public interface DataAccess {
 
     Collection<GameData> getGames() throws DataAccessException, ResponseException;
 
+    /**
+     * Lists one page of game summaries. Stores that can filter and page without
+     * loading every game should override this.
+     */
+    default GameList listGameSummaries(GameQuery query) throws DataAccessException, ResponseException {
+        var games = new ArrayList<>(getGames());
+        games.sort(Comparator.comparingInt(GameData::getGameID));
+        return query.page(games);
+    }
+
     HashMap<Integer, UserData> getUsers() throws DataAccessException, ResponseException;
 
     void updateGame(GameData gameData) throws ResponseException, DataAccessException;
 
+    /**
+     * Saves a game right after a move was made in it. Stores that keep an incremental
+     * history can append just the move; the rest simply save the whole game.
+     */
+    default void recordMove(GameData gameData, ChessMove move) throws ResponseException, DataAccessException {
+        updateGame(gameData);
+    }
+
+    /**
+     * Saves several games at once. Stores that can group the writes into a single
+     * transaction should override this.
+     * @return the IDs of games that were not saved because someone else saved them
+     * since they were read
+     */
+    default Collection<Integer> commitGames(Collection<GameWrite> writes) throws ResponseException, DataAccessException {
+        var conflicts = new ArrayList<Integer>();
+        for (var write : writes) {
+            try {
+                updateGame(write.gameData());
+            } catch (GameConflictException e) {
+                conflicts.add(e.getGameID());
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Registers a listener called with a game's ID when changes to it that were
+     * already accepted are thrown away because someone else saved the game first.
+     * Only stores that save in the background ever do this.
+     */
+    default void addConflictListener(IntConsumer listener) {
+    }
+
+    /**
+     * Counts changes to the game listing: games created, joined, left, finished or
+     * removed. Moves don't change it. It is kept with the data, so it covers every
+     * writer and only moves once a change can be read.
+     */
+    long getLobbyVersion() throws DataAccessException, ResponseException;
+
     void deleteAuth(AuthData auth) throws DataAccessException, ResponseException, SQLException;
 
+    /**
+     * Deletes up to batchSize expired auth tokens
+     * @return how many were deleted; fewer than batchSize means none are left
+     */
+    default int purgeExpiredAuths(int batchSize) throws DataAccessException, ResponseException {
+        return 0;
+    }
+
+    /**
+     * Lists up to limit games that finished before the given time, oldest first.
+     * Stores that don't record when games finish return none, so nothing is archived.
+     */
+    default List<GameData> listFinishedGames(long finishedBeforeMillis, int limit) throws DataAccessException, ResponseException {
+        return List.of();
+    }
+
+    /**
+     * Removes finished games that have been copied to the archive
+     */
+    default void deleteFinishedGames(Collection<Integer> gameIDs) throws DataAccessException, ResponseException {
+    }
+
+    /**
+     * Moves up to batchSize games that finished before the given time to cold storage
+     * @return how many were moved; fewer than batchSize means none are left
+     */
+    default int archiveFinishedGames(long finishedBeforeMillis, int batchSize) throws DataAccessException, ResponseException {
+        return 0;
+    }
+
     GameData getGameData(int gameID) throws DataAccessException, SQLException, ResponseException;
 
     void joinGame(String username, String playerColor, int gameID) throws DataAccessException, InvalidGameID, ResponseException, SQLException;
@@ -45,7 +161,26 @@ public interface DataAccess {
 
     void clearGameIDs() throws DataAccessException, ResponseException, SQLException;
 
-    String hashPassword(String password);
+    String hashPassword(String password) throws ResponseException;
+
+    boolean passwordsMatch(String loginPassword, String storedPassword) throws ResponseException;
+
+    /**
+     * @return whether the stored hash is weaker than new hashes would be
+     */
+    default boolean passwordNeedsRehash(String storedPassword) {
+        return false;
+    }
+
+    /**
+     * Replaces a user's password hash, used to upgrade hashes on login
+     */
+    default void updatePasswordHash(String username, String passwordHash) throws DataAccessException, ResponseException {
+    }
 
-    boolean passwordsMatch(String loginPassword, String storedPassword);
+    /**
+     * Flushes anything still buffered and releases the store's resources
+     */
+    default void close() throws DataAccessException {
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package dataAccess;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.Properties;
 
@@ -8,9 +9,16 @@ public class DatabaseManager {
     private static final String user;
     private static final String password;
     private static final String connectionUrl;
+    private static final ConnectionPool.Settings poolSettings;
+    // Replaced with a fresh pool when the last user closed the old one
+    private static volatile ConnectionPool pool;
+    private static int poolUsers;
 
     /*
-     * Load the database information for the db.properties file.
+     * Load the database information for the db.properties file. Pool sizing is optional:
+     * db.pool.minIdle, db.pool.maxSize, db.pool.borrowTimeoutMillis,
+     * db.pool.validationTimeoutSeconds, db.pool.validateAfterIdleMillis,
+     * db.pool.leakThresholdMillis and db.pool.captureLeakStacks.
      */
     static {
         try {
@@ -24,7 +32,17 @@ public class DatabaseManager {
 
                 var host = props.getProperty("db.host");
                 var port = Integer.parseInt(props.getProperty("db.port"));
-                connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+                // Lets the driver send a JDBC batch as one multi-row statement
+                connectionUrl = String.format("jdbc:mysql://%s:%d?rewriteBatchedStatements=true", host, port);
+
+                poolSettings = new ConnectionPool.Settings(
+                        Integer.parseInt(props.getProperty("db.pool.minIdle", "2")),
+                        Integer.parseInt(props.getProperty("db.pool.maxSize", "10")),
+                        Long.parseLong(props.getProperty("db.pool.borrowTimeoutMillis", "5000")),
+                        Integer.parseInt(props.getProperty("db.pool.validationTimeoutSeconds", "2")),
+                        Long.parseLong(props.getProperty("db.pool.validateAfterIdleMillis", "1000")),
+                        Long.parseLong(props.getProperty("db.pool.leakThresholdMillis", "30000")),
+                        Boolean.parseBoolean(props.getProperty("db.pool.captureLeakStacks", "false")));
             }
         } catch (Exception ex) {
             throw new RuntimeException("unable to process db.properties. " + ex.getMessage());
@@ -37,8 +55,8 @@ public class DatabaseManager {
     static void createDatabase() throws DataAccessException {
         try {
             var statement = "CREATE DATABASE IF NOT EXISTS " + databaseName;
-            var conn = DriverManager.getConnection(connectionUrl, user, password);
-            try (var preparedStatement = conn.prepareStatement(statement)) {
+            try (var conn = DriverManager.getConnection(connectionUrl, user, password);
+                 var preparedStatement = conn.prepareStatement(statement)) {
                 preparedStatement.executeUpdate();
             }
         } catch (SQLException e) {
@@ -47,9 +65,9 @@ public class DatabaseManager {
     }
 
     /**
-     * Create a connection to the database and sets the catalog based upon the
-     * properties specified in db.properties. Connections to the database should
-     * be short-lived, and you must close the connection when you are done with it.
+     * Borrows a connection from the pool, already set to the catalog specified in
+     * db.properties. Connections to the database should be short-lived, and you must
+     * close the connection when you are done with it so it goes back to the pool.
      * The easiest way to do that is with a try-with-resource block.
      * <br/>
      * <code>
@@ -60,11 +78,50 @@ public class DatabaseManager {
      */
     static Connection getConnection() throws DataAccessException {
         try {
-            var conn = DriverManager.getConnection(connectionUrl, user, password);
-            conn.setCatalog(databaseName);
-            return conn;
+            return pool().getConnection();
         } catch (SQLException e) {
             throw new DataAccessException(e.getMessage());
         }
     }
+
+    public static DataSource getDataSource() {
+        return pool();
+    }
+
+    /**
+     * Registers a user of the pool, such as a MySqlDataAccess. Every call must be
+     * matched by one call to releasePool.
+     */
+    static synchronized void retainPool() {
+        pool();
+        poolUsers++;
+    }
+
+    /**
+     * Closes the pool's idle connections and stops its housekeeping once its last user
+     * releases it. The next connection asked for opens a new pool.
+     */
+    static synchronized void releasePool() {
+        if (poolUsers > 0 && --poolUsers == 0 && pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    public static ConnectionPool.Metrics getPoolMetrics() {
+        return pool().getMetrics();
+    }
+
+    private static ConnectionPool pool() {
+        ConnectionPool current = pool;
+        if (current != null) {
+            return current;
+        }
+        synchronized (DatabaseManager.class) {
+            if (pool == null) {
+                pool = new ConnectionPool(connectionUrl, user, password, databaseName, poolSettings);
+            }
+            return pool;
+        }
+    }
 }
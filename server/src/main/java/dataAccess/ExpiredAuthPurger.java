@@ -0,0 +1,50 @@
+package dataAccess;
+
+import exception.ResponseException;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes expired auth tokens in the background. Every intervalSeconds it purges
+ * batches of batchSize until a batch comes back short, so no single delete runs long.
+ */
+public class ExpiredAuthPurger {
+    private final DataAccess dataAccess;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+
+    public ExpiredAuthPurger(DataAccess dataAccess, long intervalSeconds, int batchSize) {
+        this.dataAccess = dataAccess;
+        this.batchSize = Math.max(1, batchSize);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "auth-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purge, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void purge() {
+        try {
+            int total = 0;
+            int purged;
+            do {
+                purged = dataAccess.purgeExpiredAuths(batchSize);
+                total += purged;
+            } while (purged >= batchSize && !Thread.currentThread().isInterrupted());
+
+            if (total > 0) {
+                System.out.printf("Purged %d expired auth tokens%n", total);
+            }
+        } catch (DataAccessException | ResponseException ex) {
+            System.out.printf("Unable to purge expired auth tokens: %s%n", ex.getMessage());
+        }
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,408 @@
+package dataAccess;
+
+import model.AuthData;
+import model.GameCodec;
+import model.GameData;
+import model.UserData;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A MemoryDataAccess that survives restarts without a database server. Every change
+ * is appended to a write-ahead log before it is applied in memory, and reads are
+ * served from memory. Every snapshotEveryRecords changes the whole state is written
+ * to a snapshot file and the log starts over.
+ * <p>
+ * On startup the snapshot and then the log are memory-mapped and replayed. A torn
+ * record at the end of the log, left by a crash mid-write, fails its checksum and is
+ * cut off. Each record is framed as length (int), CRC-32 (int), then a type byte and
+ * its fields. Both files start with a magic number and a generation, and a log whose
+ * generation is older than the snapshot's is already covered by the snapshot.
+ */
+public class FileDataAccess extends MemoryDataAccess {
+    private static final int SNAPSHOT_MAGIC = 0x43534E31;
+    private static final int LOG_MAGIC = 0x43574C31;
+    private static final int HEADER_BYTES = 12;
+
+    private static final byte USER = 1;
+    private static final byte AUTH = 2;
+    private static final byte DELETE_AUTH = 3;
+    private static final byte GAME_ID = 4;
+    private static final byte GAME = 5;
+    private static final byte CLEAR_USERS = 6;
+    private static final byte CLEAR_GAMES = 7;
+    private static final byte CLEAR_AUTH_TOKENS = 8;
+    private static final byte CLEAR_GAME_IDS = 9;
+    private static final byte REPLACE_USER = 10;
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final boolean fsync;
+    private final int snapshotEveryRecords;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel log;
+    private long generation;
+    private int recordsSinceSnapshot;
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Change {
+        void apply() throws DataAccessException;
+    }
+
+    private FileDataAccess(Path directory, boolean fsync, int snapshotEveryRecords) {
+        this.snapshotFile = directory.resolve("chess.snapshot");
+        this.logFile = directory.resolve("chess.wal");
+        this.fsync = fsync;
+        this.snapshotEveryRecords = Math.max(1, snapshotEveryRecords);
+    }
+
+    /**
+     * Opens the store in directory, creating it if needed, and replays what is on disk.
+     * Recovery runs once the object is fully constructed, since replaying goes through
+     * MemoryDataAccess methods a subclass could override.
+     * @param fsync whether to force every record to disk before the change is applied
+     */
+    public static FileDataAccess open(Path directory, boolean fsync, int snapshotEveryRecords) throws DataAccessException {
+        var dataAccess = new FileDataAccess(directory, fsync, snapshotEveryRecords);
+        try {
+            Files.createDirectories(directory);
+            dataAccess.recover();
+        } catch (IOException e) {
+            throw new DataAccessException(String.format("Unable to open data files in %s: %s", directory, e.getMessage()));
+        }
+        return dataAccess;
+    }
+
+    @Override
+    protected void storeUser(UserData user) throws DataAccessException {
+        writeLock.lock();
+        try {
+            if (getUser(user.username()) != null) {
+                throw new DataAccessException("Username already exists in the database.");
+            }
+            logged(USER, out -> writeUser(out, user), () -> super.storeUser(user));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    protected void replaceUser(UserData user) throws DataAccessException {
+        logged(REPLACE_USER, out -> writeUser(out, user), () -> super.replaceUser(user));
+    }
+
+    @Override
+    protected void storeAuth(IssuedAuth issued) throws DataAccessException {
+        logged(AUTH, out -> writeIssuedAuth(out, issued), () -> super.storeAuth(issued));
+    }
+
+    @Override
+    protected void renewAuth(IssuedAuth current, IssuedAuth renewed) throws DataAccessException {
+        writeLock.lock();
+        try {
+            if (getIssuedAuths().get(current.auth().authToken()) == current) {
+                logged(AUTH, out -> writeIssuedAuth(out, renewed), () -> super.storeAuth(renewed));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    protected void removeAuth(AuthData auth) throws DataAccessException {
+        logged(DELETE_AUTH, out -> writeAuth(out, auth), () -> super.removeAuth(auth));
+    }
+
+    @Override
+    protected void storeGameID(String gameName, int newGameID) throws DataAccessException {
+        logged(GAME_ID, out -> writeGameID(out, gameName, newGameID), () -> super.storeGameID(gameName, newGameID));
+    }
+
+    @Override
+    protected void storeGame(GameData gameData) throws DataAccessException {
+        logged(GAME, out -> writeGame(out, gameData), () -> super.storeGame(gameData));
+    }
+
+    @Override
+    protected boolean replaceGame(GameData expected, GameData updated) throws DataAccessException {
+        writeLock.lock();
+        try {
+            if (getStoredGame(expected.getGameID()) != expected) {
+                return false;
+            }
+            logged(GAME, out -> writeGame(out, updated), () -> super.storeGame(updated));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clearUsers() throws DataAccessException {
+        logged(CLEAR_USERS, out -> {}, super::clearUsers);
+    }
+
+    @Override
+    public void clearGames() throws DataAccessException {
+        logged(CLEAR_GAMES, out -> {}, super::clearGames);
+    }
+
+    @Override
+    public void clearAuthTokens() throws DataAccessException {
+        logged(CLEAR_AUTH_TOKENS, out -> {}, super::clearAuthTokens);
+    }
+
+    @Override
+    public void clearGameIDs() throws DataAccessException {
+        logged(CLEAR_GAME_IDS, out -> {}, super::clearGameIDs);
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        writeLock.lock();
+        try {
+            log.force(true);
+            log.close();
+        } catch (IOException e) {
+            throw new DataAccessException("Unable to close write-ahead log: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the change to the log, then applies it. Both happen under the write lock
+     * so the log order always matches the order changes were applied in.
+     */
+    private void logged(byte type, RecordWriter writer, Change change) throws DataAccessException {
+        writeLock.lock();
+        try {
+            writeRecord(log, encode(type, writer));
+            if (fsync) {
+                log.force(false);
+            }
+            change.apply();
+
+            if (++recordsSinceSnapshot >= snapshotEveryRecords) {
+                snapshot();
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("Unable to write to write-ahead log: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void recover() throws IOException, DataAccessException {
+        generation = 0;
+        if (Files.exists(snapshotFile)) {
+            try (var channel = FileChannel.open(snapshotFile, READ)) {
+                var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                generation = readHeader(buffer, SNAPSHOT_MAGIC);
+                replay(buffer);
+            }
+        }
+
+        boolean logUsable = false;
+        if (Files.exists(logFile)) {
+            try (var channel = FileChannel.open(logFile, READ, WRITE)) {
+                var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() >= HEADER_BYTES && readHeader(buffer, LOG_MAGIC) == generation) {
+                    long end = replay(buffer);
+                    channel.truncate(end);
+                    channel.force(true);
+                    logUsable = true;
+                }
+            }
+        }
+
+        if (!logUsable) {
+            startLog(logFile, generation);
+        }
+        log = FileChannel.open(logFile, WRITE, APPEND);
+    }
+
+    /**
+     * Applies records from the buffer's position until the end or the first damaged record
+     * @return the offset just past the last good record
+     */
+    private long replay(MappedByteBuffer buffer) throws DataAccessException, IOException {
+        long goodEnd = buffer.position();
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (crc(payload) != checksum) {
+                break;
+            }
+            apply(payload);
+            goodEnd = buffer.position();
+        }
+        return goodEnd;
+    }
+
+    private void apply(byte[] payload) throws IOException, DataAccessException {
+        var in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+            case USER -> super.storeUser(new UserData(in.readUTF(), readNullable(in), readNullable(in)));
+            case REPLACE_USER -> super.replaceUser(new UserData(in.readUTF(), readNullable(in), readNullable(in)));
+            case AUTH -> super.storeAuth(new IssuedAuth(new AuthData(in.readUTF(), in.readUTF()), in.readLong()));
+            case DELETE_AUTH -> super.removeAuth(new AuthData(in.readUTF(), in.readUTF()));
+            case GAME_ID -> super.storeGameID(in.readUTF(), in.readInt());
+            case GAME -> super.storeGame(readGame(in));
+            case CLEAR_USERS -> super.clearUsers();
+            case CLEAR_GAMES -> super.clearGames();
+            case CLEAR_AUTH_TOKENS -> super.clearAuthTokens();
+            case CLEAR_GAME_IDS -> super.clearGameIDs();
+            default -> throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Writes the whole state to a new snapshot, then replaces the log with an empty
+     * one of the same generation. A crash in between leaves an older-generation log,
+     * which recovery skips.
+     */
+    private void snapshot() throws IOException {
+        long next = generation + 1;
+        var state = new ByteArrayOutputStream();
+        for (var entry : getGameNames().entrySet()) {
+            writeRecord(state, encode(GAME_ID, out -> writeGameID(out, entry.getValue(), entry.getKey())));
+        }
+        for (var user : new TreeMap<>(getUsers()).values()) {
+            writeRecord(state, encode(USER, out -> writeUser(out, user)));
+        }
+        long now = System.currentTimeMillis();
+        for (var issued : getIssuedAuths().values()) {
+            if (issued.expiresAt() <= now) {
+                continue;
+            }
+            writeRecord(state, encode(AUTH, out -> writeIssuedAuth(out, issued)));
+        }
+        // Stored games are never changed in place, so this can't catch a move half made
+        for (var game : getStoredGames()) {
+            writeRecord(state, encode(GAME, out -> writeGame(out, game)));
+        }
+
+        Path snapshotTemp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(snapshotTemp, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            channel.write(header(SNAPSHOT_MAGIC, next));
+            channel.write(ByteBuffer.wrap(state.toByteArray()));
+            channel.force(true);
+        }
+        Files.move(snapshotTemp, snapshotFile, ATOMIC_MOVE, REPLACE_EXISTING);
+
+        Path logTemp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        startLog(logTemp, next);
+        log.close();
+        Files.move(logTemp, logFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        log = FileChannel.open(logFile, WRITE, APPEND);
+
+        generation = next;
+        recordsSinceSnapshot = 0;
+    }
+
+    private static void startLog(Path path, long generation) throws IOException {
+        try (var channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            channel.write(header(LOG_MAGIC, generation));
+            channel.force(true);
+        }
+    }
+
+    private static ByteBuffer header(int magic, long generation) {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(magic).putLong(generation).flip();
+    }
+
+    private static long readHeader(MappedByteBuffer buffer, int magic) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != magic) {
+            throw new IOException("Not a chess data file");
+        }
+        return buffer.getLong();
+    }
+
+    private static byte[] encode(byte type, RecordWriter writer) throws IOException {
+        var bytes = new ByteArrayOutputStream(64);
+        var out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        writer.write(out);
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(FileChannel channel, byte[] payload) throws IOException {
+        var frame = ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, byte[] payload) {
+        out.writeBytes(ByteBuffer.allocate(8).putInt(payload.length).putInt(crc(payload)).array());
+        out.writeBytes(payload);
+    }
+
+    private static int crc(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void writeUser(DataOutputStream out, UserData user) throws IOException {
+        out.writeUTF(user.username());
+        writeNullable(out, user.password());
+        writeNullable(out, user.email());
+    }
+
+    private static void writeAuth(DataOutputStream out, AuthData auth) throws IOException {
+        out.writeUTF(auth.authToken());
+        out.writeUTF(auth.username());
+    }
+
+    private static void writeIssuedAuth(DataOutputStream out, IssuedAuth issued) throws IOException {
+        writeAuth(out, issued.auth());
+        out.writeLong(issued.expiresAt());
+    }
+
+    private static void writeGameID(DataOutputStream out, String gameName, int gameID) throws IOException {
+        out.writeUTF(gameName);
+        out.writeInt(gameID);
+    }
+
+    private static void writeGame(DataOutputStream out, GameData gameData) throws IOException {
+        out.write(GameCodec.encode(gameData));
+    }
+
+    private static GameData readGame(DataInputStream in) throws IOException {
+        return GameCodec.decode(in.readAllBytes());
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,197 @@
+package dataAccess;
+
+import chess.ChessMove;
+import exception.ResponseException;
+import model.AuthData;
+import model.GameData;
+import model.GameList;
+import model.GameQuery;
+import model.UserData;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Passes every call through to another DataAccess. Layers such as caches extend
+ * this and override only the methods they change.
+ */
+public abstract class ForwardingDataAccess implements DataAccess {
+    protected final DataAccess delegate;
+
+    protected ForwardingDataAccess(DataAccess delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void createUser(UserData userData) throws DataAccessException, ResponseException, SQLException {
+        delegate.createUser(userData);
+    }
+
+    @Override
+    public AuthData createAuth(UserData userData) throws DataAccessException, ResponseException, SQLException {
+        return delegate.createAuth(userData);
+    }
+
+    @Override
+    public Integer createGameID(String gameName) throws DataAccessException, ResponseException, SQLException {
+        return delegate.createGameID(gameName);
+    }
+
+    @Override
+    public void createGame(GameData gameData) throws DataAccessException, ResponseException, SQLException {
+        delegate.createGame(gameData);
+    }
+
+    @Override
+    public void createUsers(Collection<UserData> users) throws DataAccessException, ResponseException {
+        delegate.createUsers(users);
+    }
+
+    @Override
+    public List<Integer> createGameIDs(List<String> gameNames) throws DataAccessException, ResponseException, SQLException {
+        return delegate.createGameIDs(gameNames);
+    }
+
+    @Override
+    public void createGames(Collection<GameWrite> games) throws DataAccessException, ResponseException, SQLException {
+        delegate.createGames(games);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException, ResponseException {
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException, ResponseException {
+        return delegate.getAuth(authToken);
+    }
+
+    @Override
+    public HashMap<UserData, List<AuthData>> getAuths() throws DataAccessException, ResponseException {
+        return delegate.getAuths();
+    }
+
+    @Override
+    public Collection<GameData> getGames() throws DataAccessException, ResponseException {
+        return delegate.getGames();
+    }
+
+    @Override
+    public GameList listGameSummaries(GameQuery query) throws DataAccessException, ResponseException {
+        return delegate.listGameSummaries(query);
+    }
+
+    @Override
+    public HashMap<Integer, UserData> getUsers() throws DataAccessException, ResponseException {
+        return delegate.getUsers();
+    }
+
+    @Override
+    public void updateGame(GameData gameData) throws ResponseException, DataAccessException {
+        delegate.updateGame(gameData);
+    }
+
+    @Override
+    public void recordMove(GameData gameData, ChessMove move) throws ResponseException, DataAccessException {
+        delegate.recordMove(gameData, move);
+    }
+
+    @Override
+    public Collection<Integer> commitGames(Collection<GameWrite> writes) throws ResponseException, DataAccessException {
+        return delegate.commitGames(writes);
+    }
+
+    @Override
+    public void addConflictListener(IntConsumer listener) {
+        delegate.addConflictListener(listener);
+    }
+
+    @Override
+    public long getLobbyVersion() throws DataAccessException, ResponseException {
+        return delegate.getLobbyVersion();
+    }
+
+    @Override
+    public void deleteAuth(AuthData auth) throws DataAccessException, ResponseException, SQLException {
+        delegate.deleteAuth(auth);
+    }
+
+    @Override
+    public int purgeExpiredAuths(int batchSize) throws DataAccessException, ResponseException {
+        return delegate.purgeExpiredAuths(batchSize);
+    }
+
+    @Override
+    public List<GameData> listFinishedGames(long finishedBeforeMillis, int limit) throws DataAccessException, ResponseException {
+        return delegate.listFinishedGames(finishedBeforeMillis, limit);
+    }
+
+    @Override
+    public void deleteFinishedGames(Collection<Integer> gameIDs) throws DataAccessException, ResponseException {
+        delegate.deleteFinishedGames(gameIDs);
+    }
+
+    @Override
+    public int archiveFinishedGames(long finishedBeforeMillis, int batchSize) throws DataAccessException, ResponseException {
+        return delegate.archiveFinishedGames(finishedBeforeMillis, batchSize);
+    }
+
+    @Override
+    public GameData getGameData(int gameID) throws DataAccessException, SQLException, ResponseException {
+        return delegate.getGameData(gameID);
+    }
+
+    @Override
+    public void joinGame(String username, String playerColor, int gameID) throws DataAccessException, InvalidGameID, ResponseException, SQLException {
+        delegate.joinGame(username, playerColor, gameID);
+    }
+
+    @Override
+    public void clearUsers() throws DataAccessException, ResponseException, SQLException {
+        delegate.clearUsers();
+    }
+
+    @Override
+    public void clearGames() throws DataAccessException, ResponseException, SQLException {
+        delegate.clearGames();
+    }
+
+    @Override
+    public void clearAuthTokens() throws DataAccessException, ResponseException, SQLException {
+        delegate.clearAuthTokens();
+    }
+
+    @Override
+    public void clearGameIDs() throws DataAccessException, ResponseException, SQLException {
+        delegate.clearGameIDs();
+    }
+
+    @Override
+    public String hashPassword(String password) throws ResponseException {
+        return delegate.hashPassword(password);
+    }
+
+    @Override
+    public boolean passwordsMatch(String loginPassword, String storedPassword) throws ResponseException {
+        return delegate.passwordsMatch(loginPassword, storedPassword);
+    }
+
+    @Override
+    public boolean passwordNeedsRehash(String storedPassword) {
+        return delegate.passwordNeedsRehash(storedPassword);
+    }
+
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException, ResponseException {
+        delegate.updatePasswordHash(username, passwordHash);
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        delegate.close();
+    }
+}
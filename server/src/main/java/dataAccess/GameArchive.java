@@ -0,0 +1,365 @@
+package dataAccess;
+
+import model.GameCodec;
+import model.GameData;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Cold storage for finished games. Each call to append writes one immutable segment
+ * file holding its games sorted by ID, so archived games are never rewritten.
+ * <p>
+ * A segment is a run of deflated blocks of up to BLOCK_GAMES games, then a footer with
+ * a sparse index (the first game ID and offset of every block), a Bloom filter of
+ * every game ID in the segment, and a trailer saying where the footer starts. Only
+ * footers are kept in memory. Reading a game checks each segment's ID range and
+ * filter, then inflates the one block that can hold it.
+ * <p>
+ * Segments are written to a temporary file and moved into place once complete, so
+ * a crash never leaves a partial segment behind.
+ */
+public class GameArchive implements Closeable {
+    private static final int MAGIC = 0x43415231;
+    private static final int BLOCK_GAMES = 16;
+    private static final int BLOOM_BITS_PER_GAME = 10;
+    private static final int BLOOM_HASHES = 4;
+    private static final int TRAILER_BYTES = 24;
+
+    private final Path directory;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile List<Segment> segments;
+    private long nextSegment;
+
+    private record Segment(long number, FileChannel channel, int minGameID, int maxGameID,
+                           int[] blockGameIDs, long[] blockOffsets, long[] bloom) {}
+
+    public GameArchive(Path directory) throws DataAccessException {
+        this.directory = directory;
+        var loaded = new ArrayList<Segment>();
+        try {
+            Files.createDirectories(directory);
+            try (var files = Files.list(directory)) {
+                for (Path file : files.sorted().toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        Files.delete(file);
+                    } else if (name.startsWith("segment-") && name.endsWith(".arc")) {
+                        loaded.add(openSegment(file, Long.parseLong(name.substring(8, name.length() - 4))));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            closeAll(loaded);
+            throw new DataAccessException(String.format("Unable to open game archive in %s: %s", directory, e.getMessage()));
+        }
+        segments = List.copyOf(loaded);
+        nextSegment = loaded.isEmpty() ? 1 : loaded.get(loaded.size() - 1).number() + 1;
+    }
+
+    /**
+     * Writes the games to a new segment. Once this returns they are on disk and can
+     * be removed from the hot store.
+     */
+    public void append(Collection<GameData> games) throws DataAccessException {
+        if (games.isEmpty()) {
+            return;
+        }
+
+        var sorted = new ArrayList<>(games);
+        sorted.sort(Comparator.comparingInt(GameData::getGameID));
+        writeLock.lock();
+        try {
+            long number = nextSegment;
+            Path file = segmentFile(number);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var channel = FileChannel.open(temp, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                writeSegment(channel, sorted);
+                channel.force(true);
+            }
+            Files.move(temp, file, ATOMIC_MOVE);
+
+            var updated = new ArrayList<>(segments);
+            updated.add(openSegment(file, number));
+            segments = List.copyOf(updated);
+            nextSegment = number + 1;
+        } catch (IOException e) {
+            throw new DataAccessException(String.format("Unable to archive games: %s", e.getMessage()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return the archived game, or null if it was never archived
+     */
+    public GameData read(int gameID) throws DataAccessException {
+        List<Segment> current = segments;
+        // Newest first, so a game archived twice after a crash reads its latest copy
+        for (int i = current.size() - 1; i >= 0; i--) {
+            Segment segment = current.get(i);
+            if (gameID < segment.minGameID() || gameID > segment.maxGameID() || !mightContain(segment.bloom(), gameID)) {
+                continue;
+            }
+
+            int block = Arrays.binarySearch(segment.blockGameIDs(), gameID);
+            if (block < 0) {
+                block = -block - 2;
+            }
+            try {
+                GameData game = readFromBlock(segment, block, gameID);
+                if (game != null) {
+                    return game;
+                }
+            } catch (IOException | DataFormatException e) {
+                throw new DataAccessException(String.format("Unable to read archived game %d: %s", gameID, e.getMessage()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes every segment
+     */
+    public void clear() throws DataAccessException {
+        writeLock.lock();
+        try {
+            List<Segment> old = segments;
+            segments = List.of();
+            closeAll(old);
+            for (var segment : old) {
+                Files.deleteIfExists(segmentFile(segment.number()));
+            }
+        } catch (IOException e) {
+            throw new DataAccessException(String.format("Unable to clear game archive: %s", e.getMessage()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return how many segments the archive holds
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        closeAll(segments);
+    }
+
+    private Path segmentFile(long number) {
+        return directory.resolve(String.format("segment-%08d.arc", number));
+    }
+
+    private static void writeSegment(FileChannel channel, List<GameData> games) throws IOException {
+        int blocks = (games.size() + BLOCK_GAMES - 1) / BLOCK_GAMES;
+        var blockGameIDs = new int[blocks];
+        var blockOffsets = new long[blocks];
+        var bloom = new long[Math.max(1, (games.size() * BLOOM_BITS_PER_GAME + 63) / 64)];
+
+        long offset = 0;
+        for (int block = 0; block < blocks; block++) {
+            var raw = new ByteArrayOutputStream();
+            var out = new DataOutputStream(raw);
+            for (var game : games.subList(block * BLOCK_GAMES, Math.min(games.size(), (block + 1) * BLOCK_GAMES))) {
+                byte[] encoded = GameCodec.encode(game);
+                out.writeInt(game.getGameID());
+                out.writeInt(encoded.length);
+                out.write(encoded);
+                addToBloom(bloom, game.getGameID());
+            }
+            byte[] compressed = deflate(raw.toByteArray());
+
+            var crc = new CRC32();
+            crc.update(compressed);
+            var header = ByteBuffer.allocate(12).putInt(compressed.length).putInt(raw.size()).putInt((int) crc.getValue());
+            blockGameIDs[block] = games.get(block * BLOCK_GAMES).getGameID();
+            blockOffsets[block] = offset;
+            offset += writeFully(channel, header.flip()) + writeFully(channel, ByteBuffer.wrap(compressed));
+        }
+
+        var footer = ByteBuffer.allocate(4 + blocks * 12 + 4 + bloom.length * 8 + TRAILER_BYTES);
+        footer.putInt(blocks);
+        for (int block = 0; block < blocks; block++) {
+            footer.putInt(blockGameIDs[block]).putLong(blockOffsets[block]);
+        }
+        footer.putInt(bloom.length);
+        for (long word : bloom) {
+            footer.putLong(word);
+        }
+        footer.putLong(offset)
+                .putInt(games.get(0).getGameID())
+                .putInt(games.get(games.size() - 1).getGameID())
+                .putInt(games.size())
+                .putInt(MAGIC);
+        writeFully(channel, footer.flip());
+    }
+
+    private static Segment openSegment(Path file, long number) throws IOException {
+        var channel = FileChannel.open(file, READ);
+        try {
+            long size = channel.size();
+            if (size < TRAILER_BYTES) {
+                throw new IOException(file + " is too short to be a segment");
+            }
+            var trailer = readFully(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+            long footerOffset = trailer.getLong();
+            int minGameID = trailer.getInt();
+            int maxGameID = trailer.getInt();
+            trailer.getInt();
+            if (trailer.getInt() != MAGIC || footerOffset < 0 || footerOffset > size - TRAILER_BYTES) {
+                throw new IOException(file + " is not a game archive segment");
+            }
+
+            var footer = readFully(channel, footerOffset, (int) (size - TRAILER_BYTES - footerOffset));
+            int blocks = footer.getInt();
+            var blockGameIDs = new int[blocks];
+            var blockOffsets = new long[blocks];
+            for (int block = 0; block < blocks; block++) {
+                blockGameIDs[block] = footer.getInt();
+                blockOffsets[block] = footer.getLong();
+            }
+            var bloom = new long[footer.getInt()];
+            for (int i = 0; i < bloom.length; i++) {
+                bloom[i] = footer.getLong();
+            }
+            return new Segment(number, channel, minGameID, maxGameID, blockGameIDs, blockOffsets, bloom);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static GameData readFromBlock(Segment segment, int block, int gameID) throws IOException, DataFormatException {
+        var header = readFully(segment.channel(), segment.blockOffsets()[block], 12);
+        int compressedLength = header.getInt();
+        int rawLength = header.getInt();
+        int checksum = header.getInt();
+
+        var compressed = readFully(segment.channel(), segment.blockOffsets()[block] + 12, compressedLength);
+        var crc = new CRC32();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Archive block checksum mismatch");
+        }
+
+        var in = new DataInputStream(new ByteArrayInputStream(inflate(compressed.array(), rawLength)));
+        while (in.available() > 0) {
+            int id = in.readInt();
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            if (id == gameID) {
+                return GameCodec.decode(encoded);
+            }
+            if (id > gameID) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            var out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            var buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws DataFormatException, IOException {
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            var raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != rawLength) {
+                throw new IOException("Archive block is truncated");
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void addToBloom(long[] bloom, int gameID) {
+        long bits = (long) bloom.length * 64;
+        long hash = mix(gameID);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(hash + i * (hash >>> 32), bits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static boolean mightContain(long[] bloom, int gameID) {
+        long bits = (long) bloom.length * 64;
+        long hash = mix(gameID);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(hash + i * (hash >>> 32), bits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(int value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return written;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Archive segment ended early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void closeAll(List<Segment> segments) {
+        for (var segment : segments) {
+            try {
+                segment.channel().close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
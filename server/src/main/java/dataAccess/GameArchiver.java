@@ -0,0 +1,54 @@
+package dataAccess;
+
+import exception.ResponseException;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves finished games to cold storage in the background. Every intervalSeconds it
+ * archives games that finished more than archiveAfterMillis ago, a batch at a time,
+ * until a batch comes back short.
+ */
+public class GameArchiver {
+    private final DataAccess dataAccess;
+    private final long archiveAfterMillis;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+
+    public GameArchiver(DataAccess dataAccess, long archiveAfterMillis, long intervalSeconds, int batchSize) {
+        this.dataAccess = dataAccess;
+        this.archiveAfterMillis = archiveAfterMillis;
+        this.batchSize = Math.max(1, batchSize);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "game-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archive, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void archive() {
+        try {
+            long finishedBefore = System.currentTimeMillis() - archiveAfterMillis;
+            int total = 0;
+            int archived;
+            do {
+                archived = dataAccess.archiveFinishedGames(finishedBefore, batchSize);
+                total += archived;
+            } while (archived >= batchSize && !Thread.currentThread().isInterrupted());
+
+            if (total > 0) {
+                System.out.printf("Archived %d finished games%n", total);
+            }
+        } catch (DataAccessException | ResponseException ex) {
+            System.out.printf("Unable to archive finished games: %s%n", ex.getMessage());
+        }
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
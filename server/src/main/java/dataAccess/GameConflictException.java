@@ -0,0 +1,19 @@
+package dataAccess;
+
+/**
+ * Indicates a game was changed by someone else between being read and being saved
+ */
+public class GameConflictException extends DataAccessException {
+    private static final long serialVersionUID = 1L;
+
+    private final int gameID;
+
+    public GameConflictException(int gameID) {
+        super(String.format("Game %d was changed by another request.", gameID));
+        this.gameID = gameID;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+}
@@ -0,0 +1,11 @@
+package dataAccess;
+
+import chess.ChessMove;
+import model.GameData;
+
+import java.util.List;
+
+/**
+ * A game's latest state together with the moves made since it was last saved, oldest first
+ */
+public record GameWrite(GameData gameData, List<ChessMove> moves) {}
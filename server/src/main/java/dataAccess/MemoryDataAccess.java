@@ -1,190 +1,390 @@
 package dataAccess;
 
+import config.ServerConfig;
+import exception.ResponseException;
 import model.AuthData;
 import model.GameData;
+import model.GameList;
+import model.GameQuery;
 import model.UserData;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps everything in concurrent maps indexed by username, auth token and game ID,
+ * so lookups don't scan and reads never lock. IDs come from atomic counters, and a
+ * join only succeeds if nobody changed the game since it was read.
+ * <p>
+ * Games are copied on the way in and on the way out, so a stored game is never
+ * changed in place: callers move pieces on their own copy and save it back.
+ */
 public class MemoryDataAccess implements DataAccess {
-    private int userID;
-    private int gameID;
-    private final HashMap<Integer, UserData> users;
-    private final HashMap<UserData, List<AuthData>> authTokens;
-    private final HashMap<String, Integer> gameIDs;
-    private final HashSet<GameData> games;
+    /**
+     * An auth token and when it stops being valid, in epoch milliseconds
+     */
+    public record IssuedAuth(AuthData auth, long expiresAt) {}
+
+    private final long tokenTtlMillis = ServerConfig.getLong("auth.tokenTtlMinutes", 1440) * 60_000;
+    private final AtomicInteger userID = new AtomicInteger();
+    private final AtomicInteger gameID = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, UserData> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, UserData> usersByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, IssuedAuth> authTokens = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> gameNames = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, GameData> games = new ConcurrentSkipListMap<>();
+    // Starts at the clock so versions from before a restart aren't handed out again
+    private final AtomicLong lobbyVersion = new AtomicLong(System.currentTimeMillis());
 
-    public MemoryDataAccess() {
-        userID = 0;
-        gameID = 0;
-        users = new HashMap<>();
-        authTokens = new HashMap<>();
-        gameIDs = new HashMap<>();
-        games = new HashSet<>();
+    @Override
+    public void createUser(UserData userData) throws DataAccessException, ResponseException {
+        storeUser(new UserData(userData.username(), hashPassword(userData.password()), userData.email()));
     }
 
     @Override
-    public void createUser(UserData userData) {
-        var user = new UserData(userData.username(), hashPassword(userData.password()), userData.email());
-        getUsers().put(++userID, user);
+    public void createUsers(Collection<UserData> users) throws DataAccessException {
+        for (var user : users) {
+            storeUser(user);
+        }
     }
 
     @Override
-    public AuthData createAuth(UserData userData) {
-        String newUUID = UUID.randomUUID().toString();
-        List<AuthData> userAuths = authTokens.get(userData);
+    public AuthData createAuth(UserData userData) throws DataAccessException {
+        AuthData newAuthData = new AuthData(UUID.randomUUID().toString(), userData.username());
+        storeAuth(new IssuedAuth(newAuthData, System.currentTimeMillis() + tokenTtlMillis));
+        return newAuthData;
+    }
+
+    @Override
+    public Integer createGameID(String gameName) throws DataAccessException {
+        int newGameID = gameID.incrementAndGet();
+        storeGameID(gameName, newGameID);
+        return newGameID;
+    }
+
+    @Override
+    public void createGame(GameData gameData) throws DataAccessException {
+        storeGame(gameData);
+    }
 
-        AuthData newAuthData = new AuthData(newUUID, userData.username());
-        if (userAuths == null) {
-            userAuths = new ArrayList<>();
-            userAuths.add(newAuthData);
-            authTokens.put(userData, userAuths);
-        } else {
-            userAuths.add(newAuthData);
+    /*
+     * Every change goes through one of the store/remove methods below, so subclasses
+     * that persist the data only need to override these.
+     */
+
+    protected void storeUser(UserData user) throws DataAccessException {
+        if (usersByName.putIfAbsent(user.username(), user) != null) {
+            throw new DataAccessException("Username already exists in the database.");
         }
+        users.put(userID.incrementAndGet(), user);
+    }
 
-        return newAuthData;
+    /**
+     * Replaces the stored user with the same username
+     */
+    protected void replaceUser(UserData user) throws DataAccessException {
+        usersByName.replace(user.username(), user);
+        users.replaceAll((id, stored) -> stored.username().equals(user.username()) ? user : stored);
     }
 
-    @Override
-    public Integer createGameID(String gameName) {
-        gameIDs.put(gameName, ++gameID);
+    protected void storeAuth(IssuedAuth issued) throws DataAccessException {
+        authTokens.put(issued.auth().authToken(), issued);
+    }
 
-        return gameID;
+    /**
+     * Extends a token only if it is still stored as read, so a renewal can't bring
+     * back a token that was logged out meanwhile
+     */
+    protected void renewAuth(IssuedAuth current, IssuedAuth renewed) throws DataAccessException {
+        authTokens.replace(current.auth().authToken(), current, renewed);
     }
 
-    @Override
-    public void createGame(GameData gameData) {
-        games.add(gameData);
+    protected void removeAuth(AuthData auth) throws DataAccessException {
+        authTokens.remove(auth.authToken());
     }
 
-    @Override
-    public UserData getUser(String username) {
-        for (UserData user : getUsers().values()) {
-            if (user.username().equals(username)) {
-                return user;
-            }
+    protected void storeGameID(String gameName, int newGameID) throws DataAccessException {
+        gameNames.put(newGameID, gameName);
+        gameID.accumulateAndGet(newGameID, Math::max);
+    }
+
+    /**
+     * Adds a copy of the game, replacing any stored game with the same ID
+     */
+    protected void storeGame(GameData gameData) throws DataAccessException {
+        GameData previous = games.put(gameData.getGameID(), gameData.copy());
+        if (previous == null || !sameListing(previous, gameData)) {
+            lobbyVersion.incrementAndGet();
         }
+    }
+
+    /**
+     * Replaces the game with a copy of updated, only if expected is still the stored instance
+     * @return whether the game was replaced
+     */
+    protected boolean replaceGame(GameData expected, GameData updated) throws DataAccessException {
+        boolean replaced = games.replace(expected.getGameID(), expected, updated.copy());
+        if (replaced && !sameListing(expected, updated)) {
+            lobbyVersion.incrementAndGet();
+        }
+        return replaced;
+    }
 
-        return null;
+    /**
+     * @return whether the game lists the same way before and after a change
+     */
+    private static boolean sameListing(GameData before, GameData after) {
+        return Objects.equals(before.getGameName(), after.getGameName())
+                && Objects.equals(before.getWhiteUsername(), after.getWhiteUsername())
+                && Objects.equals(before.getBlackUsername(), after.getBlackUsername())
+                && isFinished(before) == isFinished(after);
+    }
+
+    private static boolean isFinished(GameData gameData) {
+        return gameData.getGame() != null && gameData.getGame().getGameIsOver();
+    }
+
+    @Override
+    public UserData getUser(String username) {
+        return username == null ? null : usersByName.get(username);
     }
 
+    /**
+     * @return a copy of the users by ID
+     */
     @Override
     public HashMap<Integer, UserData> getUsers() {
-        return users;
+        return new HashMap<>(users);
     }
 
+    /**
+     * Saves the game as the next version, or adds it if it isn't stored yet
+     * @throws GameConflictException if the game was saved since this copy was read
+     */
     @Override
-    public void updateGame(GameData gameData) {
+    public void updateGame(GameData gameData) throws DataAccessException {
+        GameData current = getStoredGame(gameData.getGameID());
+        if (current == null) {
+            storeGame(gameData);
+            return;
+        }
 
+        GameData updated = new GameData(gameData.getGameID(), gameData.getWhiteUsername(), gameData.getBlackUsername(),
+                gameData.getGameName(), gameData.getGame(), current.getVersion() + 1);
+        if (current.getVersion() != gameData.getVersion() || !replaceGame(current, updated)) {
+            throw new GameConflictException(gameData.getGameID());
+        }
+        gameData.setVersion(updated.getVersion());
     }
 
+    /**
+     * Returns the token if it hasn't expired. Using a token with less than half its
+     * lifetime left extends it by another full lifetime.
+     */
     @Override
-    public AuthData getAuth(String authToken) {
-        for (Map.Entry<UserData, List<AuthData>> entry : authTokens.entrySet()) {
-            List<AuthData> authList = entry.getValue();
-
-            for (AuthData auth : authList) {
-                if (auth.authToken().equals(authToken)) {
-                    return auth;
-                }
-            }
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        IssuedAuth issued = authToken == null ? null : authTokens.get(authToken);
+        if (issued == null) {
+            return null;
         }
 
-        return null;
+        long now = System.currentTimeMillis();
+        long remaining = issued.expiresAt() - now;
+        if (remaining <= 0) {
+            return null;
+        }
+        if (remaining < tokenTtlMillis / 2) {
+            renewAuth(issued, new IssuedAuth(issued.auth(), now + tokenTtlMillis));
+        }
+        return issued.auth();
     }
 
+    /**
+     * @return a copy of the auth tokens grouped by user
+     */
     @Override
     public HashMap<UserData, List<AuthData>> getAuths() {
-        return authTokens;
+        var auths = new HashMap<UserData, List<AuthData>>();
+        long now = System.currentTimeMillis();
+        for (IssuedAuth issued : authTokens.values()) {
+            if (issued.expiresAt() <= now) {
+                continue;
+            }
+            AuthData auth = issued.auth();
+            UserData user = getUser(auth.username());
+            if (user == null) {
+                user = new UserData(auth.username(), null, null);
+            }
+            auths.computeIfAbsent(user, key -> new ArrayList<>()).add(auth);
+        }
+        return auths;
+    }
+
+    @Override
+    public int purgeExpiredAuths(int batchSize) throws DataAccessException {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (IssuedAuth issued : authTokens.values()) {
+            if (purged >= batchSize) {
+                break;
+            }
+            if (issued.expiresAt() <= now) {
+                removeAuth(issued.auth());
+                purged++;
+            }
+        }
+        return purged;
     }
 
+    /**
+     * @return copies of the games, in ID order
+     */
     @Override
     public Collection<GameData> getGames() {
-        return games;
+        var copies = new ArrayList<GameData>(games.size());
+        for (GameData game : games.values()) {
+            copies.add(game.copy());
+        }
+        return copies;
     }
 
     @Override
-    public void deleteAuth(AuthData authToken) {
-        for (Map.Entry<UserData, List<AuthData>> entry : getAuths().entrySet()) {
-            List<AuthData> authList = entry.getValue();
+    public GameList listGameSummaries(GameQuery query) {
+        var after = query.afterGameID() == null ? games : games.tailMap(query.afterGameID(), false);
+        return query.page(after.values());
+    }
 
-            for (AuthData auth : authList) {
-                if (auth.equals(authToken)) {
-                    if (authList.size() == 1) {
-                        authTokens.remove(entry.getKey());
-                    } else {
-                        authList.remove(auth);
-                    }
-                    break;
-                }
-            }
+    @Override
+    public long getLobbyVersion() {
+        return lobbyVersion.get();
+    }
 
-        }
+    @Override
+    public void deleteAuth(AuthData authToken) throws DataAccessException {
+        removeAuth(authToken);
     }
 
+    /**
+     * @return a copy of the game the caller is free to change, or null if it isn't stored
+     */
     @Override
     public GameData getGameData(int gameID) {
-        return null;
+        GameData stored = games.get(gameID);
+        return stored == null ? null : stored.copy();
+    }
+
+    /**
+     * @return the stored instances of the games in ID order, which must not be changed
+     */
+    protected Collection<GameData> getStoredGames() {
+        return Collections.unmodifiableCollection(games.values());
+    }
+
+    /**
+     * @return the stored instance of the game, which must not be changed, or null
+     */
+    protected GameData getStoredGame(int gameID) {
+        return games.get(gameID);
     }
 
     @Override
     public void joinGame(String username, String playerColor, int gameID) throws InvalidGameID, DataAccessException {
-        if (!gameIDs.containsValue(gameID)) {
+        if (!gameNames.containsKey(gameID)) {
             throw new InvalidGameID("Game does not exist.");
         }
+        if (playerColor == null) {
+            return;
+        }
 
-        for (GameData game : games) {
-            if (game.getGameID() == gameID && playerColor != null) {
-                switch (playerColor) {
-                    case "WHITE":
-                        if (game.getWhiteUsername() != null) {
-                            throw new DataAccessException("Player has already joined as white.");
-                        }
-                        games.add(game.changeWhiteName(username));
-                        break;
-                    case "BLACK":
-                        if (game.getBlackUsername() != null) {
-                            throw new DataAccessException("Player has already joined as white.");
-                        }
-                        games.add(game.changeBlackName(username));
-                        break;
-                }
-                games.remove(game);
+        GameData game;
+        GameData joined;
+        do {
+            game = getStoredGame(gameID);
+            if (game == null) {
+                return;
             }
-        }
+            switch (playerColor) {
+                case "WHITE":
+                    if (game.getWhiteUsername() != null) {
+                        throw new DataAccessException("Player has already joined as white.");
+                    }
+                    joined = game.changeWhiteName(username);
+                    joined.setVersion(game.getVersion() + 1);
+                    break;
+                case "BLACK":
+                    if (game.getBlackUsername() != null) {
+                        throw new DataAccessException("Player has already joined as white.");
+                    }
+                    joined = game.changeBlackName(username);
+                    joined.setVersion(game.getVersion() + 1);
+                    break;
+                default:
+                    return;
+            }
+        } while (!replaceGame(game, joined));
     }
 
     @Override
-    public void clearUsers() {
-        getUsers().clear();
-        userID = 1;
+    public void clearUsers() throws DataAccessException {
+        users.clear();
+        usersByName.clear();
+        userID.set(1);
     }
 
     @Override
-    public void clearGames() {
+    public void clearGames() throws DataAccessException {
         games.clear();
-        gameID = 1;
+        gameID.set(1);
+        lobbyVersion.incrementAndGet();
     }
 
     @Override
-    public void clearAuthTokens() {
+    public void clearAuthTokens() throws DataAccessException {
         authTokens.clear();
     }
 
     @Override
-    public void clearGameIDs() { gameIDs.clear(); }
+    public void clearGameIDs() throws DataAccessException {
+        gameNames.clear();
+    }
+
+    /**
+     * @return the live map of auth tokens, including expired ones not yet purged
+     */
+    protected Map<String, IssuedAuth> getIssuedAuths() {
+        return authTokens;
+    }
+
+    /**
+     * @return the live map of created game IDs to their names
+     */
+    protected Map<Integer, String> getGameNames() {
+        return gameNames;
+    }
+
+    @Override
+    public String hashPassword(String password) throws ResponseException {
+        return PasswordHasher.getDefault().hash(password);
+    }
 
     @Override
-    public String hashPassword(String password) {
-        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
-        return encoder.encode(password);
+    public boolean passwordsMatch(String loginPassword, String storedPassword) throws ResponseException {
+        return PasswordHasher.getDefault().matches(loginPassword, storedPassword);
     }
 
     @Override
-    public boolean passwordsMatch(String loginPassword, String storedPassword) {
-        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
-        return encoder.matches(loginPassword, storedPassword);
+    public boolean passwordNeedsRehash(String storedPassword) {
+        return PasswordHasher.getDefault().needsRehash(storedPassword);
+    }
+
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException {
+        UserData user = getUser(username);
+        if (user != null) {
+            replaceUser(new UserData(username, passwordHash, user.email()));
+        }
     }
 }
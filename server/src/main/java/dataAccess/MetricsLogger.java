@@ -0,0 +1,49 @@
+package dataAccess;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Prints the store's counters every intervalSeconds, one line per source, so cache
+ * hit rates and connection pool waits show up in the server log.
+ */
+public class MetricsLogger {
+    private final Map<String, Supplier<?>> sources = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsLogger(long intervalSeconds) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "metrics-logger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::log, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds counters to the log
+     * @param name what the line is labelled with
+     * @param metrics returns the current counters, usually a record
+     */
+    public synchronized void add(String name, Supplier<?> metrics) {
+        sources.put(name, metrics);
+    }
+
+    private synchronized void log() {
+        for (var source : sources.entrySet()) {
+            try {
+                System.out.printf("%s: %s%n", source.getKey(), source.getValue().get());
+            } catch (RuntimeException ex) {
+                System.out.printf("Unable to read %s metrics: %s%n", source.getKey(), ex.getMessage());
+            }
+        }
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
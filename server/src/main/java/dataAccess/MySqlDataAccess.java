@@ -1,60 +1,147 @@
 package dataAccess;
 
-import com.google.gson.Gson;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.PackedGame;
+import com.google.gson.JsonParseException;
+import config.ServerConfig;
 import model.AuthData;
+import model.GameCodec;
+import model.GameList;
+import model.GameQuery;
+import model.GameSummary;
 import model.UserData;
 import model.GameData;
+import serialization.Serializer;
 
+import java.io.*;
 import java.util.*;
 import java.sql.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import exception.ResponseException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 import static java.sql.Types.NULL;
 
 public class MySqlDataAccess implements DataAccess {
+    /*
+     * MySQL applies single-table UPDATE assignments left to right, so finishedAt sees
+     * the new status and is stamped the first time a game is saved as finished.
+     */
+    private static final String GAME_COLUMNS = "gameID, gameName, whiteUsername, blackUsername, gameState, snapshot, snapshotPly, version";
+    private static final String UPDATE_GAME = """
+            UPDATE games SET gameName = ?, whiteUsername = ?, blackUsername = ?, status = ?,
+                finishedAt = IF(status = 'FINISHED', COALESCE(finishedAt, NOW()), NULL),
+                snapshot = ?, snapshotPly = ?, gameState = NULL, version = version + 1
+            WHERE gameID = ? AND version = ?
+            """;
+    /**
+     * Saving moves moves the game to its next version like any other write, so moves
+     * can't be saved over a join, a resignation or another server's moves
+     */
+    private static final String SNAPSHOT_GAME = """
+            UPDATE games SET status = ?, finishedAt = IF(status = 'FINISHED', COALESCE(finishedAt, NOW()), NULL),
+                snapshot = ?, snapshotPly = ?, gameState = NULL, version = version + 1
+            WHERE gameID = ? AND version = ?
+            """;
+    private static final String BUMP_VERSION = "UPDATE games SET version = version + 1 WHERE gameID = ? AND version = ?";
+    /**
+     * Run in the same transaction as every change to the game listing, so the lobby
+     * version never moves before the change can be read
+     */
+    private static final String LOBBY_CHANGED = "UPDATE lobby_version SET version = version + 1 WHERE id = 1";
+
+    private static final int BACKFILL_BATCH = 500;
+    private static final int BATCH_ROWS = 1000;
+
+    private final int snapshotInterval = Math.max(1, ServerConfig.getInt("db.snapshotInterval", 20));
+    private final int tokenTtlSeconds = ServerConfig.getInt("auth.tokenTtlMinutes", 1440) * 60;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
     public MySqlDataAccess() {
+        DatabaseManager.retainPool();
         try {
             configureDatabase();
         } catch (ResponseException | DataAccessException e) {
+            DatabaseManager.releasePool();
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public String hashPassword(String password) {
-        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
-        return encoder.encode(password);
+    public String hashPassword(String password) throws ResponseException {
+        return PasswordHasher.getDefault().hash(password);
     }
 
     @Override
-    public boolean passwordsMatch(String loginPassword, String storedPassword) {
-        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
-        return encoder.matches(loginPassword, storedPassword);
+    public boolean passwordsMatch(String loginPassword, String storedPassword) throws ResponseException {
+        return PasswordHasher.getDefault().matches(loginPassword, storedPassword);
+    }
+
+    @Override
+    public boolean passwordNeedsRehash(String storedPassword) {
+        return PasswordHasher.getDefault().needsRehash(storedPassword);
+    }
+
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException, ResponseException {
+        executeUpdate("UPDATE users SET passwordHash = ? WHERE username = ?", passwordHash, username);
+    }
+
+    /**
+     * Lets go of the shared connection pool, which closes once no MySqlDataAccess uses it
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            DatabaseManager.releasePool();
+        }
     }
 
     @Override
     public void createUser(UserData userData) throws DataAccessException, ResponseException {
-        String statement = "INSERT INTO users (username, userData) VALUES (?, ?)";
+        String statement = "INSERT INTO users (username, passwordHash, email) VALUES (?, ?, ?)";
         String hashedPassword = hashPassword(userData.password());
-        UserData newUserData = new UserData(userData.username(), hashedPassword, userData.email());
-        var jsonUser = new Gson().toJson(newUserData);
-        executeUpdate(statement, newUserData.username(), jsonUser);
+        executeUpdate(statement, userData.username(), hashedPassword, userData.email());
+    }
+
+    /**
+     * Inserts the users in one transaction, sent as multi-row statements of up to
+     * BATCH_ROWS rows each
+     */
+    @Override
+    public void createUsers(Collection<UserData> users) throws DataAccessException, ResponseException {
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var ps = conn.prepareStatement("INSERT INTO users (username, passwordHash, email) VALUES (?, ?, ?)")) {
+                int pending = 0;
+                for (var user : users) {
+                    setParameters(ps, user.username(), user.password(), user.email());
+                    ps.addBatch();
+                    if (++pending == BATCH_ROWS) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to create users: %s", e.getMessage()));
+        }
     }
 
     @Override
     public AuthData createAuth(UserData userData) throws DataAccessException, ResponseException {
-        String statement = "INSERT INTO authTokens (userData, authData, authToken) VALUES (?, ?, ?)";
+        String statement = "INSERT INTO auth_tokens (authToken, username, expiresAt) VALUES (?, ?, NOW() + INTERVAL ? SECOND)";
         String newUUID = UUID.randomUUID().toString();
         AuthData authData = new AuthData(newUUID, userData.username());
-        UserData newUserData = new UserData(userData.username(), hashPassword(userData.password()), userData.email());
-
-        var jsonUser = new Gson().toJson(newUserData);
-        var jsonAuth = new Gson().toJson(authData);
-        executeUpdate(statement, jsonUser, jsonAuth, newUUID);
+        executeUpdate(statement, newUUID, userData.username(), tokenTtlSeconds);
 
         return authData;
     }
@@ -65,24 +152,114 @@ public class MySqlDataAccess implements DataAccess {
         return executeUpdate(statement, gameName);
     }
 
+    @Override
+    public List<Integer> createGameIDs(List<String> gameNames) throws DataAccessException, ResponseException {
+        var gameIDs = new ArrayList<Integer>(gameNames.size());
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("INSERT INTO gameIDs (gameName) VALUES (?)", RETURN_GENERATED_KEYS)) {
+            for (int start = 0; start < gameNames.size(); start += BATCH_ROWS) {
+                for (var gameName : gameNames.subList(start, Math.min(gameNames.size(), start + BATCH_ROWS))) {
+                    setParameters(ps, gameName);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (var rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        gameIDs.add(rs.getInt(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to create game IDs: %s", e.getMessage()));
+        }
+        if (gameIDs.size() != gameNames.size()) {
+            throw new DataAccessException("The database returned the wrong number of game IDs.");
+        }
+        return gameIDs;
+    }
+
+    /**
+     * Inserts the games with their final snapshots and their whole move logs in one
+     * transaction, each table as multi-row statements of up to BATCH_ROWS rows
+     */
+    @Override
+    public void createGames(Collection<GameWrite> games) throws DataAccessException, ResponseException {
+        String statement = """
+                INSERT INTO games (gameID, gameName, whiteUsername, blackUsername, status, finishedAt, snapshot, snapshotPly)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var gameInsert = conn.prepareStatement(statement);
+                 var moveInsert = conn.prepareStatement("INSERT INTO moves (gameID, ply, move) VALUES (?, ?, ?)")) {
+                var now = new Timestamp(System.currentTimeMillis());
+                int pendingGames = 0;
+                int pendingMoves = 0;
+                for (var write : games) {
+                    GameData gameData = write.gameData();
+                    ChessGame game = gameData.getGame();
+                    String status = gameStatus(gameData);
+                    setParameters(gameInsert, gameData.getGameID(), gameData.getGameName(), gameData.getWhiteUsername(),
+                            gameData.getBlackUsername(), status, status.equals("FINISHED") ? now : null,
+                            encodeSnapshot(game), game.getPly());
+                    gameInsert.addBatch();
+                    if (++pendingGames == BATCH_ROWS) {
+                        gameInsert.executeBatch();
+                        pendingGames = 0;
+                    }
+
+                    int ply = game.getPly() - write.moves().size();
+                    for (var move : write.moves()) {
+                        setParameters(moveInsert, gameData.getGameID(), ++ply, PackedGame.packMove(move));
+                        moveInsert.addBatch();
+                        if (++pendingMoves == BATCH_ROWS) {
+                            moveInsert.executeBatch();
+                            pendingMoves = 0;
+                        }
+                    }
+                }
+                gameInsert.executeBatch();
+                moveInsert.executeBatch();
+                lobbyChanged(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to create games: %s", e.getMessage()));
+        }
+    }
+
     @Override
     public void createGame(GameData gameData) throws DataAccessException, ResponseException, SQLException {
-        String statement = "INSERT INTO games (gameID, gameData) VALUES (?, ?)";
-        int gameID = gameData.getGameID();
-        var jsonGame = new Gson().toJson(gameData);
-        executeUpdate(statement, gameID, jsonGame);
+        String statement = "INSERT INTO games (gameID, gameName, whiteUsername, blackUsername, status, snapshot, snapshotPly) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var ps = conn.prepareStatement(statement)) {
+                setParameters(ps, gameData.getGameID(), gameData.getGameName(), gameData.getWhiteUsername(),
+                        gameData.getBlackUsername(), gameStatus(gameData), encodeSnapshot(gameData.getGame()), gameData.getGame().getPly());
+                ps.executeUpdate();
+                lobbyChanged(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to create game: %s", e.getMessage()));
+        }
     }
 
     @Override
     public UserData getUser(String username) throws DataAccessException, ResponseException {
         try (var conn = DatabaseManager.getConnection()) {
-            String statement = "SELECT userData FROM users WHERE username=?";
+            String statement = "SELECT username, passwordHash, email FROM users WHERE username=?";
             try (var ps = conn.prepareStatement(statement)) {
                 ps.setString(1, username);
                 try (var rs = ps.executeQuery()) {
                     if (rs.next()) {
-                        String userJson = rs.getString("userData");
-                        return new Gson().fromJson(userJson, UserData.class);
+                        return readUser(rs);
                     }
                     return null;
                 }
@@ -92,16 +269,28 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
+    /**
+     * Returns the token if it hasn't expired. Using a token with less than half its
+     * lifetime left extends it by another full lifetime.
+     */
     @Override
     public AuthData getAuth(String authToken) throws DataAccessException, ResponseException {
         try (var conn = DatabaseManager.getConnection()) {
-            String statement = "SELECT authData FROM authTokens WHERE authToken=?";
+            String statement = """
+                    SELECT authToken, username, TIMESTAMPDIFF(SECOND, NOW(), expiresAt) AS remaining
+                    FROM auth_tokens WHERE authToken=? AND expiresAt > NOW()
+                    """;
             try (var ps = conn.prepareStatement(statement)) {
                 ps.setString(1, authToken);
                 try (var rs = ps.executeQuery()) {
                     if (rs.next()) {
-                        String authJson = rs.getString("authData");
-                        return new Gson().fromJson(authJson, AuthData.class);
+                        if (rs.getInt("remaining") < tokenTtlSeconds / 2) {
+                            try (var renew = conn.prepareStatement("UPDATE auth_tokens SET expiresAt = NOW() + INTERVAL ? SECOND WHERE authToken=?")) {
+                                setParameters(renew, tokenTtlSeconds, authToken);
+                                renew.executeUpdate();
+                            }
+                        }
+                        return new AuthData(rs.getString("authToken"), rs.getString("username"));
                     }
                 }
             }
@@ -116,21 +305,17 @@ public class MySqlDataAccess implements DataAccess {
     public HashMap<UserData, List<AuthData>> getAuths() throws DataAccessException, ResponseException {
         var result = new HashMap<UserData, List<AuthData>>();
         try (var conn = DatabaseManager.getConnection()) {
-            String statement = "SELECT userData, authData FROM authTokens";
+            String statement = """
+                    SELECT u.username, u.passwordHash, u.email, a.authToken
+                    FROM auth_tokens a JOIN users u ON u.username = a.username
+                    WHERE a.expiresAt > NOW()
+                    """;
             try (var ps = conn.prepareStatement(statement)) {
                 try (var rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        String userJson = rs.getString("userData");
-                        String authJson = rs.getString("authData");
-                        UserData userData = new Gson().fromJson(userJson, UserData.class);
-                        AuthData authData = new Gson().fromJson(authJson, AuthData.class);
-
-                        if (result.get(userData) == null) {
-                            result.put(userData, new ArrayList<>(Collections.singleton(authData)));
-                        } else {
-                            result.get(userData).add(authData);
-                        }
-                        result.computeIfAbsent(userData, key -> Collections.singletonList(authData));
+                        UserData userData = readUser(rs);
+                        AuthData authData = new AuthData(rs.getString("authToken"), userData.username());
+                        result.computeIfAbsent(userData, key -> new ArrayList<>()).add(authData);
                     }
                 }
             }
@@ -141,20 +326,78 @@ public class MySqlDataAccess implements DataAccess {
         return result;
     }
 
+    /**
+     * Reads only the summary columns, walking the primary key from the cursor, so a
+     * page costs the same no matter how many games exist
+     */
+    @Override
+    public GameList listGameSummaries(GameQuery query) throws ResponseException, DataAccessException {
+        var statement = new StringBuilder("SELECT gameID, gameName, whiteUsername, blackUsername FROM games WHERE gameID > ?");
+        var parameters = new ArrayList<Object>();
+        parameters.add(query.afterGameID() == null ? 0 : query.afterGameID());
+        if (query.openSeats()) {
+            statement.append(" AND (whiteUsername IS NULL OR blackUsername IS NULL)");
+        }
+        if (query.player() != null) {
+            statement.append(" AND (whiteUsername = ? OR blackUsername = ?)");
+            parameters.add(query.player());
+            parameters.add(query.player());
+        }
+        if (query.status() != null) {
+            statement.append(" AND status = ?");
+            parameters.add(query.status());
+        }
+        statement.append(" ORDER BY gameID LIMIT ?");
+        parameters.add(query.limit() + 1);
+
+        var summaries = new ArrayList<GameSummary>(query.limit());
+        Integer nextCursor = null;
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(statement.toString())) {
+            setParameters(ps, parameters.toArray());
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (summaries.size() == query.limit()) {
+                        nextCursor = summaries.get(summaries.size() - 1).gameID();
+                        break;
+                    }
+                    summaries.add(new GameSummary(rs.getInt("gameID"), rs.getString("whiteUsername"),
+                            rs.getString("blackUsername"), rs.getString("gameName")));
+                }
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to read data: %s", e.getMessage()));
+        }
+        return new GameList(summaries, nextCursor);
+    }
+
     @Override
     public Collection<GameData> getGames() throws DataAccessException, ResponseException {
         ArrayList<GameData> games = new ArrayList<>();
         try (var conn = DatabaseManager.getConnection()) {
-            String statement = "SELECT gameData FROM games";
+            String statement = "SELECT " + GAME_COLUMNS + " FROM games";
+            var gamesByID = new HashMap<Integer, GameData>();
             try (var ps = conn.prepareStatement(statement)) {
                 try (var rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        String gameJson = rs.getString("gameData");
-                        GameData gameData = new Gson().fromJson(gameJson, GameData.class);
+                        var gameData = readGame(rs);
+                        gamesByID.put(gameData.getGameID(), gameData);
                         games.add(gameData);
                     }
                 }
             }
+
+            String moveStatement = """
+                    SELECT m.gameID, m.move FROM moves m JOIN games g ON g.gameID = m.gameID
+                    WHERE m.ply > g.snapshotPly ORDER BY m.gameID, m.ply
+                    """;
+            try (var ps = conn.prepareStatement(moveStatement)) {
+                try (var rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        replayMove(gamesByID.get(rs.getInt("gameID")), rs.getInt("move"));
+                    }
+                }
+            }
         } catch (SQLException e) {
             throw new ResponseException(500, String.format("Unable to read data: %s", e.getMessage()));
         }
@@ -166,14 +409,11 @@ public class MySqlDataAccess implements DataAccess {
     public HashMap<Integer, UserData> getUsers() throws DataAccessException, ResponseException {
         HashMap<Integer, UserData> users = new HashMap<>();
         try (var conn = DatabaseManager.getConnection()) {
-            String statement = "SELECT userID, userData FROM users";
+            String statement = "SELECT userID, username, passwordHash, email FROM users";
             try (var ps = conn.prepareStatement(statement)) {
                 try (var rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        Integer userID = rs.getInt("userID");
-                        String userJson = rs.getString("userData");
-                        UserData userData = new Gson().fromJson(userJson, UserData.class);
-                        users.put(userID, userData);
+                        users.put(rs.getInt("userID"), readUser(rs));
                     }
                 }
             }
@@ -186,38 +426,283 @@ public class MySqlDataAccess implements DataAccess {
 
     @Override
     public void deleteAuth(AuthData auth) throws DataAccessException, ResponseException {
-        String statement = "DELETE FROM authTokens WHERE authData=?";
-        executeUpdate(statement, auth);
+        String statement = "DELETE FROM auth_tokens WHERE authToken=?";
+        executeUpdate(statement, auth.authToken());
     }
 
+    /**
+     * Saves the game only if nobody else has saved it since it was read
+     * @throws GameConflictException if the stored version has moved on
+     */
     @Override
     public void updateGame(GameData gameData) throws DataAccessException, ResponseException {
-        String statement = "UPDATE games SET gameData = ? WHERE gameID = ?";
-        int gameID = gameData.getGameID();
-        var jsonGame = new Gson().toJson(gameData);
-        executeUpdate(statement, jsonGame, gameID);
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var ps = conn.prepareStatement(UPDATE_GAME)) {
+                setParameters(ps, gameUpdateParameters(gameData));
+                if (ps.executeUpdate() == 0) {
+                    conn.rollback();
+                    throw new GameConflictException(gameData.getGameID());
+                }
+                lobbyChanged(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            gameData.setVersion(gameData.getVersion() + 1);
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to update game: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Appends the move to the game's move log and saves the game as its next version,
+     * in one transaction. A full snapshot is only written every snapshotInterval plies
+     * and when the game ends, so reads replay at most that many moves.
+     * @throws GameConflictException if the stored version has moved on
+     */
+    @Override
+    public void recordMove(GameData gameData, ChessMove move) throws DataAccessException, ResponseException {
+        var write = new GameWrite(gameData, List.of(move));
+        if (!commitGames(List.of(write)).isEmpty()) {
+            throw new GameConflictException(gameData.getGameID());
+        }
+    }
+
+    /**
+     * Saves many games' moves, and any snapshots they are due, in one transaction
+     * with one JDBC batch per statement. Each saved game goes up one version.
+     * <p>
+     * A game whose stored version has moved on, or that already has a move at one of
+     * the plies, is left out and the rest are still saved. Duplicate moves fail the
+     * whole batch, so when one turns up the games are retried one transaction each
+     * to find out which it was.
+     */
+    @Override
+    public Collection<Integer> commitGames(Collection<GameWrite> writes) throws DataAccessException, ResponseException {
+        var conflicts = new HashSet<Integer>();
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                conflicts.addAll(writeGames(conn, writes));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                for (var write : writes) {
+                    try {
+                        conflicts.addAll(writeGames(conn, List.of(write)));
+                        conn.commit();
+                    } catch (SQLException single) {
+                        conn.rollback();
+                        if (!isDuplicateKey(single)) {
+                            throw single;
+                        }
+                        conflicts.add(write.gameData().getGameID());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to commit games: %s", e.getMessage()));
+        }
+        for (var write : writes) {
+            GameData gameData = write.gameData();
+            if (!conflicts.contains(gameData.getGameID())) {
+                gameData.setVersion(gameData.getVersion() + 1);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Moves each game to its next version, writing its snapshot if one is due, then
+     * appends its moves. Nothing is committed.
+     * @return the IDs of games whose stored version had moved on; their moves are not written
+     */
+    private Set<Integer> writeGames(Connection conn, Collection<GameWrite> writes) throws SQLException {
+        var conflicts = new HashSet<Integer>();
+        try (var gameUpdate = conn.prepareStatement(SNAPSHOT_GAME);
+             var versionBump = conn.prepareStatement(BUMP_VERSION)) {
+            var snapshotted = new ArrayList<GameData>();
+            var bumped = new ArrayList<GameData>();
+            for (var write : writes) {
+                GameData gameData = write.gameData();
+                int ply = gameData.getGame().getPly();
+                boolean snapshotDue = write.moves().isEmpty() || gameData.getGame().getGameIsOver();
+                for (int i = 0; i < write.moves().size() && !snapshotDue; i++) {
+                    snapshotDue = (ply - i) % snapshotInterval == 0;
+                }
+                if (snapshotDue) {
+                    setParameters(gameUpdate, snapshotParameters(gameData));
+                    gameUpdate.addBatch();
+                    snapshotted.add(gameData);
+                } else {
+                    setParameters(versionBump, gameData.getGameID(), gameData.getVersion());
+                    versionBump.addBatch();
+                    bumped.add(gameData);
+                }
+            }
+            addUnchanged(gameUpdate.executeBatch(), snapshotted, conflicts);
+            addUnchanged(versionBump.executeBatch(), bumped, conflicts);
+        }
+
+        try (var moveInsert = conn.prepareStatement("INSERT INTO moves (gameID, ply, move) VALUES (?, ?, ?)")) {
+            for (var write : writes) {
+                GameData gameData = write.gameData();
+                if (conflicts.contains(gameData.getGameID())) {
+                    continue;
+                }
+                int ply = gameData.getGame().getPly() - write.moves().size();
+                for (var move : write.moves()) {
+                    setParameters(moveInsert, gameData.getGameID(), ++ply, PackedGame.packMove(move));
+                    moveInsert.addBatch();
+                }
+            }
+            moveInsert.executeBatch();
+        }
+
+        for (var write : writes) {
+            if (!conflicts.contains(write.gameData().getGameID()) && write.gameData().getGame().getGameIsOver()) {
+                lobbyChanged(conn);
+                break;
+            }
+        }
+        return conflicts;
+    }
+
+    private static void lobbyChanged(Connection conn) throws SQLException {
+        try (var ps = conn.prepareStatement(LOBBY_CHANGED)) {
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public long getLobbyVersion() throws DataAccessException, ResponseException {
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("SELECT version FROM lobby_version WHERE id = 1");
+             var rs = ps.executeQuery()) {
+            if (!rs.next()) {
+                throw new DataAccessException("The lobby version row is missing.");
+            }
+            return rs.getLong("version");
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to read lobby version: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Adds the IDs of games whose versioned update matched no row
+     */
+    private static void addUnchanged(int[] counts, List<GameData> games, Set<Integer> unchanged) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                unchanged.add(games.get(i).getGameID());
+            }
+        }
+    }
+
+    /**
+     * @return whether the failure, or the one it wraps, is a unique key violation
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException
+                    || cause instanceof SQLException sqlException && "23000".equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public GameData getGameData(int gameID) throws DataAccessException, ResponseException {
         try (var conn = DatabaseManager.getConnection()) {
-            String statement = "SELECT gameData FROM games WHERE gameID = ?";
+            String statement = "SELECT " + GAME_COLUMNS + " FROM games WHERE gameID = ?";
+            GameData gameData;
             try (var ps = conn.prepareStatement(statement)) {
                 ps.setInt(1, gameID);
                 try (var rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        String gameJson = rs.getString("gameData");
-                        return new Gson().fromJson(gameJson, GameData.class);
-                    } else {
+                    if (!rs.next()) {
                         return null;
                     }
+                    gameData = readGame(rs);
                 }
             }
+
+            String moveStatement = "SELECT move FROM moves WHERE gameID = ? AND ply > ? ORDER BY ply";
+            try (var ps = conn.prepareStatement(moveStatement)) {
+                ps.setInt(1, gameID);
+                ps.setInt(2, gameData.getGame().getPly());
+                try (var rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        replayMove(gameData, rs.getInt("move"));
+                    }
+                }
+            }
+            return gameData;
         } catch (SQLException e) {
             throw new ResponseException(500, "Unable to get game data: " + e.getMessage());
         }
     }
 
+    /**
+     * Reads finished games straight from their snapshots, which are always written
+     * when a game ends
+     */
+    @Override
+    public List<GameData> listFinishedGames(long finishedBeforeMillis, int limit) throws DataAccessException, ResponseException {
+        String statement = "SELECT " + GAME_COLUMNS + """
+                 FROM games WHERE status = 'FINISHED' AND finishedAt < ?
+                ORDER BY finishedAt LIMIT ?
+                """;
+        var games = new ArrayList<GameData>();
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(statement)) {
+            setParameters(ps, new Timestamp(finishedBeforeMillis), limit);
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    games.add(readGame(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to list finished games: %s", e.getMessage()));
+        }
+        return games;
+    }
+
+    /**
+     * Deletes the games and their move logs in one transaction
+     */
+    @Override
+    public void deleteFinishedGames(Collection<Integer> gameIDs) throws DataAccessException, ResponseException {
+        if (gameIDs.isEmpty()) {
+            return;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(gameIDs.size(), "?"));
+        Object[] parameters = gameIDs.toArray();
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var deleteMoves = conn.prepareStatement("DELETE FROM moves WHERE gameID IN (" + placeholders + ")");
+                 var deleteGames = conn.prepareStatement("DELETE FROM games WHERE status = 'FINISHED' AND gameID IN (" + placeholders + ")")) {
+                setParameters(deleteMoves, parameters);
+                deleteMoves.executeUpdate();
+                setParameters(deleteGames, parameters);
+                deleteGames.executeUpdate();
+                lobbyChanged(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to delete archived games: %s", e.getMessage()));
+        }
+    }
+
     @Override
     public void joinGame(String username, String playerColor, int gameID) throws DataAccessException, InvalidGameID, ResponseException, SQLException {
         GameData game = getGameData(gameID);
@@ -255,13 +740,30 @@ public class MySqlDataAccess implements DataAccess {
 
     @Override
     public void clearGames() throws DataAccessException, ResponseException {
+        executeUpdate("TRUNCATE moves");
         String statement = "TRUNCATE games";
         executeUpdate(statement);
+        executeUpdate(LOBBY_CHANGED);
+    }
+
+    /**
+     * Deletes one batch of expired tokens. Each batch is its own short statement on the
+     * expiresAt index, so logins aren't held up behind a long delete.
+     */
+    @Override
+    public int purgeExpiredAuths(int batchSize) throws ResponseException, DataAccessException {
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("DELETE FROM auth_tokens WHERE expiresAt <= NOW() ORDER BY expiresAt LIMIT ?")) {
+            ps.setInt(1, batchSize);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new ResponseException(500, String.format("Unable to purge expired auth tokens: %s", e.getMessage()));
+        }
     }
 
     @Override
     public void clearAuthTokens() throws DataAccessException, ResponseException {
-        String statement = "TRUNCATE authTokens";
+        String statement = "TRUNCATE auth_tokens";
         executeUpdate(statement);
     }
 
@@ -274,18 +776,7 @@ public class MySqlDataAccess implements DataAccess {
     private int executeUpdate(String statement, Object... parameters) throws ResponseException, DataAccessException {
         try (var conn  = DatabaseManager.getConnection()) {
             try (var ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
-                for (int i = 0; i < parameters.length; i++) {
-                    var parameter = parameters[i];
-                    switch (parameter) {
-                        case String p -> ps.setString(i + 1, p);
-                        case Integer p -> ps.setInt(i + 1, p);
-                        case AuthData p -> ps.setString(i + 1, new Gson().toJson(p));
-                        case GameData p -> ps.setString(i + 1, new Gson().toJson(p));
-                        case UserData p -> ps.setString(i + 1, new Gson().toJson(p));
-                        case null -> ps.setNull(i + 1, NULL);
-                        default -> {}
-                    }
-                }
+                setParameters(ps, parameters);
                 ps.executeUpdate();
 
                 var rs = ps.getGeneratedKeys();
@@ -300,48 +791,260 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
-    private final String[] createStatements = {
-            """
-            CREATE TABLE IF NOT EXISTS users (
-                `userID` int NOT NULL AUTO_INCREMENT,
-                `username` TEXT DEFAULT NULL,
-                `userData` TEXT DEFAULT NULL,
-                PRIMARY KEY (`userID`)
-            )
-            """,
-            """
-            CREATE TABLE IF NOT EXISTS authTokens (
-                `userData` TEXT DEFAULT NULL,
-                `authData` TEXT DEFAULT NULL,
-                `authToken` TEXT DEFAULT NULL
-            )
-            """,
-            """
-            CREATE TABLE IF NOT EXISTS gameIDs (
-                `gameID` int NOT NULL AUTO_INCREMENT,
-                `gameName` TEXT DEFAULT NULL,
-                PRIMARY KEY (`gameID`)
-            )
-            """,
-            """
-            CREATE TABLE IF NOT EXISTS games (
-                `gameID` int NOT NULL,
-                `gameData` TEXT DEFAULT NULL,
-                PRIMARY KEY (`gameID`)
-            )
-            """
-    };
+    private static void setParameters(PreparedStatement ps, Object... parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            var parameter = parameters[i];
+            switch (parameter) {
+                case String p -> ps.setString(i + 1, p);
+                case Integer p -> ps.setInt(i + 1, p);
+                case byte[] p -> ps.setBytes(i + 1, p);
+                case Timestamp p -> ps.setTimestamp(i + 1, p);
+                case AuthData p -> ps.setString(i + 1, Serializer.toJson(p));
+                case GameData p -> ps.setString(i + 1, Serializer.toJson(p));
+                case UserData p -> ps.setString(i + 1, Serializer.toJson(p));
+                case null -> ps.setNull(i + 1, NULL);
+                default -> {}
+            }
+        }
+    }
+
+    private static Object[] gameUpdateParameters(GameData gameData) {
+        return new Object[]{gameData.getGameName(), gameData.getWhiteUsername(), gameData.getBlackUsername(),
+                gameStatus(gameData), encodeSnapshot(gameData.getGame()), gameData.getGame().getPly(),
+                gameData.getGameID(), gameData.getVersion()};
+    }
+
+    private static Object[] snapshotParameters(GameData gameData) {
+        int ply = gameData.getGame().getPly();
+        return new Object[]{gameStatus(gameData), encodeSnapshot(gameData.getGame()), ply, gameData.getGameID(),
+                gameData.getVersion()};
+    }
+
+    private static UserData readUser(ResultSet rs) throws SQLException {
+        return new UserData(rs.getString("username"), rs.getString("passwordHash"), rs.getString("email"));
+    }
+
+    /**
+     * Reads a game as of its last snapshot. Games saved before snapshots existed still
+     * have their state as JSON.
+     */
+    private static GameData readGame(ResultSet rs) throws SQLException, DataAccessException {
+        ChessGame game;
+        byte[] snapshot = rs.getBytes("snapshot");
+        if (snapshot != null) {
+            game = decodeSnapshot(snapshot);
+            game.setPly(rs.getInt("snapshotPly"));
+        } else {
+            game = Serializer.fromJson(rs.getString("gameState"), ChessGame.class);
+        }
+        return new GameData(rs.getInt("gameID"), rs.getString("whiteUsername"), rs.getString("blackUsername"),
+                rs.getString("gameName"), game, rs.getInt("version"));
+    }
+
+    private static void replayMove(GameData gameData, int packedMove) throws DataAccessException {
+        try {
+            gameData.getGame().makeMove(PackedGame.unpackMove(packedMove));
+        } catch (InvalidMoveException | IllegalArgumentException e) {
+            throw new DataAccessException(String.format("Move log for game %d is corrupt: %s", gameData.getGameID(), e.getMessage()));
+        }
+    }
+
+    private static byte[] encodeSnapshot(ChessGame game) {
+        return GameCodec.encodeGame(game);
+    }
+
+    private static ChessGame decodeSnapshot(byte[] snapshot) throws DataAccessException {
+        try {
+            return GameCodec.decodeGame(snapshot);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new DataAccessException("Unable to decode game: " + e.getMessage());
+        }
+    }
+
+    private static String gameStatus(GameData gameData) {
+        return gameData.getGame() != null && gameData.getGame().getGameIsOver() ? "FINISHED" : "ACTIVE";
+    }
+
+    /**
+     * Schema history. Version 1 is the original all-JSON layout; later versions move
+     * the JSON fields into typed, indexed columns in place. Never edit a migration
+     * that has shipped, add a new one instead.
+     */
+    private static final List<SchemaMigrator.Migration> migrations = List.of(
+            new SchemaMigrator.Migration(1, "Initial JSON tables",
+                    """
+                    CREATE TABLE IF NOT EXISTS users (
+                        `userID` int NOT NULL AUTO_INCREMENT,
+                        `username` TEXT DEFAULT NULL,
+                        `userData` TEXT DEFAULT NULL,
+                        PRIMARY KEY (`userID`)
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS authTokens (
+                        `userData` TEXT DEFAULT NULL,
+                        `authData` TEXT DEFAULT NULL,
+                        `authToken` TEXT DEFAULT NULL
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS gameIDs (
+                        `gameID` int NOT NULL AUTO_INCREMENT,
+                        `gameName` TEXT DEFAULT NULL,
+                        PRIMARY KEY (`gameID`)
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS games (
+                        `gameID` int NOT NULL,
+                        `gameData` TEXT DEFAULT NULL,
+                        PRIMARY KEY (`gameID`)
+                    )
+                    """),
+            new SchemaMigrator.Migration(2, "Typed user columns and unique usernames",
+                    "ALTER TABLE users ADD COLUMN `passwordHash` VARCHAR(100) DEFAULT NULL, ADD COLUMN `email` VARCHAR(255) DEFAULT NULL",
+                    """
+                    UPDATE users SET
+                        username = COALESCE(username, userData->>'$.username'),
+                        passwordHash = userData->>'$.password',
+                        email = userData->>'$.email'
+                    """,
+                    "DELETE newer FROM users newer JOIN users older ON newer.username = older.username AND newer.userID > older.userID",
+                    """
+                    ALTER TABLE users
+                        MODIFY `username` VARCHAR(255) NOT NULL,
+                        DROP COLUMN `userData`,
+                        ADD UNIQUE KEY `ux_users_username` (`username`)
+                    """),
+            new SchemaMigrator.Migration(3, "Auth tokens keyed by token",
+                    """
+                    CREATE TABLE auth_tokens (
+                        `authToken` VARCHAR(64) NOT NULL,
+                        `username` VARCHAR(255) NOT NULL,
+                        `createdAt` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                        PRIMARY KEY (`authToken`),
+                        KEY `ix_auth_tokens_username` (`username`)
+                    )
+                    """,
+                    """
+                    INSERT IGNORE INTO auth_tokens (authToken, username)
+                    SELECT authToken, authData->>'$.username' FROM authTokens
+                    WHERE authToken IS NOT NULL AND authData->>'$.username' IS NOT NULL
+                    """,
+                    "DROP TABLE authTokens"),
+            new SchemaMigrator.Migration(4, "Typed and indexed game columns",
+                    """
+                    ALTER TABLE games
+                        ADD COLUMN `gameName` VARCHAR(255) DEFAULT NULL,
+                        ADD COLUMN `whiteUsername` VARCHAR(255) DEFAULT NULL,
+                        ADD COLUMN `blackUsername` VARCHAR(255) DEFAULT NULL,
+                        ADD COLUMN `status` VARCHAR(16) NOT NULL DEFAULT 'ACTIVE',
+                        ADD COLUMN `gameState` MEDIUMTEXT DEFAULT NULL
+                    """,
+                    """
+                    UPDATE games SET
+                        gameName = gameData->>'$.gameName',
+                        whiteUsername = gameData->>'$.whiteUsername',
+                        blackUsername = gameData->>'$.blackUsername',
+                        status = IF(gameData->>'$.game.gameIsOver' = 'true', 'FINISHED', 'ACTIVE'),
+                        gameState = JSON_EXTRACT(gameData, '$.game')
+                    """,
+                    """
+                    ALTER TABLE games
+                        DROP COLUMN `gameData`,
+                        ADD KEY `ix_games_white` (`whiteUsername`),
+                        ADD KEY `ix_games_black` (`blackUsername`),
+                        ADD KEY `ix_games_status` (`status`)
+                    """),
+            new SchemaMigrator.Migration(5, "Move log with compact snapshots",
+                    """
+                    CREATE TABLE moves (
+                        `gameID` int NOT NULL,
+                        `ply` int NOT NULL,
+                        `move` SMALLINT UNSIGNED NOT NULL,
+                        `playedAt` TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                        PRIMARY KEY (`gameID`, `ply`)
+                    )
+                    """,
+                    """
+                    ALTER TABLE games
+                        ADD COLUMN `snapshot` VARBINARY(64) DEFAULT NULL,
+                        ADD COLUMN `snapshotPly` int NOT NULL DEFAULT 0
+                    """),
+            new SchemaMigrator.Migration(6, "Auth token expiry",
+                    "ALTER TABLE auth_tokens ADD COLUMN `expiresAt` TIMESTAMP NULL DEFAULT NULL",
+                    "UPDATE auth_tokens SET expiresAt = NOW() + INTERVAL 1 DAY",
+                    """
+                    ALTER TABLE auth_tokens
+                        MODIFY `expiresAt` TIMESTAMP NOT NULL,
+                        ADD KEY `ix_auth_tokens_expires` (`expiresAt`)
+                    """),
+            new SchemaMigrator.Migration(7, "Game versions for optimistic concurrency",
+                    "ALTER TABLE games ADD COLUMN `version` int NOT NULL DEFAULT 0"),
+            new SchemaMigrator.Migration(8, "Finish times for archiving",
+                    "ALTER TABLE games ADD COLUMN `finishedAt` TIMESTAMP NULL DEFAULT NULL",
+                    "UPDATE games SET finishedAt = NOW() WHERE status = 'FINISHED'",
+                    "ALTER TABLE games ADD KEY `ix_games_finished` (`status`, `finishedAt`)"),
+            new SchemaMigrator.Migration(9, "Lobby version for game listing validators",
+                    """
+                    CREATE TABLE lobby_version (
+                        `id` TINYINT NOT NULL,
+                        `version` BIGINT NOT NULL,
+                        PRIMARY KEY (`id`)
+                    )
+                    """,
+                    // Starts at the clock so a recreated database doesn't reuse old versions
+                    "INSERT INTO lobby_version (id, version) VALUES (1, UNIX_TIMESTAMP() * 1000)")
+    );
 
     private void configureDatabase() throws ResponseException, DataAccessException {
         DatabaseManager.createDatabase();
         try (var conn = DatabaseManager.getConnection()) {
-            for (var statement : createStatements) {
-                try (var preparedStatement = conn.prepareStatement(statement)) {
-                    preparedStatement.executeUpdate();
-                }
-            }
+            new SchemaMigrator(migrations).migrate(conn);
+            backfillSnapshots(conn);
         } catch (SQLException e) {
             throw new ResponseException(500, String.format("Unable to configure database: %s", e.getMessage()));
         }
     }
+
+    /**
+     * Converts games still stored as JSON to binary snapshots, a batch at a time.
+     * Rows whose JSON can't be parsed are left as they are.
+     */
+    private void backfillSnapshots(Connection conn) throws SQLException {
+        int lastGameID = 0;
+        while (true) {
+            var snapshots = new LinkedHashMap<Integer, ChessGame>();
+            int rows = 0;
+            try (var ps = conn.prepareStatement("""
+                    SELECT gameID, gameState FROM games
+                    WHERE snapshot IS NULL AND gameState IS NOT NULL AND gameID > ?
+                    ORDER BY gameID LIMIT ?
+                    """)) {
+                setParameters(ps, lastGameID, BACKFILL_BATCH);
+                try (var rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        lastGameID = rs.getInt("gameID");
+                        try {
+                            snapshots.put(lastGameID, Serializer.fromJson(rs.getString("gameState"), ChessGame.class));
+                        } catch (JsonParseException e) {
+                            System.out.printf("Game %d has unreadable JSON, leaving it as is: %s%n", lastGameID, e.getMessage());
+                        }
+                    }
+                }
+            }
+
+            try (var ps = conn.prepareStatement("UPDATE games SET snapshot = ?, snapshotPly = ?, gameState = NULL WHERE gameID = ? AND snapshot IS NULL")) {
+                for (var entry : snapshots.entrySet()) {
+                    setParameters(ps, encodeSnapshot(entry.getValue()), entry.getValue().getPly(), entry.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            if (rows < BACKFILL_BATCH) {
+                return;
+            }
+        }
+    }
 }
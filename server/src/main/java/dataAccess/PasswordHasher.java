@@ -0,0 +1,81 @@
+package dataAccess;
+
+import config.ServerConfig;
+import exception.ResponseException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.*;
+
+/**
+ * Runs BCrypt on a small pool of its own instead of on request threads. The pool has
+ * one thread per core and a bounded queue. When the queue is full, callers get a 503
+ * straight away instead of waiting, so a login storm can't take every request thread
+ * and all the CPU from game traffic.
+ * <p>
+ * Hashes made with a lower cost than auth.bcryptCost still match, and needsRehash
+ * reports them so they can be upgraded on the next login.
+ */
+public class PasswordHasher {
+    private static final PasswordHasher DEFAULT = new PasswordHasher(
+            ServerConfig.getInt("auth.bcryptCost", 10),
+            ServerConfig.getInt("auth.hashThreads", 0),
+            ServerConfig.getInt("auth.hashQueueSize", 64));
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads hashing threads, or 0 for one per core
+     */
+    public PasswordHasher(int cost, int threads, int queueSize) {
+        this.encoder = new BCryptPasswordEncoder(cost);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                    var thread = new Thread(runnable, "password-hasher");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @return the hasher configured from server.properties, shared by every store
+     */
+    public static PasswordHasher getDefault() {
+        return DEFAULT;
+    }
+
+    public String hash(String password) throws ResponseException {
+        return run(() -> encoder.encode(password));
+    }
+
+    public boolean matches(String password, String hash) throws ResponseException {
+        return run(() -> encoder.matches(password, hash));
+    }
+
+    /**
+     * @return whether the hash was made with a lower cost than the configured one
+     */
+    public boolean needsRehash(String hash) {
+        return hash != null && encoder.upgradeEncoding(hash);
+    }
+
+    private <T> T run(Callable<T> task) throws ResponseException {
+        Future<T> result;
+        try {
+            result = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseException(503, "Server is busy, try again shortly");
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseException(503, "Interrupted while hashing password");
+        } catch (ExecutionException e) {
+            throw new ResponseException(500, "Unable to hash password: " + e.getCause().getMessage());
+        }
+    }
+}
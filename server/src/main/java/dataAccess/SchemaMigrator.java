@@ -0,0 +1,163 @@
+package dataAccess;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Brings a database schema up to date by applying numbered migrations in order.
+ * The versions already applied are recorded in a schema_version table, so each
+ * migration runs exactly once per database and existing data is upgraded in place.
+ * MySQL commits every DDL statement on its own, so a migration can't be applied
+ * atomically; instead each statement is recorded in schema_migration_steps as it
+ * completes, and a migration that failed part way resumes after its last completed
+ * statement. A named MySQL lock keeps two servers starting at once from migrating together.
+ */
+public class SchemaMigrator {
+    private static final String LOCK_NAME = "chess_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    public record Migration(int version, String description, String... statements) {}
+
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(List<Migration> migrations) {
+        this.migrations = migrations;
+    }
+
+    /**
+     * Applies every migration newer than the database's current version
+     * @return the schema version after migrating
+     */
+    public int migrate(Connection conn) throws SQLException, DataAccessException {
+        try (var ps = conn.prepareStatement("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    `version` int NOT NULL,
+                    `description` VARCHAR(255) NOT NULL,
+                    `appliedAt` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    PRIMARY KEY (`version`)
+                )
+                """)) {
+            ps.executeUpdate();
+        }
+        try (var ps = conn.prepareStatement("""
+                CREATE TABLE IF NOT EXISTS schema_migration_steps (
+                    `version` int NOT NULL,
+                    `step` int NOT NULL,
+                    PRIMARY KEY (`version`, `step`)
+                )
+                """)) {
+            ps.executeUpdate();
+        }
+
+        lock(conn);
+        try {
+            int current = currentVersion(conn);
+            for (var migration : migrations) {
+                if (migration.version() > current) {
+                    apply(conn, migration);
+                    current = migration.version();
+                }
+            }
+            return current;
+        } finally {
+            unlock(conn);
+        }
+    }
+
+    private int currentVersion(Connection conn) throws SQLException {
+        try (var ps = conn.prepareStatement("SELECT COALESCE(MAX(version), 0) FROM schema_version");
+             var rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void apply(Connection conn, Migration migration) throws SQLException, DataAccessException {
+        var statements = migration.statements();
+        for (int step = completedSteps(conn, migration); step < statements.length; step++) {
+            applyStep(conn, migration, step);
+        }
+
+        inTransaction(conn, () -> {
+            try (var ps = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                ps.setInt(1, migration.version());
+                ps.setString(2, migration.description());
+                ps.executeUpdate();
+            }
+            try (var ps = conn.prepareStatement("DELETE FROM schema_migration_steps WHERE version = ?")) {
+                ps.setInt(1, migration.version());
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * @return how many of the migration's statements an earlier, interrupted run completed
+     */
+    private int completedSteps(Connection conn, Migration migration) throws SQLException {
+        try (var ps = conn.prepareStatement("SELECT COUNT(*) FROM schema_migration_steps WHERE version = ?")) {
+            ps.setInt(1, migration.version());
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Runs one statement and records it. Data changes commit together with their
+     * record; DDL commits on its own, leaving only the record to write after it.
+     */
+    private void applyStep(Connection conn, Migration migration, int step) throws SQLException, DataAccessException {
+        try {
+            inTransaction(conn, () -> {
+                try (var ps = conn.prepareStatement(migration.statements()[step])) {
+                    ps.executeUpdate();
+                }
+                try (var ps = conn.prepareStatement("INSERT INTO schema_migration_steps (version, step) VALUES (?, ?)")) {
+                    ps.setInt(1, migration.version());
+                    ps.setInt(2, step);
+                    ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new DataAccessException(String.format("Migration %d (%s) failed at statement %d: %s",
+                    migration.version(), migration.description(), step + 1, e.getMessage()));
+        }
+    }
+
+    private interface Work {
+        void run() throws SQLException;
+    }
+
+    private static void inTransaction(Connection conn, Work work) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            work.run();
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void lock(Connection conn) throws SQLException, DataAccessException {
+        try (var ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (var rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new DataAccessException("Timed out waiting for another server to finish migrating the schema");
+                }
+            }
+        }
+    }
+
+    private void unlock(Connection conn) throws SQLException {
+        try (var ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package dataAccess;
+
+import chess.ChessMove;
+import exception.ResponseException;
+import model.GameData;
+import serialization.Serializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Buffers moves in memory and saves them in the background. recordMove returns as
+ * soon as the move is buffered. A committer thread then saves every dirty game in one
+ * commitGames call at least every maxFlushDelayMillis, so many moves cost one
+ * transaction. Reads see buffered state. Other writes to a game flush its pending
+ * moves first so they can't be reordered. A move that ends the game is saved before
+ * recordMove returns, and is rejected if that fails, so the game is never announced
+ * as finished before a listing read from the database shows it.
+ * <p>
+ * If someone else saved a game since its moves were buffered, for example another
+ * server process, the buffered moves are thrown away and conflict listeners are told
+ * so the players can be sent the saved game.
+ * <p>
+ * On close everything is flushed. If the database can't be reached then, the pending
+ * games are written to the fallback file and committed the next time the server starts.
+ */
+public class WriteBehindDataAccess extends ForwardingDataAccess {
+    private final ConcurrentHashMap<Integer, GameWrite> dirty = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, GameWrite> inFlight = new ConcurrentHashMap<>();
+    private final List<IntConsumer> conflictListeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService committer;
+    private final int maxBatchGames;
+    private final Path fallbackFile;
+    private volatile boolean fallbackPending;
+
+    public WriteBehindDataAccess(DataAccess delegate, long maxFlushDelayMillis, int maxBatchGames, Path fallbackFile) {
+        super(delegate);
+        this.maxBatchGames = Math.max(1, maxBatchGames);
+        this.fallbackFile = fallbackFile;
+        recoverFallback();
+
+        committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "write-behind-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::flushQuietly, maxFlushDelayMillis, maxFlushDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @throws GameConflictException if the move ended the game but someone else saved
+     * the game first, so it was dropped
+     * @throws ResponseException if the move ended the game but couldn't be saved; it
+     * is dropped too, while earlier buffered moves stay buffered
+     */
+    @Override
+    public void recordMove(GameData gameData, ChessMove move) throws ResponseException, DataAccessException {
+        if (gameData.getGame().getGameIsOver()) {
+            saveEnding(gameData, move);
+            return;
+        }
+
+        dirty.compute(gameData.getGameID(), (gameID, pending) -> {
+            List<ChessMove> moves = pending == null ? new ArrayList<>() : pending.moves();
+            moves.add(move);
+            return new GameWrite(gameData, moves);
+        });
+        if (dirty.size() >= maxBatchGames) {
+            try {
+                committer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Saves the move that ended the game along with the game's buffered moves. If the
+     * save fails the ending isn't kept, so it can't be saved later after the player was
+     * told it failed, and the game is never announced as finished before it is saved.
+     */
+    private void saveEnding(GameData gameData, ChessMove move) throws ResponseException, DataAccessException {
+        int gameID = gameData.getGameID();
+        flushLock.lock();
+        try {
+            var earlier = new GameWrite[1];
+            var batch = new ArrayList<GameWrite>(1);
+            dirty.compute(gameID, (id, pending) -> {
+                earlier[0] = pending;
+                var moves = pending == null ? new ArrayList<ChessMove>() : new ArrayList<>(pending.moves());
+                moves.add(move);
+                var ending = new GameWrite(gameData, moves);
+                inFlight.put(id, ending);
+                batch.add(ending);
+                return null;
+            });
+
+            Collection<Integer> conflicts;
+            try {
+                conflicts = commit(batch);
+            } catch (ResponseException | DataAccessException | RuntimeException ex) {
+                // commit put the ending back in the buffer; keep only the moves before it
+                if (earlier[0] == null) {
+                    dirty.remove(gameID, batch.get(0));
+                } else {
+                    dirty.replace(gameID, batch.get(0), earlier[0]);
+                }
+                throw ex;
+            }
+            if (!conflicts.isEmpty()) {
+                throw new GameConflictException(gameID);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void addConflictListener(IntConsumer listener) {
+        conflictListeners.add(listener);
+    }
+
+    @Override
+    public void updateGame(GameData gameData) throws ResponseException, DataAccessException {
+        flush(gameData.getGameID());
+        delegate.updateGame(gameData);
+    }
+
+    @Override
+    public void joinGame(String username, String playerColor, int gameID) throws DataAccessException, InvalidGameID, ResponseException, SQLException {
+        flush(gameID);
+        delegate.joinGame(username, playerColor, gameID);
+    }
+
+    @Override
+    public GameData getGameData(int gameID) throws DataAccessException, SQLException, ResponseException {
+        GameWrite pending = pending(gameID);
+        return pending != null ? pending.gameData().copy() : delegate.getGameData(gameID);
+    }
+
+    @Override
+    public Collection<GameData> getGames() throws DataAccessException, ResponseException {
+        var games = new ArrayList<GameData>();
+        for (var game : delegate.getGames()) {
+            GameWrite pending = pending(game.getGameID());
+            games.add(pending != null ? pending.gameData().copy() : game);
+        }
+        return games;
+    }
+
+    @Override
+    public void clearGames() throws DataAccessException, ResponseException, SQLException {
+        flushLock.lock();
+        try {
+            dirty.clear();
+            delegate.clearGames();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        committer.shutdown();
+        try {
+            flushAll();
+            Files.deleteIfExists(fallbackFile);
+        } catch (ResponseException | DataAccessException | IOException ex) {
+            writeFallback();
+        }
+        delegate.close();
+    }
+
+    private GameWrite pending(int gameID) {
+        GameWrite pending = dirty.get(gameID);
+        return pending != null ? pending : inFlight.get(gameID);
+    }
+
+    private void flushQuietly() {
+        try {
+            flushAll();
+            if (fallbackPending) {
+                Files.deleteIfExists(fallbackFile);
+                fallbackPending = false;
+            }
+        } catch (ResponseException | DataAccessException | IOException ex) {
+            System.out.printf("Write-behind flush failed, will retry: %s%n", ex.getMessage());
+        }
+    }
+
+    private void flushAll() throws ResponseException, DataAccessException {
+        flushLock.lock();
+        try {
+            while (!dirty.isEmpty()) {
+                var batch = new ArrayList<GameWrite>();
+                for (var gameID : dirty.keySet()) {
+                    if (batch.size() >= maxBatchGames) {
+                        break;
+                    }
+                    take(gameID, batch);
+                }
+                commit(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return the game's ID if its pending moves were dropped because of a conflict
+     */
+    private Collection<Integer> flush(int gameID) throws ResponseException, DataAccessException {
+        flushLock.lock();
+        try {
+            var batch = new ArrayList<GameWrite>(1);
+            take(gameID, batch);
+            return commit(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Moves a game from dirty to in flight. Readers check both maps so the game
+     * never disappears from view while it is being saved.
+     */
+    private void take(int gameID, List<GameWrite> batch) {
+        dirty.computeIfPresent(gameID, (id, write) -> {
+            inFlight.put(id, write);
+            batch.add(write);
+            return null;
+        });
+    }
+
+    private Collection<Integer> commit(List<GameWrite> batch) throws ResponseException, DataAccessException {
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+        Collection<Integer> conflicts;
+        try {
+            conflicts = delegate.commitGames(batch);
+            for (var write : batch) {
+                int gameID = write.gameData().getGameID();
+                if (conflicts.contains(gameID)) {
+                    // Moves buffered since were made on top of the ones being dropped
+                    dirty.remove(gameID);
+                } else {
+                    advanceVersion(write);
+                }
+            }
+        } catch (ResponseException | DataAccessException | RuntimeException ex) {
+            batch.forEach(this::requeue);
+            throw ex;
+        } finally {
+            for (var write : batch) {
+                inFlight.remove(write.gameData().getGameID(), write);
+            }
+        }
+
+        for (int gameID : conflicts) {
+            System.out.printf("Dropped unsaved moves for game %d: it was changed by another request%n", gameID);
+            for (var listener : conflictListeners) {
+                try {
+                    listener.accept(gameID);
+                } catch (RuntimeException ex) {
+                    System.out.printf("Conflict listener failed for game %d: %s%n", gameID, ex.getMessage());
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Moves made while a write was in flight were buffered on top of the version it
+     * was read at. Once it is saved they belong to the version it was saved as.
+     */
+    private void advanceVersion(GameWrite saved) {
+        GameData savedGame = saved.gameData();
+        dirty.computeIfPresent(savedGame.getGameID(), (gameID, newer) -> {
+            if (newer.gameData().getVersion() < savedGame.getVersion()) {
+                newer.gameData().setVersion(savedGame.getVersion());
+            }
+            return newer;
+        });
+    }
+
+    /**
+     * Puts a failed write back in front of any moves made since it was taken
+     */
+    private void requeue(GameWrite failed) {
+        dirty.merge(failed.gameData().getGameID(), failed, (newer, older) -> {
+            var moves = new ArrayList<>(older.moves());
+            moves.addAll(newer.moves());
+            return new GameWrite(newer.gameData(), moves);
+        });
+    }
+
+    private void writeFallback() {
+        var pending = new HashMap<Integer, GameWrite>(inFlight);
+        pending.putAll(dirty);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        var lines = new ArrayList<String>();
+        for (var write : pending.values()) {
+            lines.add(Serializer.toJson(write));
+        }
+        try {
+            Files.write(fallbackFile, lines);
+            System.out.printf("Database unavailable, saved %d unsaved games to %s%n", lines.size(), fallbackFile);
+        } catch (IOException ex) {
+            System.out.printf("Unable to save %d unsaved games: %s%n", lines.size(), ex.getMessage());
+        }
+    }
+
+    private void recoverFallback() {
+        if (!Files.exists(fallbackFile)) {
+            return;
+        }
+        try {
+            for (var line : Files.readAllLines(fallbackFile)) {
+                if (!line.isBlank()) {
+                    var write = Serializer.fromJson(line, GameWrite.class);
+                    dirty.put(write.gameData().getGameID(), new GameWrite(write.gameData(), new ArrayList<>(write.moves())));
+                }
+            }
+            fallbackPending = true;
+        } catch (IOException | RuntimeException ex) {
+            System.out.printf("Unable to read %s: %s%n", fallbackFile, ex.getMessage());
+        }
+    }
+}
@@ -1,47 +1,198 @@
 package server;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import config.ServerConfig;
 import dataAccess.*;
 import exception.ResponseException;
 import model.*;
+import serialization.Serializer;
+import server.webSocket.LobbyHandler;
 import server.webSocket.WebSocketHandler;
 import service.UserService;
 import spark.*;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
-import java.util.Collection;
-import java.util.HashSet;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class Server {
-    private final Gson gson = new GsonBuilder().serializeNulls().create();
-    private final UserService service = new UserService(new MySqlDataAccess());
+    private final Gson gson = Serializer.builder().serializeNulls().create();
+    private final DataAccess dataAccess;
+    private final UserService service;
     private final WebSocketHandler webSocketHandler;
+    private final LobbyHandler lobbyHandler;
+    private final ExpiredAuthPurger authPurger;
+    private final GameArchiver gameArchiver;
+    private final MetricsLogger metricsLogger;
+    private final boolean virtualThreads = ServerConfig.getBoolean("http.virtualThreads", false);
+    // Only set with virtual threads; Jetty's bounded pool already caps the others
+    private final Semaphore inFlight = virtualThreads ? new Semaphore(Math.max(1, ServerConfig.getInt("http.maxInFlight", 64))) : null;
+    private final long admissionTimeoutMillis = ServerConfig.getLong("http.admissionTimeoutMillis", 1000);
+    private final int gzipMinBytes = ServerConfig.getInt("http.gzipMinBytes", 1024);
 
     public Server() {
-        webSocketHandler = new WebSocketHandler();
+        this(createDataAccess());
+    }
+
+    /**
+     * @param dataAccess the store to serve from; the server closes it when stopped
+     */
+    public Server(DataAccess dataAccess) {
+        this.dataAccess = dataAccess;
+        service = new UserService(dataAccess);
+        webSocketHandler = new WebSocketHandler(service);
+        lobbyHandler = new LobbyHandler(service);
+        authPurger = new ExpiredAuthPurger(dataAccess,
+                ServerConfig.getLong("auth.purgeIntervalSeconds", 300),
+                ServerConfig.getInt("auth.purgeBatchSize", 500));
+        gameArchiver = new GameArchiver(dataAccess,
+                ServerConfig.getLong("db.archive.afterHours", 168) * 3600 * 1000,
+                ServerConfig.getLong("db.archive.intervalSeconds", 3600),
+                ServerConfig.getInt("db.archive.batchSize", 1000));
+        metricsLogger = new MetricsLogger(ServerConfig.getLong("metrics.logIntervalSeconds", 300));
+        if (dataAccess instanceof AuthCacheDataAccess authCache) {
+            metricsLogger.add("Auth cache", authCache::getMetrics);
+        }
+        if (ServerConfig.getString("db.store", "mysql").equals("mysql")) {
+            metricsLogger.add("Connection pool", DatabaseManager::getPoolMetrics);
+        }
+    }
+
+    /**
+     * HTTP and WebSocket requests share one store so caching layers see every write.
+     * db.store picks MySQL, embedded files under db.file.directory, or memory only.
+     */
+    public static DataAccess createDataAccess() {
+        String store = ServerConfig.getString("db.store", "mysql");
+        return switch (store) {
+            case "memory" -> new MemoryDataAccess();
+            case "file" -> {
+                try {
+                    yield FileDataAccess.open(Path.of(ServerConfig.getString("db.file.directory", "data")),
+                            ServerConfig.getBoolean("db.file.fsync", true),
+                            ServerConfig.getInt("db.file.snapshotEveryRecords", 10000));
+                } catch (DataAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            case "mysql" -> {
+                DataAccess dataAccess = new MySqlDataAccess();
+                if (ServerConfig.getBoolean("db.writeBehind.enabled", true)) {
+                    dataAccess = new WriteBehindDataAccess(dataAccess,
+                            ServerConfig.getLong("db.writeBehind.maxFlushDelayMillis", 50),
+                            ServerConfig.getInt("db.writeBehind.maxBatchGames", 256),
+                            Path.of(ServerConfig.getString("db.writeBehind.fallbackFile", "write-behind-fallback.jsonl")));
+                }
+                if (ServerConfig.getBoolean("db.archive.enabled", true)) {
+                    try {
+                        dataAccess = new ArchivingDataAccess(dataAccess,
+                                new GameArchive(Path.of(ServerConfig.getString("db.archive.directory", "archive"))));
+                    } catch (DataAccessException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                if (ServerConfig.getBoolean("auth.cache.enabled", true)) {
+                    dataAccess = new AuthCacheDataAccess(dataAccess,
+                            ServerConfig.getInt("auth.cache.maxEntries", 10000),
+                            ServerConfig.getLong("auth.cache.ttlSeconds", 300) * 1000,
+                            ServerConfig.getLong("auth.cache.idleSeconds", 60) * 1000);
+                }
+                yield dataAccess;
+            }
+            default -> throw new IllegalArgumentException("Unknown db.store: " + store);
+        };
     }
 
     public int run(int desiredPort) {
+        var jetty = new EmbeddedJettyFactory();
+        if (virtualThreads) {
+            jetty.withThreadPool(new VirtualThreadPool("http"));
+        }
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, jetty);
         Spark.port(desiredPort);
 
         Spark.staticFiles.location("web");
+        Spark.staticFiles.expireTime(ServerConfig.getLong("http.staticMaxAgeSeconds", 86400));
 
+        Spark.webSocketIdleTimeoutMillis((int) webSocketHandler.getIdleTimeoutMillis());
         Spark.webSocket("/connect", webSocketHandler);
-
-        Spark.delete("/db", this::clearApplication);
-        Spark.post("/user", this::registerUser);
-        Spark.post("/session", this::loginUser);
-        Spark.delete("/session", this::logoutUser);
-        Spark.get("/game", this::listGames);
-        Spark.post("/game", this::createGame);
-        Spark.put("/game", this::joinGame);
+        Spark.webSocket("/lobby", lobbyHandler);
+
+        Spark.delete("/db", limited(this::clearApplication));
+        Spark.post("/user", limited(this::registerUser));
+        Spark.post("/session", limited(this::loginUser));
+        Spark.delete("/session", limited(this::logoutUser));
+        Spark.get("/game", limited(this::listGames));
+        Spark.post("/game", limited(this::createGame));
+        Spark.put("/game", limited(this::joinGame));
+        Spark.after(this::compress);
         Spark.exception(ResponseException.class, this::exceptionHandler);
 
         Spark.awaitInitialization();
         return Spark.port();
     }
 
+    /**
+     * With virtual threads nothing caps how many requests run at once, so at most
+     * http.maxInFlight work against the store and the rest wait briefly for a slot,
+     * then get a 503 instead of piling up on the connection pool. On Jetty's own
+     * pool requests are left alone.
+     */
+    private Route limited(Route route) {
+        if (inFlight == null) {
+            return route;
+        }
+        return (req, res) -> {
+            if (!inFlight.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                res.type("application/json");
+                return responseError(res, new ResponseException(503, "Server is busy, try again shortly"));
+            }
+            try {
+                return route.handle(req, res);
+            } finally {
+                inFlight.release();
+            }
+        };
+    }
+
+    /**
+     * Asks Spark to gzip responses of at least http.gzipMinBytes for clients that
+     * accept it. Smaller ones are not worth the CPU.
+     */
+    private void compress(Request req, Response res) {
+        String body = res.body();
+        String accepted = req.headers("Accept-Encoding");
+        if (body != null && body.length() >= gzipMinBytes && accepted != null && accepted.contains("gzip")) {
+            res.header("Content-Encoding", "gzip");
+            res.header("Vary", "Accept-Encoding");
+        }
+    }
+
+    /**
+     * Listings can change at any moment, so clients revalidate every time and get a
+     * 304 while the lobby version is unchanged
+     */
+    private static void cacheHeaders(Response res, String etag) {
+        res.header("ETag", etag);
+        res.header("Cache-Control", "private, no-cache");
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Object clearApplication(Request req, Response res) {
         try {
             service.clearApplication();
@@ -73,6 +224,9 @@ public class Server {
             res.status(403);
             return gson.toJson(new JsonMessage("Error: already taken"));
 
+        } catch (ResponseException e) {
+            return responseError(res, e);
+
         } catch (Exception error) {
             res.status(500);
             return gson.toJson(new JsonMessage(String.format("Error: %s", error)));
@@ -93,6 +247,9 @@ public class Server {
             res.status(401);
             return gson.toJson(new JsonMessage("Error: unauthorized"));
 
+        } catch (ResponseException e) {
+            return responseError(res, e);
+
         } catch (Exception error) {
             res.status(500);
             return gson.toJson(new JsonMessage(String.format("Error: %s", error)));
@@ -123,14 +280,27 @@ public class Server {
         res.type("application/json");
 
         try {
-            Collection<GameData> gameList = service.listGames(authToken);
-            res.status(200);
-            Collection<GameSummary> gameSummaryCollection = new HashSet<>();
-            for (GameData game : gameList) {
-                gameSummaryCollection.add(new GameSummary(game.getGameID(), game.getWhiteUsername(), game.getBlackUsername(), game.getGameName()));
+            GameQuery query;
+            try {
+                query = gameQuery(req);
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return gson.toJson(new JsonMessage("Error: bad request"));
+            }
+
+            // Read the version before listing, so a change made meanwhile makes the next
+            // request fetch again rather than be told the listing is current
+            String etag = "\"" + service.getLobbyVersion() + "\"";
+            if (etagMatches(req.headers("If-None-Match"), etag) && service.getAuthData(authToken) != null) {
+                cacheHeaders(res, etag);
+                res.status(304);
+                return "";
             }
-            var gameSummaryList = new GameList(gameSummaryCollection);
-            return gson.toJson(gameSummaryList);
+
+            GameList page = service.listGameSummaries(authToken, query);
+            cacheHeaders(res, etag);
+            res.status(200);
+            return gson.toJson(page);
 
         } catch (UnauthorizedException u) {
             res.status(401);
@@ -209,12 +379,52 @@ public class Server {
         }
     }
 
+    /**
+     * Reads the listing's paging and filters from ?after=&limit=&open=&player=&status=
+     */
+    private static GameQuery gameQuery(Request req) {
+        String after = req.queryParams("after");
+        String limit = req.queryParams("limit");
+        String status = req.queryParams("status");
+        if (status != null && !status.equals("ACTIVE") && !status.equals("FINISHED")) {
+            throw new IllegalArgumentException("Unknown status " + status);
+        }
+        return new GameQuery(
+                after == null ? null : Integer.valueOf(after),
+                limit == null ? GameQuery.DEFAULT_LIMIT : Integer.parseInt(limit),
+                Boolean.parseBoolean(req.queryParams("open")),
+                req.queryParams("player"),
+                status);
+    }
+
+    /**
+     * Passes a ResponseException's status through. A 503 asks the client to retry shortly.
+     */
+    private Object responseError(Response res, ResponseException e) {
+        res.status(e.getStatusCode());
+        if (e.getStatusCode() == 503) {
+            res.header("Retry-After", "1");
+        }
+        return gson.toJson(new JsonMessage(String.format("Error: %s", e.getMessage())));
+    }
+
     private void exceptionHandler(ResponseException ex, Request req, Response res) {
         res.status(ex.getStatusCode());
     }
 
     public void stop() {
+        authPurger.close();
+        gameArchiver.close();
+        metricsLogger.close();
+        webSocketHandler.close();
+        lobbyHandler.close();
         Spark.stop();
         Spark.awaitStop();
+        service.close();
+        try {
+            dataAccess.close();
+        } catch (DataAccessException ex) {
+            System.out.printf("Unable to close data access: %s%n", ex.getMessage());
+        }
     }
 }
@@ -0,0 +1,71 @@
+package server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Jetty thread pool that runs every task on a new virtual thread, so requests
+ * waiting on the database or on password hashing no longer hold one of a fixed
+ * number of platform threads. Nothing here bounds concurrency; the server limits
+ * how many requests reach the database at once.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private final String name;
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile ExecutorService executor;
+
+    public VirtualThreadPool(String name) {
+        this.name = name;
+    }
+
+    @Override
+    protected void doStart() {
+        // Jetty restarts the same pool when Spark is stopped and started again
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    @Override
+    protected void doStop() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        var current = executor;
+        if (current != null) {
+            current.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
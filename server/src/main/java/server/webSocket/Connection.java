@@ -1,19 +1,127 @@
 package server.webSocket;
 
+import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
+import webSocketMessages.BinaryProtocol;
+import webSocketMessages.FrameEnvelope;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Connection {
     public String visitorName;
     public Session session;
+    public final boolean binary;
+    public final boolean player;
+    public final boolean deflate;
+    public final boolean batch;
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private volatile long lastSeenMillis = System.currentTimeMillis();
 
-    public Connection(String visitorName, Session session) {
+    public Connection(String visitorName, Session session, boolean player) {
         this.visitorName = visitorName;
         this.session = session;
+        this.player = player;
+        this.binary = hasParameter(session, "protocol", BinaryProtocol.NAME);
+        // Jetty already compresses every frame once permessage-deflate is negotiated
+        this.deflate = !hasExtension(session, "permessage-deflate") && hasParameter(session, FrameEnvelope.DEFLATE_PARAM, "true");
+        this.batch = hasParameter(session, FrameEnvelope.BATCH_PARAM, "true");
     }
 
+    /**
+     * Records that the client is still alive (it sent a command or answered a ping)
+     */
+    public void touch() {
+        lastSeenMillis = System.currentTimeMillis();
+    }
+
+    public long getLastSeenMillis() {
+        return lastSeenMillis;
+    }
+
+    public void ping() throws IOException {
+        session.getRemote().sendPing(ByteBuffer.allocate(0));
+    }
+
+    // Jetty rejects concurrent blocking sends on one session, and the fan-out pool
+    // can be writing to an observer while a direct message goes to it
     public void send(String msg) throws IOException {
-        session.getRemote().sendString(msg);
+        sendLock.lock();
+        try {
+            session.getRemote().sendString(msg);
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    public void send(byte[] msg) throws IOException {
+        sendLock.lock();
+        try {
+            session.getRemote().sendBytes(ByteBuffer.wrap(msg));
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Sends several frames with Jetty's batch mode on, so they are written to the
+     * network together when flushed instead of one write each. Each one still
+     * arrives as its own message.
+     * @param frames text frames as Strings and binary frames as byte arrays
+     */
+    public void sendBatched(List<Object> frames) throws IOException {
+        sendLock.lock();
+        try {
+            var remote = session.getRemote();
+            BatchMode previous = remote.getBatchMode();
+            remote.setBatchMode(BatchMode.ON);
+            try {
+                for (Object frame : frames) {
+                    if (frame instanceof String text) {
+                        remote.sendString(text);
+                    } else {
+                        remote.sendBytes(ByteBuffer.wrap((byte[]) frame));
+                    }
+                }
+            } finally {
+                remote.setBatchMode(previous);
+                remote.flush();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * @return whether the WebSocket extension was agreed on during the handshake
+     */
+    private static boolean hasExtension(Session session, String name) {
+        var upgradeResponse = session.getUpgradeResponse();
+        if (upgradeResponse == null || upgradeResponse.getExtensions() == null) {
+            return false;
+        }
+        for (ExtensionConfig extension : upgradeResponse.getExtensions()) {
+            if (extension.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clients opt into wire features when they open the socket, e.g.
+     * /connect?protocol=chess-binary-1&deflate=true&batch=true. Everyone else gets
+     * one JSON frame per message, compressed only if they negotiated permessage-deflate.
+     */
+    private static boolean hasParameter(Session session, String name, String value) {
+        var upgradeRequest = session.getUpgradeRequest();
+        if (upgradeRequest == null || upgradeRequest.getParameterMap() == null) {
+            return false;
+        }
+        List<String> values = upgradeRequest.getParameterMap().get(name);
+        return values != null && values.contains(value);
     }
 }
@@ -1,56 +1,386 @@
 package server.webSocket;
 
-import com.google.gson.Gson;
 import org.eclipse.jetty.websocket.api.Session;
+import serialization.Serializer;
+import webSocketMessages.BinaryProtocol;
+import webSocketMessages.FrameEnvelope;
 import webSocketMessages.serverMessages.*;
-import webSocketMessages.serverMessages.Error;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ConnectionManager {
     public final ConcurrentHashMap<String, Connection> connections = new ConcurrentHashMap<>();
+    private final GameEventLog eventLog;
+    private final ObserverFanOut fanOut;
+    private final ObserverShard[] shards;
+    private final AtomicInteger observerCount = new AtomicInteger();
+    private final int deflateMinBytes;
+    private volatile long lastActivityMillis = System.currentTimeMillis();
 
-    public void add(String username, Session session) {
-        var connection = new Connection(username, session);
-        connections.put(username, connection);
+    public record Broadcast(String excludeVisitorName, ServerMessage message) {}
+
+    /**
+     * @param deflateMinBytes messages at least this long are compressed for connections
+     * that asked for it, or -1 to never compress
+     */
+    public ConnectionManager(int resumeBufferSize, ObserverFanOut fanOut, int deflateMinBytes) {
+        this.eventLog = new GameEventLog(resumeBufferSize);
+        this.fanOut = fanOut;
+        this.deflateMinBytes = deflateMinBytes;
+        this.shards = new ObserverShard[fanOut.getShardCount()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new ObserverShard();
+        }
     }
 
-    public void remove(String username) {
-        connections.remove(username);
+    public void add(String username, Session session, boolean player) {
+        var connection = new Connection(username, session, player);
+        var previous = connections.put(username, connection);
+        if (previous != null) {
+            detach(previous);
+        }
+        if (!player) {
+            shardFor(username).members.put(username, connection);
+            observerCount.incrementAndGet();
+        }
+        lastActivityMillis = System.currentTimeMillis();
     }
 
-    public void broadcast(String excludeVisitorName, ServerMessage serverMessage) throws IOException {
-        var removeList = new ArrayList<Connection>();
+    public void remove(String visitorName) {
+        var connection = connections.get(visitorName);
+        if (connection != null) {
+            remove(connection);
+        }
+    }
+
+    /**
+     * Drops every connection that belongs to a closed session
+     */
+    public void removeSession(Session session) {
+        for (var connection : connections.values()) {
+            if (connection.session == session) {
+                remove(connection);
+            }
+        }
+    }
+
+    private void remove(Connection connection) {
+        if (connections.remove(connection.visitorName, connection)) {
+            detach(connection);
+        }
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    private void detach(Connection connection) {
+        if (!connection.player && shardFor(connection.visitorName).members.remove(connection.visitorName, connection)) {
+            observerCount.decrementAndGet();
+        }
+    }
+
+    private ObserverShard shardFor(String visitorName) {
+        return shards[Math.floorMod(visitorName.hashCode(), shards.length)];
+    }
+
+    public void touch(Session session) {
+        for (var connection : connections.values()) {
+            if (connection.session == session) {
+                connection.touch();
+            }
+        }
+    }
+
+    /**
+     * Evicts connections that are closed or have not been heard from within the idle
+     * timeout, and pings the rest so live clients answer with a pong.
+     * @param idleTimeoutMillis how long a connection may stay silent
+     */
+    public void sweep(long idleTimeoutMillis) {
+        long now = System.currentTimeMillis();
         for (var connection : connections.values()) {
-            if (connection.session.isOpen()) {
-                if (!connection.visitorName.equals(excludeVisitorName)) {
-                    sendJson(connection, serverMessage);
+            boolean idle = now - connection.getLastSeenMillis() > idleTimeoutMillis;
+            if (!connection.session.isOpen() || idle) {
+                remove(connection);
+                if (connection.session.isOpen()) {
+                    connection.session.close(1001, "Idle timeout");
                 }
-            } else {
-                removeList.add(connection);
+                continue;
+            }
+
+            try {
+                connection.ping();
+            } catch (IOException ex) {
+                remove(connection);
             }
         }
+    }
 
-        for (var connection : removeList) {
-            connections.remove(connection.visitorName);
+    /**
+     * @return true if nobody has been connected for at least retentionMillis, so the
+     * manager and its resume buffer can be discarded
+     */
+    public boolean isExpired(long retentionMillis) {
+        return connections.isEmpty() && System.currentTimeMillis() - lastActivityMillis > retentionMillis;
+    }
+
+    /**
+     * Sends a message to everyone in the game except excludeVisitorName. Players are
+     * always sent to directly. Observers are too while there are few of them;
+     * past the shard threshold they are handed to the fan-out pool instead.
+     */
+    public void broadcast(String excludeVisitorName, ServerMessage serverMessage) throws IOException {
+        broadcast(List.of(new Broadcast(excludeVisitorName, serverMessage)));
+    }
+
+    /**
+     * Sends the messages produced by one command. Connections that asked for batching
+     * get every message meant for them in a single frame; the rest get one frame per
+     * message, written to the network together through Jetty's batch mode.
+     */
+    public void broadcast(List<Broadcast> broadcasts) throws IOException {
+        for (var broadcast : broadcasts) {
+            eventLog.append(broadcast.excludeVisitorName(), broadcast.message());
+        }
+
+        var outgoing = new Outgoing(broadcasts);
+        boolean sharded = useShards();
+        for (var connection : connections.values()) {
+            if (!sharded || connection.player) {
+                deliver(connection, outgoing);
+            }
+        }
+
+        if (sharded) {
+            for (var shard : shards) {
+                shard.enqueue(outgoing);
+            }
+        }
+    }
+
+    /**
+     * Observers stay on the sharded path while any shard still has queued messages,
+     * otherwise a direct send could overtake them.
+     */
+    private boolean useShards() {
+        if (observerCount.get() > fanOut.getShardThreshold()) {
+            return true;
+        }
+        for (var shard : shards) {
+            if (shard.scheduled.get()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deliver(Connection connection, Outgoing outgoing) throws IOException {
+        if (!connection.session.isOpen()) {
+            remove(connection);
+        } else {
+            outgoing.sendTo(connection);
         }
     }
 
     public void sendMessage(String authToken, ServerMessage serverMessage) throws IOException {
         Connection connection = connections.get(authToken);
         if (connection != null && connection.session.isOpen()) {
-            sendJson(connection, serverMessage);
+            serverMessage.setSequence(eventLog.getLastSequence());
+            new Outgoing(serverMessage).sendTo(connection);
+        }
+    }
+
+    /**
+     * Answers a session that was turned away before it joined the game, in the
+     * wire format it asked for
+     */
+    public static void reject(String visitorName, Session session, ServerMessage serverMessage) throws IOException {
+        var connection = new Connection(visitorName, session, false);
+        if (!session.isOpen()) {
+            return;
+        }
+        if (connection.binary) {
+            connection.send(BinaryProtocol.encodeServerMessage(serverMessage));
+        } else {
+            connection.send(toJson(serverMessage));
+        }
+    }
+
+    /**
+     * Re-sends the game events a reconnecting client missed. Only the newest
+     * LOAD_GAME in the missed range is sent since it supersedes the older ones, and
+     * clients that batch get the whole catch-up in one frame.
+     * @param visitorName the connection to catch up
+     * @param lastSequence the last sequence number the client saw
+     * @return false if the missed events are no longer buffered
+     */
+    public boolean replay(String visitorName, long lastSequence) throws IOException {
+        List<GameEventLog.Event> missed = eventLog.since(lastSequence);
+        Connection connection = connections.get(visitorName);
+        if (missed == null || connection == null) {
+            return false;
+        }
+
+        long newestLoadGame = -1;
+        for (var event : missed) {
+            if (event.message().getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME) {
+                newestLoadGame = event.sequence();
+            }
+        }
+
+        List<Broadcast> catchUp = new ArrayList<>();
+        for (var event : missed) {
+            boolean supersededBoard = event.message().getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME &&
+                    event.sequence() != newestLoadGame;
+            if (!supersededBoard && !visitorName.equals(event.excludeVisitorName())) {
+                catchUp.add(new Broadcast(null, event.message()));
+            }
+        }
+        if (!catchUp.isEmpty()) {
+            new Outgoing(catchUp).sendTo(connection);
+        }
+        return true;
+    }
+
+    private static String toJson(ServerMessage serverMessage) {
+        return Serializer.toJson(serverMessage);
+    }
+
+    /**
+     * A slice of a game's observers with its own queue. Messages that arrive while a
+     * flush is already scheduled are picked up by that same flush, so a burst of
+     * broadcasts costs one pass over the shard rather than one per message.
+     */
+    private class ObserverShard {
+        final ConcurrentHashMap<String, Connection> members = new ConcurrentHashMap<>();
+        final ConcurrentLinkedQueue<Outgoing> pending = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void enqueue(Outgoing message) {
+            pending.add(message);
+            if (scheduled.compareAndSet(false, true)) {
+                fanOut.execute(this::flush);
+            }
+        }
+
+        void flush() {
+            try {
+                var batch = new ArrayList<Outgoing>();
+                for (Outgoing message; (message = pending.poll()) != null; ) {
+                    batch.add(message);
+                }
+
+                for (var connection : members.values()) {
+                    for (var message : batch) {
+                        try {
+                            deliver(connection, message);
+                        } catch (IOException ex) {
+                            remove(connection);
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    fanOut.execute(this::flush);
+                }
+            }
         }
     }
 
-    private void sendJson(Connection connection, ServerMessage serverMessage) throws IOException {
-        Gson gson = new Gson();
-        switch (serverMessage.getServerMessageType()) {
-            case LOAD_GAME -> connection.send(gson.toJson(serverMessage, LoadGame.class));
-            case ERROR -> connection.send(gson.toJson(serverMessage, Error.class));
-            case NOTIFICATION -> connection.send(gson.toJson(serverMessage, Notification.class));
+    private record EnvelopeKey(BitSet recipients, boolean binary, boolean deflate) {}
+
+    /**
+     * Messages on their way out. Each message, and each envelope of them, is encoded
+     * at most once per wire format no matter how many connections it is sent to.
+     */
+    private class Outgoing {
+        private final List<Broadcast> broadcasts;
+        private final String[] json;
+        private final byte[][] binary;
+        private final Map<EnvelopeKey, byte[]> envelopes = new HashMap<>();
+
+        Outgoing(ServerMessage serverMessage) {
+            this(List.of(new Broadcast(null, serverMessage)));
+        }
+
+        Outgoing(List<Broadcast> broadcasts) {
+            this.broadcasts = broadcasts;
+            this.json = new String[broadcasts.size()];
+            this.binary = new byte[broadcasts.size()][];
+        }
+
+        void sendTo(Connection connection) throws IOException {
+            var recipients = new BitSet(broadcasts.size());
+            for (int i = 0; i < broadcasts.size(); i++) {
+                if (!connection.visitorName.equals(broadcasts.get(i).excludeVisitorName())) {
+                    recipients.set(i);
+                }
+            }
+
+            if (connection.batch && recipients.cardinality() > 1) {
+                connection.send(envelope(recipients, connection));
+                return;
+            }
+
+            var frames = new ArrayList<Object>(recipients.cardinality());
+            for (int i = recipients.nextSetBit(0); i >= 0; i = recipients.nextSetBit(i + 1)) {
+                int size = connection.binary ? binary(i).length : json(i).length();
+                boolean large = deflateMinBytes >= 0 && size >= deflateMinBytes;
+                if (connection.deflate && large) {
+                    var single = new BitSet();
+                    single.set(i);
+                    frames.add(envelope(single, connection));
+                } else if (connection.binary) {
+                    frames.add(binary(i));
+                } else {
+                    frames.add(json(i));
+                }
+            }
+
+            if (frames.size() > 1) {
+                connection.sendBatched(frames);
+            } else if (frames.size() == 1 && frames.get(0) instanceof String text) {
+                connection.send(text);
+            } else if (frames.size() == 1) {
+                connection.send((byte[]) frames.get(0));
+            }
+        }
+
+        private synchronized String json(int i) {
+            if (json[i] == null) {
+                json[i] = toJson(broadcasts.get(i).message());
+            }
+            return json[i];
+        }
+
+        private synchronized byte[] binary(int i) throws IOException {
+            if (binary[i] == null) {
+                binary[i] = BinaryProtocol.encodeServerMessage(broadcasts.get(i).message());
+            }
+            return binary[i];
+        }
+
+        private synchronized byte[] envelope(BitSet recipients, Connection connection) throws IOException {
+            var key = new EnvelopeKey(recipients, connection.binary, connection.deflate);
+            byte[] frame = envelopes.get(key);
+            if (frame == null) {
+                List<FrameEnvelope.Entry> entries = new ArrayList<>();
+                for (int i = recipients.nextSetBit(0); i >= 0; i = recipients.nextSetBit(i + 1)) {
+                    entries.add(connection.binary ? new FrameEnvelope.Entry(false, binary(i)) : FrameEnvelope.Entry.of(json(i)));
+                }
+                frame = FrameEnvelope.encode(entries, connection.deflate ? deflateMinBytes : -1);
+                envelopes.put(key, frame);
+            }
+            return frame;
         }
     }
 }
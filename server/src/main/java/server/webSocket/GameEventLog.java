@@ -0,0 +1,62 @@
+package server.webSocket;
+
+import webSocketMessages.serverMessages.ServerMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Numbers the events broadcast to a game and keeps the most recent ones in a
+ * fixed-size ring buffer so a reconnecting client can be caught up without a
+ * full rejoin.
+ */
+public class GameEventLog {
+    private final Event[] events;
+    private long lastSequence = 0;
+
+    public record Event(long sequence, String excludeVisitorName, ServerMessage message) {}
+
+    public GameEventLog(int capacity) {
+        events = new Event[Math.max(1, capacity)];
+    }
+
+    /**
+     * Assigns the next sequence number to a message and records it
+     * @param excludeVisitorName the connection the message was not sent to
+     * @param message the message being broadcast
+     * @return the sequence number given to the message
+     */
+    public synchronized long append(String excludeVisitorName, ServerMessage message) {
+        long sequence = ++lastSequence;
+        message.setSequence(sequence);
+        events[(int) (sequence % events.length)] = new Event(sequence, excludeVisitorName, message);
+        return sequence;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Gets the events a client missed
+     * @param afterSequence the last sequence number the client saw
+     * @return the events after afterSequence in order, or null if some of them
+     * have already been overwritten and the client needs a full snapshot instead
+     */
+    public synchronized List<Event> since(long afterSequence) {
+        if (afterSequence > lastSequence) {
+            return null;
+        }
+
+        long oldestKept = Math.max(1, lastSequence - events.length + 1);
+        if (afterSequence + 1 < oldestKept) {
+            return null;
+        }
+
+        List<Event> missed = new ArrayList<>();
+        for (long sequence = afterSequence + 1; sequence <= lastSequence; sequence++) {
+            missed.add(events[(int) (sequence % events.length)]);
+        }
+        return missed;
+    }
+}
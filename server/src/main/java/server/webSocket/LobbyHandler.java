@@ -0,0 +1,141 @@
+package server.webSocket;
+
+import com.google.gson.JsonParseException;
+import config.ServerConfig;
+import dataAccess.AsyncDataAccess;
+import dataAccess.UnauthorizedException;
+import model.LobbyEvent;
+import model.LobbySubscription;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import serialization.Serializer;
+import service.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Streams lobby changes at /lobby. A client sends {"authToken":"..."} once, gets a
+ * SNAPSHOT of the active games and then every change as it happens, so it never has
+ * to poll the game list. Each event is serialized once and queued to every follower
+ * without waiting for slow ones.
+ */
+@WebSocket
+public class LobbyHandler {
+    private final UserService service;
+    private final ConcurrentHashMap<Session, Follower> followers = new ConcurrentHashMap<>();
+    private final Consumer<LobbyEvent> listener = this::broadcast;
+    private final int maxCommandBytes = ServerConfig.getInt("ws.maxCommandBytes", 4096);
+    // Every send goes through one thread, so each follower sees events in version order
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "lobby-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Only touched on the sender thread. Events that arrive before the snapshot is
+     * ready wait here, and those the snapshot already covers are dropped.
+     */
+    private static class Follower {
+        private final Session session;
+        private List<LobbyEvent> pending = new ArrayList<>();
+        private long version;
+
+        Follower(Session session) {
+            this.session = session;
+        }
+
+        void start(LobbyEvent snapshot) {
+            version = snapshot.version();
+            send(Serializer.toJson(snapshot));
+            for (var event : pending) {
+                if (event.version() > version) {
+                    send(Serializer.toJson(event));
+                }
+            }
+            pending = null;
+        }
+
+        void deliver(LobbyEvent event, String json) {
+            if (pending != null) {
+                pending.add(event);
+            } else if (event.version() > version) {
+                send(json);
+            }
+        }
+
+        private void send(String json) {
+            if (session.isOpen()) {
+                session.getRemote().sendStringByFuture(json);
+            }
+        }
+    }
+
+    public LobbyHandler(UserService service) {
+        this.service = service;
+        service.getLobby().subscribe(listener);
+    }
+
+    public void close() {
+        service.getLobby().unsubscribe(listener);
+        sender.shutdownNow();
+    }
+
+    @OnWebSocketConnect
+    public void onConnect(Session session) {
+        session.getPolicy().setMaxTextMessageSize(maxCommandBytes);
+    }
+
+    @OnWebSocketClose
+    public void onClose(Session session, int statusCode, String reason) {
+        followers.remove(session);
+    }
+
+    @OnWebSocketMessage
+    public void onMessage(Session session, String message) {
+        LobbySubscription subscription;
+        try {
+            subscription = Serializer.fromJson(message, LobbySubscription.class);
+        } catch (JsonParseException ex) {
+            subscription = null;
+        }
+        if (subscription == null || subscription.authToken() == null) {
+            session.close(StatusCode.BAD_DATA, "Expected {\"authToken\":\"...\"}");
+            return;
+        }
+
+        // Follow before loading the snapshot, so nothing that changes meanwhile is lost
+        var follower = new Follower(session);
+        if (followers.putIfAbsent(session, follower) != null) {
+            return;
+        }
+        service.lobbySnapshotAsync(subscription.authToken()).whenComplete((snapshot, failure) -> {
+            if (failure == null) {
+                sender.execute(() -> follower.start(snapshot));
+                return;
+            }
+            followers.remove(session, follower);
+            Throwable cause = AsyncDataAccess.causeOf(failure);
+            session.close(StatusCode.POLICY_VIOLATION,
+                    cause instanceof UnauthorizedException ? "Unauthorized user" : "Error: " + cause.getMessage());
+        });
+    }
+
+    private void broadcast(LobbyEvent event) {
+        sender.execute(() -> {
+            String json = Serializer.toJson(event);
+            for (var follower : followers.values()) {
+                follower.deliver(event, json);
+            }
+        });
+    }
+}
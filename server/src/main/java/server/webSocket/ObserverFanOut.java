@@ -0,0 +1,45 @@
+package server.webSocket;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings and the shared thread pool for delivering game messages to observers.
+ * Games with at most shardThreshold observers are sent to directly on the mover's
+ * thread. Bigger games split their observers into shards that are flushed in
+ * parallel on this pool, so the mover only waits on the players.
+ */
+public class ObserverFanOut {
+    private final int shardThreshold;
+    private final int shardCount;
+    private final ExecutorService pool;
+
+    public ObserverFanOut(int threads, int shardThreshold, int shardCount) {
+        this.shardThreshold = shardThreshold;
+        this.shardCount = Math.max(1, shardCount);
+
+        var threadNumber = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            var thread = new Thread(runnable, "observer-fan-out-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardThreshold() {
+        return shardThreshold;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -3,154 +3,340 @@ package server.webSocket;
 import chess.ChessGame;
 import chess.ChessPosition;
 import chess.InvalidMoveException;
-import com.google.gson.Gson;
-import dataAccess.DataAccessException;
-import dataAccess.MySqlDataAccess;
+import config.ServerConfig;
+import dataAccess.AsyncDataAccess;
+import dataAccess.GameConflictException;
 import dataAccess.UnauthorizedException;
-import exception.ResponseException;
 import model.GameData;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketFrame;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import serialization.Serializer;
 import service.UserService;
+import webSocketMessages.BinaryProtocol;
 import webSocketMessages.serverMessages.*;
 import webSocketMessages.serverMessages.Error;
 import webSocketMessages.userCommands.*;
 
 import java.io.IOException;
-import java.sql.SQLException;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @WebSocket
 public class WebSocketHandler {
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
     private final ConcurrentHashMap<String, ConnectionManager> gameConnectionManagers = new ConcurrentHashMap<>();
-    private final UserService service = new UserService(new MySqlDataAccess());
+    private final UserService service;
+    private final ConcurrentHashMap<Session, String> sessionGames = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> gameChains = new ConcurrentHashMap<>();
+    private final int resumeBufferSize = ServerConfig.getInt("ws.resumeBufferSize", 64);
+    private final long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(ServerConfig.getLong("ws.idleTimeoutSeconds", 90));
+    private final long emptyGameRetentionMillis = TimeUnit.SECONDS.toMillis(ServerConfig.getLong("ws.emptyGameRetentionSeconds", 300));
+    private final ScheduledExecutorService sweeper;
+    private final ObserverFanOut fanOut = new ObserverFanOut(
+            ServerConfig.getInt("ws.fanOut.threads", 4),
+            ServerConfig.getInt("ws.fanOut.shardThreshold", 64),
+            ServerConfig.getInt("ws.fanOut.shards", 8));
+    private final int maxCommandBytes = ServerConfig.getInt("ws.maxCommandBytes", 4096);
+    private final int deflateMinBytes = ServerConfig.getBoolean("ws.deflate.enabled", true) ?
+            ServerConfig.getInt("ws.deflate.minBytes", 512) : -1;
+
+    public WebSocketHandler(UserService service) {
+        this.service = service;
+        service.onLostMoves(this::reloadGame);
+        long heartbeatSeconds = ServerConfig.getLong("ws.heartbeatSeconds", 30);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "websocket-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
 
-    @OnWebSocketMessage
-    public void onMessage(Session session, String message) throws IOException, InvalidMoveException, ResponseException, SQLException, UnauthorizedException, DataAccessException {
-        UserGameCommand userCommand = new Gson().fromJson(message, UserGameCommand.class);
-        var commandType = userCommand.getCommandType();
-        switch (commandType) {
-            case JOIN_PLAYER ->  {
-                JoinPlayer joinPlayer = new Gson().fromJson(message, JoinPlayer.class);
-                handleJoinPlayer(session, joinPlayer);
-            }
-            case JOIN_OBSERVER -> {
-                JoinObserver joinObserver = new Gson().fromJson(message, JoinObserver.class);
-                handleJoinObserver(session, joinObserver);
-            }
-            case MAKE_MOVE -> {
-                MakeMove makeMove = new Gson().fromJson(message, MakeMove.class);
-                handleMakeMove(makeMove);
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void close() {
+        sweeper.shutdownNow();
+        fanOut.close();
+    }
+
+    /**
+     * Pings live connections, evicts dead or idle ones and drops per-game managers
+     * nobody has been connected to for a while, so memory is bounded by live
+     * connections rather than by every game ever watched.
+     */
+    private void sweep() {
+        try {
+            for (var entry : gameConnectionManagers.entrySet()) {
+                entry.getValue().sweep(idleTimeoutMillis);
+                gameConnectionManagers.computeIfPresent(entry.getKey(),
+                        (gameID, manager) -> manager.isExpired(emptyGameRetentionMillis) ? null : manager);
             }
-            case LEAVE -> {
-                Leave leave = new Gson().fromJson(message, Leave.class);
-                handleLeave(leave);
+            sessionGames.keySet().removeIf(session -> !session.isOpen());
+        } catch (RuntimeException ex) {
+            System.out.printf("WebSocket sweep failed: %s%n", ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds a connection to a game's manager. Done inside compute so the sweeper
+     * can't discard the manager between looking it up and adding to it.
+     */
+    private ConnectionManager connect(String gameID, String visitorName, Session session, boolean player) {
+        sessionGames.put(session, gameID);
+        return gameConnectionManagers.compute(gameID, (k, manager) -> {
+            if (manager == null) {
+                manager = new ConnectionManager(resumeBufferSize, fanOut, deflateMinBytes);
             }
-            case RESIGN -> {
-                Resign resign = new Gson().fromJson(message, Resign.class);
-                handleResign(resign);
+            manager.add(visitorName, session, player);
+            return manager;
+        });
+    }
+
+    /**
+     * Commands are small, so Jetty is told to refuse any frame bigger than one
+     * before it buffers it, rather than after the whole thing has been read.
+     */
+    @OnWebSocketConnect
+    public void onConnect(Session session) {
+        session.getPolicy().setMaxTextMessageSize(maxCommandBytes);
+        session.getPolicy().setMaxBinaryMessageSize(maxCommandBytes);
+    }
+
+    @OnWebSocketClose
+    public void onClose(Session session, int statusCode, String reason) {
+        String gameID = sessionGames.remove(session);
+        if (gameID != null) {
+            var connectionManager = gameConnectionManagers.get(gameID);
+            if (connectionManager != null) {
+                connectionManager.removeSession(session);
             }
         }
     }
 
-    private void handleJoinPlayer(Session session, JoinPlayer player) throws IOException, ResponseException, DataAccessException {
-        var username = player.getUsername();
-        var authString = player.getAuthString();
-        String gameID = Integer.toString(player.getGameID());
-        ConnectionManager connectionManager = gameConnectionManagers.computeIfAbsent(gameID, k -> new ConnectionManager());
-        connectionManager.add(player.getAuthString(), session);
-
-        Collection<GameData> games;
-        try {
-            games = service.listGames(player.getAuthString());
-        } catch (UnauthorizedException ex) {
-            var message = "Unauthorized user";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
+    @OnWebSocketFrame
+    public void onFrame(Session session, Frame frame) {
+        if (frame.getType() == Frame.Type.PONG) {
+            touch(session);
         }
+    }
 
-        ChessGame game = null;
-        for (var listGame : games) {
-            if (listGame.getGameID() == player.getGameID()) {
-                if (player.getPlayerColor() == ChessGame.TeamColor.WHITE && listGame.getWhiteUsername() == null ||
-                        player.getPlayerColor() == ChessGame.TeamColor.BLACK && listGame.getBlackUsername() == null) {
-                    var message = "Player has not joined via HTTP";
-                    var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-                    connectionManager.sendMessage(authString, error);
-                    return;
-                }
-
-                var authDataName = service.getAuthData(authString).username();
-                if (player.getPlayerColor() == ChessGame.TeamColor.WHITE && Objects.equals(listGame.getBlackUsername(), authDataName) ||
-                        player.getPlayerColor() == ChessGame.TeamColor.BLACK && Objects.equals(listGame.getWhiteUsername(), authDataName)) {
-                    var message = "User is joining as wrong color";
-                    var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-                    connectionManager.sendMessage(authString, error);
-                    return;
-                }
-
-                game = listGame.getGame();
-                break;
+    private void touch(Session session) {
+        String gameID = sessionGames.get(session);
+        if (gameID != null) {
+            var connectionManager = gameConnectionManagers.get(gameID);
+            if (connectionManager != null) {
+                connectionManager.touch(session);
             }
         }
+    }
 
-        if (game == null) {
-            var message = "Game does not exist";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
+    @OnWebSocketMessage
+    public void onMessage(Session session, String message) {
+        if (message.length() > maxCommandBytes) {
+            session.close(StatusCode.MESSAGE_TOO_LARGE, "Command is too large");
             return;
         }
+        UserGameCommand command;
+        try {
+            command = Serializer.readCommand(message);
+        } catch (IOException ex) {
+            session.close(StatusCode.BAD_DATA, "Malformed command");
+            return;
+        }
+        dispatch(session, command);
+    }
 
-        var message = String.format("%s has joined the game as %s", username, player.getPlayerColor().toString());
-        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-        connectionManager.broadcast(authString, notification);
+    @OnWebSocketMessage
+    public void onMessage(Session session, byte[] payload, int offset, int length) throws IOException {
+        dispatch(session, BinaryProtocol.decodeCommand(payload, offset, length));
+    }
 
-        var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, game);
-        connectionManager.sendMessage(authString, loadGame);
+    /**
+     * Starts handling a command without waiting for the database. Commands for the
+     * same game run one after another in the order they arrived, so a client's moves
+     * and the moves of its opponent are never handled out of order.
+     */
+    private void dispatch(Session session, UserGameCommand command) {
+        touch(session);
+        int gameID = switch (command) {
+            case JoinPlayer join -> join.getGameID();
+            case JoinObserver observe -> observe.getGameID();
+            case MakeMove makeMove -> makeMove.getGameID();
+            case Leave leave -> leave.getGameID();
+            case Resign resign -> resign.getGameID();
+            case Resume resume -> resume.getGameID();
+            default -> 0;
+        };
+        String key = Integer.toString(gameID);
+        runInOrder(key, () -> switch (command.getCommandType()) {
+            case JOIN_PLAYER -> handleJoinPlayer(session, (JoinPlayer) command);
+            case JOIN_OBSERVER -> handleJoinObserver(session, (JoinObserver) command);
+            case MAKE_MOVE -> handleMakeMove((MakeMove) command);
+            case LEAVE -> handleLeave((Leave) command);
+            case RESIGN -> handleResign((Resign) command);
+            case RESUME -> handleResume(session, (Resume) command);
+        }, failure -> reportFailure(key, command.getAuthString(), failure));
     }
 
-    private void handleJoinObserver(Session session, JoinObserver observer) throws IOException, ResponseException, DataAccessException {
-        var username = observer.getUsername();
-        var authString = observer.getAuthString();
-        String gameID = Integer.toString(observer.getGameID());
-        ConnectionManager connectionManager = gameConnectionManagers.computeIfAbsent(gameID, k -> new ConnectionManager());
-        connectionManager.add(observer.getAuthString(), session);
+    /**
+     * Runs the handler once everything queued before it for the same game has finished
+     */
+    private void runInOrder(String gameID, Handler handler, Consumer<Throwable> onFailure) {
+        var done = new CompletableFuture<Void>();
+        CompletableFuture<Void> previous = gameChains.put(gameID, done);
+        (previous == null ? DONE : previous)
+                .thenCompose(ignored -> start(handler))
+                .whenComplete((ignored, failure) -> {
+                    if (failure != null) {
+                        onFailure.accept(failure);
+                    }
+                    gameChains.remove(gameID, done);
+                    done.complete(null);
+                });
+    }
 
-        Collection<GameData> games;
+    /**
+     * Sends everyone in a game the saved game after moves they were already shown
+     * could not be saved, because another request changed the game first
+     */
+    private void reloadGame(GameData gameData) {
+        String gameID = Integer.toString(gameData.getGameID());
+        runInOrder(gameID, () -> {
+            var connectionManager = gameConnectionManagers.get(gameID);
+            if (connectionManager != null) {
+                var message = "Recent moves could not be saved because the game was changed elsewhere. Reloading it";
+                var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
+                var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, gameData.getGame());
+                connectionManager.broadcast(List.of(new ConnectionManager.Broadcast("", notification),
+                        new ConnectionManager.Broadcast("", loadGame)));
+            }
+            return DONE;
+        }, failure -> System.out.printf("Unable to reload game %s: %s%n", gameID, failure.getMessage()));
+    }
+
+    private interface Handler {
+        CompletableFuture<Void> handle() throws IOException;
+    }
+
+    /**
+     * A continuation that may send messages or make a move
+     */
+    private interface Stage<T, R> {
+        R apply(T value) throws IOException, InvalidMoveException;
+    }
+
+    private static CompletableFuture<Void> start(Handler handler) {
         try {
-            games = service.listGames(observer.getAuthString());
-        } catch (UnauthorizedException ex) {
-            var message = "Unauthorized user";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
+            return handler.handle();
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
-        ChessGame game = null;
-        for (var listGame : games) {
-            if (listGame.getGameID() == observer.getGameID()) {
-                game = listGame.getGame();
-                break;
+    private static <T, R> Function<T, R> unchecked(Stage<T, R> stage) {
+        return value -> {
+            try {
+                return stage.apply(value);
+            } catch (IOException | InvalidMoveException e) {
+                throw new CompletionException(e);
             }
-        }
+        };
+    }
 
-        if (game == null) {
-            var message = "Game does not exist";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
+    private static boolean isConflict(Throwable failure) {
+        return failure != null && AsyncDataAccess.causeOf(failure) instanceof GameConflictException;
+    }
+
+    /**
+     * Tells the sender why its command failed, if it is still connected to the game
+     */
+    private void reportFailure(String gameID, String authString, Throwable failure) {
+        Throwable cause = AsyncDataAccess.causeOf(failure);
+        String message = cause instanceof UnauthorizedException ? "Unauthorized user" : "Error: " + cause.getMessage();
+        var connectionManager = gameConnectionManagers.get(gameID);
+        try {
+            if (connectionManager != null) {
+                connectionManager.sendMessage(authString, new Error(ServerMessage.ServerMessageType.ERROR, message));
+            }
+        } catch (IOException ex) {
+            System.out.printf("Unable to report a failed command: %s%n", ex.getMessage());
         }
+    }
 
-        var message = String.format("%s is now observing game %s", username, gameID);
-        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-        connectionManager.broadcast(authString, notification);
+    private static void sendError(ConnectionManager connectionManager, String authString, String message) throws IOException {
+        var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
+        connectionManager.sendMessage(authString, error);
+    }
 
-        var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, game);
-        connectionManager.sendMessage(authString, loadGame);
+    private CompletableFuture<Void> handleJoinPlayer(Session session, JoinPlayer player) {
+        var username = player.getUsername();
+        var authString = player.getAuthString();
+        String gameID = Integer.toString(player.getGameID());
+        ConnectionManager connectionManager = connect(gameID, player.getAuthString(), session, true);
+
+        return service.authorizeGameAsync(authString, player.getGameID()).thenCompose(unchecked(authorized -> {
+            GameData gameData = authorized.gameData();
+            if (gameData == null) {
+                sendError(connectionManager, authString, "Game does not exist");
+                return DONE;
+            }
+
+            if (player.getPlayerColor() == ChessGame.TeamColor.WHITE && gameData.getWhiteUsername() == null ||
+                    player.getPlayerColor() == ChessGame.TeamColor.BLACK && gameData.getBlackUsername() == null) {
+                sendError(connectionManager, authString, "Player has not joined via HTTP");
+                return DONE;
+            }
+
+            var authDataName = authorized.authData().username();
+            if (player.getPlayerColor() == ChessGame.TeamColor.WHITE && Objects.equals(gameData.getBlackUsername(), authDataName) ||
+                    player.getPlayerColor() == ChessGame.TeamColor.BLACK && Objects.equals(gameData.getWhiteUsername(), authDataName)) {
+                sendError(connectionManager, authString, "User is joining as wrong color");
+                return DONE;
+            }
+
+            var message = String.format("%s has joined the game as %s", username, player.getPlayerColor().toString());
+            var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
+            connectionManager.broadcast(authString, notification);
+
+            var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, gameData.getGame());
+            connectionManager.sendMessage(authString, loadGame);
+            return DONE;
+        }));
+    }
+
+    private CompletableFuture<Void> handleJoinObserver(Session session, JoinObserver observer) {
+        var username = observer.getUsername();
+        var authString = observer.getAuthString();
+        String gameID = Integer.toString(observer.getGameID());
+        ConnectionManager connectionManager = connect(gameID, observer.getAuthString(), session, false);
+
+        return service.getGameDataAsync(authString, observer.getGameID()).thenCompose(unchecked(gameData -> {
+            if (gameData == null) {
+                sendError(connectionManager, authString, "Game does not exist");
+                return DONE;
+            }
+
+            var message = String.format("%s is now observing game %s", username, gameID);
+            var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
+            connectionManager.broadcast(authString, notification);
+
+            var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, gameData.getGame());
+            connectionManager.sendMessage(authString, loadGame);
+            return DONE;
+        }));
     }
 
     private String convertPosition(ChessPosition chessPosition) {
@@ -158,60 +344,66 @@ public class WebSocketHandler {
         return letters[chessPosition.getColumn() - 1] + Integer.toString(chessPosition.getRow());
     }
 
-    private void handleMakeMove(MakeMove makeMove) throws IOException, ResponseException, UnauthorizedException, DataAccessException, InvalidMoveException, SQLException {
-        var username = makeMove.getUsername();
+    private CompletableFuture<Void> handleMakeMove(MakeMove makeMove) {
         var authString = makeMove.getAuthString();
         String gameID = Integer.toString(makeMove.getGameID());
         ConnectionManager connectionManager = gameConnectionManagers.get(gameID);
-        ChessGame.TeamColor playerColor = null;
-        ChessGame chessGame = null;
-        var games = service.listGames(makeMove.getAuthString());
-
-        var authDataName = service.getAuthData(authString).username();
-        for (var listGame : games) {
-            if (listGame.getGameID() == makeMove.getGameID()) {
-                chessGame = listGame.getGame();
+
+        return service.authorizeGameAsync(authString, makeMove.getGameID()).thenCompose(unchecked(authorized -> {
+            GameData gameData = authorized.gameData();
+            if (gameData == null) {
+                sendError(connectionManager, authString, "Game does not exist");
+                return DONE;
             }
-            if (listGame.getWhiteUsername() != null && listGame.getWhiteUsername().equals(authDataName)) {
+
+            ChessGame chessGame = gameData.getGame();
+            var authDataName = authorized.authData().username();
+            ChessGame.TeamColor playerColor = null;
+            if (Objects.equals(gameData.getWhiteUsername(), authDataName)) {
                 playerColor = ChessGame.TeamColor.WHITE;
-            } else if (listGame.getBlackUsername() != null && listGame.getBlackUsername().equals(authDataName)) {
+            } else if (Objects.equals(gameData.getBlackUsername(), authDataName)) {
                 playerColor = ChessGame.TeamColor.BLACK;
             }
-        }
 
-        assert chessGame != null;
-        if (chessGame.getGameIsOver()) {
-            var message = "Unauthorized user";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
-        }
+            if (chessGame.getGameIsOver()) {
+                sendError(connectionManager, authString, "Unauthorized user");
+                return DONE;
+            }
 
-        var move = makeMove.getMove();
-        var validMoves = chessGame.validMoves(move.getStartPosition());
-        if (!validMoves.contains(move)) {
-            var message = "Invalid move";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
-        }
+            var move = makeMove.getMove();
+            var validMoves = chessGame.validMoves(move.getStartPosition());
+            if (!validMoves.contains(move)) {
+                sendError(connectionManager, authString, "Invalid move");
+                return DONE;
+            }
 
-        if (chessGame.getTeamTurn() != playerColor) {
-            var message = "It is the other player's turn";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
-        }
+            if (chessGame.getTeamTurn() != playerColor) {
+                sendError(connectionManager, authString, "It is the other player's turn");
+                return DONE;
+            }
 
-        if (chessGame.getGameIsOver()) {
-            var message = "The game is over";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
-        }
+            chessGame.makeMove(move);
+            return service.recordMoveAsync(authorized, chessGame, move)
+                    .handle((ignored, failure) -> failure)
+                    .thenCompose(unchecked(failure -> {
+                        if (isConflict(failure)) {
+                            sendError(connectionManager, authString, "The game changed before your move was saved. Reload it and try again");
+                            return DONE;
+                        }
+                        if (failure != null) {
+                            return CompletableFuture.failedFuture(failure);
+                        }
+                        broadcastMove(connectionManager, makeMove, chessGame);
+                        return DONE;
+                    }));
+        }));
+    }
 
-        chessGame.makeMove(move);
-        service.updateGame(authString, chessGame, makeMove.getGameID());
+    private void broadcastMove(ConnectionManager connectionManager, MakeMove makeMove, ChessGame chessGame) throws IOException {
+        var move = makeMove.getMove();
+
+        // Everything this move produces goes out together so batching clients get one frame
+        List<ConnectionManager.Broadcast> broadcasts = new ArrayList<>();
 
         if (chessGame.getGameIsOver()) {
             String message = null;
@@ -225,87 +417,124 @@ public class WebSocketHandler {
                 message = "The game is over. Black is in stalemate";
             }
             var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-            connectionManager.broadcast("", notification);
+            broadcasts.add(new ConnectionManager.Broadcast("", notification));
         }
 
         if (chessGame.isInCheck(ChessGame.TeamColor.WHITE)) {
             var message = "White is in check";
             var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-            connectionManager.broadcast("", notification);
+            broadcasts.add(new ConnectionManager.Broadcast("", notification));
         } else if (chessGame.isInCheck(ChessGame.TeamColor.BLACK)) {
             var message = "Black is in check";
             var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-            connectionManager.broadcast("", notification);
+            broadcasts.add(new ConnectionManager.Broadcast("", notification));
         }
 
-        var message = String.format("%s moved %s from %s to %s", username, chessGame.getBoard().getPiece(move.getEndPosition()).toString(),
+        var message = String.format("%s moved %s from %s to %s", makeMove.getUsername(), chessGame.getBoard().getPiece(move.getEndPosition()).toString(),
                 convertPosition(move.getStartPosition()), convertPosition(move.getEndPosition()));
         var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-        connectionManager.broadcast(authString, notification);
+        broadcasts.add(new ConnectionManager.Broadcast(makeMove.getAuthString(), notification));
 
         var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, chessGame);
-        connectionManager.broadcast("", loadGame);
+        broadcasts.add(new ConnectionManager.Broadcast("", loadGame));
+        connectionManager.broadcast(broadcasts);
     }
 
-    private void handleLeave(Leave leave) throws IOException, ResponseException, SQLException, UnauthorizedException, DataAccessException {
+    private CompletableFuture<Void> handleLeave(Leave leave) {
         var username = leave.getUsername();
         String gameID = Integer.toString(leave.getGameID());
         ConnectionManager connectionManager = gameConnectionManagers.get(gameID);
-        var message = String.format("%s has left game %s", username, gameID);
-
-        GameData gameData = service.getGameData(leave.getAuthString(), leave.getGameID());
-        if (gameData.getWhiteUsername() != null && gameData.getWhiteUsername().equals(username)) {
-            gameData = gameData.changeWhiteName(null);
-            service.updateGameData(leave.getAuthString(), gameData);
-        } else if (gameData.getBlackUsername() != null && gameData.getBlackUsername().equals(username)) {
-            gameData = gameData.changeBlackName(null);
-            service.updateGameData(leave.getAuthString(), gameData);
-        } else {
-            message += " as an observer";
-        }
 
-        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-        connectionManager.broadcast(username, notification);
+        return service.leaveGameAsync(leave.getAuthString(), leave.getGameID()).thenCompose(unchecked(leftSeat -> {
+            var message = String.format("%s has left game %s", username, gameID);
+            if (!leftSeat) {
+                message += " as an observer";
+            }
+
+            var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
+            connectionManager.broadcast(username, notification);
 
-        connectionManager.remove(username);
+            connectionManager.remove(leave.getAuthString());
+            return DONE;
+        }));
     }
 
-    private void handleResign(Resign resign) throws IOException, ResponseException, UnauthorizedException, DataAccessException, SQLException {
+    private CompletableFuture<Void> handleResign(Resign resign) {
         var username = resign.getUsername();
         var authString = resign.getAuthString();
         String gameID = Integer.toString(resign.getGameID());
         ConnectionManager connectionManager = gameConnectionManagers.get(gameID);
 
-        ChessGame chessGame = null;
-        var games = service.listGames(resign.getAuthString());
-        for (var listGame : games) {
-            if (listGame.getGameID() == resign.getGameID()) {
-                chessGame = listGame.getGame();
-
-                var authDataName = service.getAuthData(authString).username();
-                if (!Objects.equals(listGame.getWhiteUsername(), authDataName) &&
-                        !Objects.equals(listGame.getBlackUsername(), authDataName)) {
-                    var message = "Observer can't resign";
-                    var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-                    connectionManager.sendMessage(authString, error);
-                    return;
-                }
+        return service.authorizeGameAsync(authString, resign.getGameID()).thenCompose(unchecked(authorized -> {
+            GameData gameData = authorized.gameData();
+            if (gameData == null) {
+                sendError(connectionManager, authString, "Game does not exist");
+                return DONE;
             }
-        }
 
-        assert chessGame != null;
+            var authDataName = authorized.authData().username();
+            if (!Objects.equals(gameData.getWhiteUsername(), authDataName) &&
+                    !Objects.equals(gameData.getBlackUsername(), authDataName)) {
+                sendError(connectionManager, authString, "Observer can't resign");
+                return DONE;
+            }
 
-        if (chessGame.getGameIsOver()) {
-            var message = "Game is already over";
-            var error = new Error(ServerMessage.ServerMessageType.ERROR, message);
-            connectionManager.sendMessage(authString, error);
-            return;
-        }
-        chessGame.gameIsOver();
-        service.updateGame(resign.getAuthString(), chessGame, resign.getGameID());
+            ChessGame chessGame = gameData.getGame();
+            if (chessGame.getGameIsOver()) {
+                sendError(connectionManager, authString, "Game is already over");
+                return DONE;
+            }
+            chessGame.gameIsOver();
+
+            return service.updateGameAsync(authorized, chessGame)
+                    .handle((ignored, failure) -> failure)
+                    .thenCompose(unchecked(failure -> {
+                        if (isConflict(failure)) {
+                            sendError(connectionManager, authString, "The game changed before your resignation was saved. Try again");
+                            return DONE;
+                        }
+                        if (failure != null) {
+                            return CompletableFuture.failedFuture(failure);
+                        }
+                        var message = String.format("%s has resigned. The game is over", username);
+                        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
+                        connectionManager.broadcast("", notification);
+                        return DONE;
+                    }));
+        }));
+    }
 
-        var message = String.format("%s has resigned. The game is over", username);
-        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
-        connectionManager.broadcast("", notification);
+    private CompletableFuture<Void> handleResume(Session session, Resume resume) {
+        var authString = resume.getAuthString();
+        String gameID = Integer.toString(resume.getGameID());
+
+        // The game is fetched alongside the token in case the missed events are gone
+        return service.authorizeGameAsync(authString, resume.getGameID()).thenCompose(unchecked(authorized -> {
+            GameData gameData = authorized.gameData();
+            if (gameData == null) {
+                ConnectionManager.reject(authString, session, new Error(ServerMessage.ServerMessageType.ERROR, "Game does not exist"));
+                return DONE;
+            }
+
+            // Only join the game once the token is known to be good, in the role its seat gives it
+            var authDataName = authorized.authData().username();
+            boolean player = Objects.equals(gameData.getWhiteUsername(), authDataName) ||
+                    Objects.equals(gameData.getBlackUsername(), authDataName);
+            ConnectionManager connectionManager = connect(gameID, authString, session, player);
+            if (connectionManager.replay(authString, resume.getLastSequence())) {
+                return DONE;
+            }
+
+            // The missed events are gone, so fall back to a full snapshot
+            var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, gameData.getGame());
+            connectionManager.sendMessage(authString, loadGame);
+            return DONE;
+        })).exceptionallyCompose(unchecked(failure -> {
+            if (!(AsyncDataAccess.causeOf(failure) instanceof UnauthorizedException)) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            ConnectionManager.reject(authString, session, new Error(ServerMessage.ServerMessageType.ERROR, "Unauthorized user"));
+            return DONE;
+        }));
     }
 }
@@ -0,0 +1,47 @@
+package service;
+
+import model.GameData;
+import model.GameSummary;
+import model.LobbyEvent;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Announces lobby changes as they are saved, so clients can follow the lobby instead
+ * of polling the game list. The version goes up with every change.
+ */
+public class LobbyFeed {
+    private final CopyOnWriteArrayList<Consumer<LobbyEvent>> listeners = new CopyOnWriteArrayList<>();
+    private long version;
+
+    public void subscribe(Consumer<LobbyEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(Consumer<LobbyEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Listeners are called on the thread that made the change, in version order,
+     * so they should hand the event off rather than do slow work
+     * @param game the game as saved, or null for CLEARED
+     */
+    public synchronized void publish(LobbyEvent.Type type, GameData game) {
+        var summary = game == null ? null :
+                new GameSummary(game.getGameID(), game.getWhiteUsername(), game.getBlackUsername(), game.getGameName());
+        var event = new LobbyEvent(type, ++version, summary, null);
+        for (var listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException ex) {
+                System.out.printf("Lobby listener failed: %s%n", ex.getMessage());
+            }
+        }
+    }
+}
@@ -2,20 +2,49 @@ package service;
 
 import chess.ChessBoard;
 import chess.ChessGame;
+import chess.ChessMove;
+import config.ServerConfig;
 import dataAccess.*;
 import exception.ResponseException;
 import model.AuthData;
 import model.GameData;
+import model.GameList;
+import model.GameQuery;
+import model.GameSummary;
+import model.LobbyEvent;
 import model.UserData;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class UserService {
     private final DataAccess dataAccess;
+    private final AsyncDataAccess async;
+    private final int conflictAttempts = 1 + Math.max(0, ServerConfig.getInt("db.conflictRetries", 3));
+    private final LobbyFeed lobby = new LobbyFeed();
+
+    private interface GameChange {
+        void apply() throws DataAccessException, ResponseException, InvalidGameID, SQLException;
+    }
+
+    /**
+     * A game together with the auth token that asked for it
+     */
+    public record AuthorizedGame(AuthData authData, GameData gameData) {}
 
     public UserService(DataAccess dataAccess) {
+        this(dataAccess, new AsyncDataAccess(dataAccess,
+                ServerConfig.getInt("db.async.threads", 10),
+                ServerConfig.getInt("db.async.queueSize", 256)));
+    }
+
+    public UserService(DataAccess dataAccess, AsyncDataAccess async) {
         this.dataAccess = dataAccess;
+        this.async = async;
     }
 
     public AuthData register(UserData user) throws UnauthorizedException, DataAccessException, ResponseException, SQLException {
@@ -37,6 +66,9 @@ public class UserService {
         } else if (!dataAccess.passwordsMatch(password, existingUser.password())) {
             throw new DataAccessException("Incorrect password.");
         } else {
+            if (dataAccess.passwordNeedsRehash(existingUser.password())) {
+                dataAccess.updatePasswordHash(username, dataAccess.hashPassword(password));
+            }
             return dataAccess.createAuth(existingUser);
         }
     }
@@ -50,6 +82,15 @@ public class UserService {
         dataAccess.deleteAuth(authData);
     }
 
+    public GameList listGameSummaries(String authToken, GameQuery query) throws UnauthorizedException, DataAccessException, ResponseException {
+        AuthData authData = dataAccess.getAuth(authToken);
+        if (authData == null) {
+            throw new UnauthorizedException("User is not registered with the system.");
+        }
+
+        return dataAccess.listGameSummaries(query);
+    }
+
     public Collection<GameData> listGames(String authToken) throws UnauthorizedException, DataAccessException, ResponseException {
         AuthData authData = dataAccess.getAuth(authToken);
         if (authData == null) {
@@ -59,6 +100,54 @@ public class UserService {
         return dataAccess.getGames();
     }
 
+    /**
+     * Registers a listener given the saved game whenever moves already accepted for it
+     * were thrown away because another request changed the game first
+     */
+    public void onLostMoves(Consumer<GameData> listener) {
+        dataAccess.addConflictListener(gameID -> async.getGameData(gameID).thenAccept(gameData -> {
+            if (gameData != null) {
+                listener.accept(gameData);
+            }
+        }));
+    }
+
+    /**
+     * @return the store's count of changes to the game listing, which tells pollers
+     * whether a listing they already have is still current
+     */
+    public long getLobbyVersion() throws DataAccessException, ResponseException {
+        return dataAccess.getLobbyVersion();
+    }
+
+    public LobbyFeed getLobby() {
+        return lobby;
+    }
+
+    /**
+     * Lists every active game for a client that starts following the lobby. The
+     * snapshot's version is read first, so any change it might have missed arrives
+     * as a later event.
+     */
+    public CompletableFuture<LobbyEvent> lobbySnapshotAsync(String authToken) {
+        return async.supply(dataAccess -> {
+            if (dataAccess.getAuth(authToken) == null) {
+                throw new UnauthorizedException("User is not registered with the system.");
+            }
+
+            long version = lobby.getVersion();
+            var games = new ArrayList<GameSummary>();
+            var query = new GameQuery(null, GameQuery.MAX_LIMIT, false, null, "ACTIVE");
+            GameList page;
+            do {
+                page = dataAccess.listGameSummaries(query);
+                games.addAll(page.games());
+                query = query.after(page.nextCursor());
+            } while (page.nextCursor() != null);
+            return LobbyEvent.snapshot(version, games);
+        });
+    }
+
     public AuthData getAuthData(String authToken) throws ResponseException, DataAccessException {
         return dataAccess.getAuth(authToken);
     }
@@ -74,7 +163,9 @@ public class UserService {
         ChessBoard newBoard = new ChessBoard();
         newBoard.resetBoard();
         game.setBoard(newBoard);
-        dataAccess.createGame(new GameData(newGameID, null, null, gameName, game));
+        var gameData = new GameData(newGameID, null, null, gameName, game);
+        dataAccess.createGame(gameData);
+        lobby.publish(LobbyEvent.Type.CREATED, gameData);
 
         return newGameID;
     }
@@ -85,8 +176,51 @@ public class UserService {
             throw new UnauthorizedException("User is not registered with the system.");
         }
 
-        var username = dataAccess.getAuth(authToken).username();
-        dataAccess.joinGame(username, playerColor, gameID);
+        retryOnConflict(() -> dataAccess.joinGame(authData.username(), playerColor, gameID));
+        if (playerColor != null) {
+            lobby.publish(LobbyEvent.Type.JOINED, dataAccess.getGameData(gameID));
+        }
+    }
+
+    /**
+     * Frees the user's seat in the game, if they have one
+     * @return whether a seat was freed, false if the user was only observing
+     */
+    public boolean leaveGame(String authToken, int gameID) throws UnauthorizedException, DataAccessException, ResponseException, SQLException {
+        AuthData authData = dataAccess.getAuth(authToken);
+        if (authData == null) {
+            throw new UnauthorizedException("User is not registered with the system.");
+        }
+
+        var leftGame = new GameData[1];
+        try {
+            retryOnConflict(() -> {
+                GameData game = dataAccess.getGameData(gameID);
+                leftGame[0] = null;
+                if (game == null) {
+                    return;
+                }
+                if (authData.username().equals(game.getWhiteUsername())) {
+                    leftGame[0] = game.changeWhiteName(null);
+                } else if (authData.username().equals(game.getBlackUsername())) {
+                    leftGame[0] = game.changeBlackName(null);
+                } else {
+                    return;
+                }
+                dataAccess.updateGame(leftGame[0]);
+            });
+        } catch (InvalidGameID e) {
+            return false;
+        }
+        if (leftGame[0] == null) {
+            return false;
+        }
+        lobby.publish(LobbyEvent.Type.LEFT, leftGame[0]);
+        return true;
+    }
+
+    public CompletableFuture<Boolean> leaveGameAsync(String authToken, int gameID) {
+        return async.supply(dataAccess -> leaveGame(authToken, gameID));
     }
 
     public GameData getGameData(String authToken, Integer gameID) throws ResponseException, DataAccessException, UnauthorizedException, SQLException {
@@ -99,12 +233,41 @@ public class UserService {
     }
 
     public void updateGame(String authToken, ChessGame newGame, int gameID) throws ResponseException, DataAccessException, UnauthorizedException, SQLException {
+        GameData gameData = playerGame(authToken, newGame, gameID);
+        dataAccess.updateGame(gameData);
+        announceIfFinished(gameData);
+    }
+
+    /**
+     * Saves a game after the given move has been made in it
+     */
+    public void recordMove(String authToken, ChessGame newGame, ChessMove move, int gameID) throws ResponseException, DataAccessException, UnauthorizedException, SQLException {
+        GameData gameData = playerGame(authToken, newGame, gameID);
+        dataAccess.recordMove(gameData, move);
+        announceIfFinished(gameData);
+    }
+
+    private void announceIfFinished(GameData gameData) {
+        if (gameData.getGame() != null && gameData.getGame().getGameIsOver()) {
+            lobby.publish(LobbyEvent.Type.FINISHED, gameData);
+        }
+    }
+
+    /**
+     * Checks that the user plays in the game and returns the game with its state replaced
+     */
+    private GameData playerGame(String authToken, ChessGame newGame, int gameID) throws ResponseException, DataAccessException, UnauthorizedException, SQLException {
         AuthData authData = dataAccess.getAuth(authToken);
         if (authData == null) {
             throw new UnauthorizedException("User is not registered with the system.");
         }
 
-        GameData existingGame = dataAccess.getGameData(gameID);
+        return playerGame(new AuthorizedGame(authData, dataAccess.getGameData(gameID)), newGame);
+    }
+
+    private GameData playerGame(AuthorizedGame game, ChessGame newGame) throws DataAccessException, UnauthorizedException {
+        AuthData authData = game.authData();
+        GameData existingGame = game.gameData();
         if (existingGame == null) {
             throw new DataAccessException("No game found with the provided game ID.");
         }
@@ -115,8 +278,7 @@ public class UserService {
         }
 
         existingGame.setGame(newGame);
-
-        dataAccess.updateGame(existingGame);
+        return existingGame;
     }
 
     public void updateGameData(String authToken, GameData newGameData) throws UnauthorizedException, ResponseException, DataAccessException {
@@ -126,6 +288,68 @@ public class UserService {
         }
 
         dataAccess.updateGame(newGameData);
+        announceIfFinished(newGameData);
+    }
+
+    /**
+     * Looks up the auth token and the game at the same time
+     * @return a future that fails with UnauthorizedException if the token is unknown;
+     * its game is null if there is no such game
+     */
+    public CompletableFuture<AuthorizedGame> authorizeGameAsync(String authToken, int gameID) {
+        return async.getAuth(authToken).thenCombine(async.getGameData(gameID), (authData, gameData) -> {
+            if (authData == null) {
+                throw new CompletionException(new UnauthorizedException("User is not registered with the system."));
+            }
+            return new AuthorizedGame(authData, gameData);
+        });
+    }
+
+    public CompletableFuture<GameData> getGameDataAsync(String authToken, int gameID) {
+        return authorizeGameAsync(authToken, gameID).thenApply(AuthorizedGame::gameData);
+    }
+
+    /**
+     * Saves a game looked up with authorizeGameAsync after the given move was made in it,
+     * without looking the token and game up again
+     */
+    public CompletableFuture<Void> recordMoveAsync(AuthorizedGame game, ChessGame newGame, ChessMove move) {
+        try {
+            GameData gameData = playerGame(game, newGame);
+            return async.recordMove(gameData, move).thenRun(() -> announceIfFinished(gameData));
+        } catch (DataAccessException | UnauthorizedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public CompletableFuture<Void> updateGameAsync(AuthorizedGame game, ChessGame newGame) {
+        try {
+            GameData gameData = playerGame(game, newGame);
+            return async.updateGame(gameData).thenRun(() -> announceIfFinished(gameData));
+        } catch (DataAccessException | UnauthorizedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Runs a read-modify-write of a game again when another request saved the game in
+     * between, up to db.conflictRetries more times. Each attempt must re-read the game.
+     */
+    private void retryOnConflict(GameChange change) throws DataAccessException, ResponseException, InvalidGameID, SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                change.apply();
+                return;
+            } catch (GameConflictException e) {
+                if (attempt >= conflictAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public void close() {
+        async.close();
     }
 
     public void clearApplication() throws DataAccessException, ResponseException, SQLException {
@@ -133,5 +357,6 @@ public class UserService {
         dataAccess.clearGames();
         dataAccess.clearAuthTokens();
         dataAccess.clearGameIDs();
+        lobby.publish(LobbyEvent.Type.CLEARED, null);
     }
 }
@@ -0,0 +1,74 @@
+package dataAccessTests;
+
+import dataAccess.AsyncDataAccess;
+import dataAccess.DataAccessException;
+import dataAccess.MemoryDataAccess;
+import exception.ResponseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncDataAccessTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AsyncDataAccess async = new AsyncDataAccess(new MemoryDataAccess(), 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        async.close();
+    }
+
+    private CompletableFuture<String> blockedCall(String result) {
+        return async.supply(dataAccess -> {
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new DataAccessException("Interrupted");
+            }
+            return result;
+        });
+    }
+
+    @Test
+    void callsBeyondThreadsAndQueueFailWith503() throws Exception {
+        var running = blockedCall("running");
+        var queued = blockedCall("queued");
+
+        var rejected = blockedCall("rejected");
+        assertTrue(rejected.isCompletedExceptionally());
+        var failure = assertThrows(ExecutionException.class, rejected::get);
+        var busy = assertInstanceOf(ResponseException.class, AsyncDataAccess.causeOf(failure));
+        assertEquals(503, busy.getStatusCode());
+
+        release.countDown();
+        assertEquals("running", running.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void causeOfUnwrapsToTheCallsOwnException() {
+        release.countDown();
+        var failed = async.supply(dataAccess -> {
+            throw new DataAccessException("Game not found");
+        });
+
+        var joined = assertThrows(CompletionException.class, () -> failed.thenApply(value -> value).join());
+        assertEquals("Game not found", assertInstanceOf(DataAccessException.class, AsyncDataAccess.causeOf(joined)).getMessage());
+
+        var got = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(DataAccessException.class, AsyncDataAccess.causeOf(got));
+
+        var nested = new CompletionException(new ExecutionException(new DataAccessException("deep")));
+        assertEquals("deep", AsyncDataAccess.causeOf(nested).getMessage());
+
+        var bare = new CompletionException("no cause", null);
+        assertSame(bare, AsyncDataAccess.causeOf(bare));
+    }
+}
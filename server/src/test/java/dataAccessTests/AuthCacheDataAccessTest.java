@@ -0,0 +1,102 @@
+package dataAccessTests;
+
+import dataAccess.AuthCacheDataAccess;
+import dataAccess.DataAccessException;
+import dataAccess.MemoryDataAccess;
+import model.AuthData;
+import model.UserData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthCacheDataAccessTest {
+    /**
+     * Counts the token lookups that get past the cache
+     */
+    private static class CountingDataAccess extends MemoryDataAccess {
+        final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public AuthData getAuth(String authToken) throws DataAccessException {
+            lookups.incrementAndGet();
+            return super.getAuth(authToken);
+        }
+    }
+
+    private final CountingDataAccess delegate = new CountingDataAccess();
+
+    private static UserData user(String username) {
+        return new UserData(username, "password", username + "@mail.com");
+    }
+
+    @Test
+    void cachedTokensExpireAfterTheirTtl() throws Exception {
+        var cache = new AuthCacheDataAccess(delegate, 100, 50, 60_000);
+        AuthData auth = cache.createAuth(user("alice"));
+
+        assertEquals(auth, cache.getAuth(auth.authToken()));
+        assertEquals(0, delegate.lookups.get());
+
+        Thread.sleep(80);
+        assertEquals(auth, cache.getAuth(auth.authToken()));
+        assertEquals(1, delegate.lookups.get());
+        assertEquals(1, cache.getMetrics().hits());
+        assertEquals(1, cache.getMetrics().misses());
+    }
+
+    @Test
+    void unusedTokensExpireAfterTheIdleTime() throws Exception {
+        var cache = new AuthCacheDataAccess(delegate, 100, 60_000, 100);
+        AuthData auth = cache.createAuth(user("bob"));
+
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(40);
+            cache.getAuth(auth.authToken());
+        }
+        assertEquals(0, delegate.lookups.get());
+
+        Thread.sleep(150);
+        cache.getAuth(auth.authToken());
+        assertEquals(1, delegate.lookups.get());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedTokens() throws Exception {
+        var cache = new AuthCacheDataAccess(delegate, 10, 60_000, 60_000);
+        var tokens = new ArrayList<AuthData>();
+        for (int i = 0; i < 10; i++) {
+            tokens.add(cache.createAuth(user("user" + i)));
+            Thread.sleep(2);
+        }
+        cache.getAuth(tokens.get(0).authToken());
+        Thread.sleep(2);
+
+        // Going over maxEntries trims the cache a tenth below it, oldest use first
+        tokens.add(cache.createAuth(user("user10")));
+        assertEquals(9, cache.getMetrics().size());
+        assertEquals(2, cache.getMetrics().evictions());
+
+        cache.getAuth(tokens.get(0).authToken());
+        cache.getAuth(tokens.get(10).authToken());
+        assertEquals(0, delegate.lookups.get());
+        cache.getAuth(tokens.get(1).authToken());
+        cache.getAuth(tokens.get(2).authToken());
+        assertEquals(2, delegate.lookups.get());
+    }
+
+    @Test
+    void logoutRemovesTheTokenRightAway() throws Exception {
+        var cache = new AuthCacheDataAccess(delegate, 100, 60_000, 60_000);
+        AuthData auth = cache.createAuth(user("carol"));
+        assertNotNull(cache.getAuth(auth.authToken()));
+
+        cache.deleteAuth(auth);
+
+        assertNull(cache.getAuth(auth.authToken()));
+        assertEquals(1, delegate.lookups.get());
+        assertEquals(0, cache.getMetrics().size());
+    }
+}
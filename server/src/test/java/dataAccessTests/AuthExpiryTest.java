@@ -0,0 +1,149 @@
+package dataAccessTests;
+
+import dataAccess.*;
+import model.AuthData;
+import model.UserData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthExpiryTest {
+    private static final long DAY_SECONDS = 24 * 60 * 60;
+
+    /**
+     * Lets tests move a token's expiry without waiting for it
+     */
+    private static class ExpiringMemoryDataAccess extends MemoryDataAccess {
+        void expireIn(String authToken, long seconds) {
+            var issued = getIssuedAuths().get(authToken);
+            getIssuedAuths().put(authToken, new IssuedAuth(issued.auth(), System.currentTimeMillis() + seconds * 1000));
+        }
+
+        long secondsLeft(String authToken) {
+            return (getIssuedAuths().get(authToken).expiresAt() - System.currentTimeMillis()) / 1000;
+        }
+    }
+
+    /**
+     * Hands out the batch sizes it is given, one per purge, and records each request
+     */
+    private static class ScriptedPurgeDataAccess extends MemoryDataAccess {
+        final List<Integer> requested = new CopyOnWriteArrayList<>();
+        final CountDownLatch purges;
+        private final int[] results;
+
+        ScriptedPurgeDataAccess(int... results) {
+            this.results = results;
+            this.purges = new CountDownLatch(results.length);
+        }
+
+        @Override
+        public int purgeExpiredAuths(int batchSize) {
+            int call = requested.size();
+            requested.add(batchSize);
+            purges.countDown();
+            return call < results.length ? results[call] : 0;
+        }
+    }
+
+    private static DataAccess getDataAccess(Class<? extends DataAccess> databaseClass) throws Exception {
+        DataAccess db = databaseClass.equals(MySqlDataAccess.class) ? new MySqlDataAccess() : new ExpiringMemoryDataAccess();
+        db.clearAuthTokens();
+        return db;
+    }
+
+    private static void expireIn(DataAccess db, String authToken, long seconds) throws Exception {
+        if (db instanceof ExpiringMemoryDataAccess memory) {
+            memory.expireIn(authToken, seconds);
+            return;
+        }
+        try (var conn = DatabaseManager.getDataSource().getConnection();
+             var ps = conn.prepareStatement("UPDATE auth_tokens SET expiresAt = NOW() + INTERVAL ? SECOND WHERE authToken=?")) {
+            ps.setLong(1, seconds);
+            ps.setString(2, authToken);
+            assertEquals(1, ps.executeUpdate());
+        }
+    }
+
+    private static long secondsLeft(DataAccess db, String authToken) throws Exception {
+        if (db instanceof ExpiringMemoryDataAccess memory) {
+            return memory.secondsLeft(authToken);
+        }
+        try (var conn = DatabaseManager.getDataSource().getConnection();
+             var ps = conn.prepareStatement("SELECT TIMESTAMPDIFF(SECOND, NOW(), expiresAt) FROM auth_tokens WHERE authToken=?")) {
+            ps.setString(1, authToken);
+            try (var rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private static AuthData login(DataAccess db, String username) throws Exception {
+        return db.createAuth(new UserData(username, "password", username + "@mail.com"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    void expiredTokensAreRejected(Class<? extends DataAccess> dbClass) throws Exception {
+        DataAccess db = getDataAccess(dbClass);
+        AuthData auth = login(db, "alice");
+
+        expireIn(db, auth.authToken(), -1);
+
+        assertNull(db.getAuth(auth.authToken()));
+        assertTrue(db.getAuths().isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    void tokensAreRenewedOnlyBelowHalfTheirLifetime(Class<? extends DataAccess> dbClass) throws Exception {
+        DataAccess db = getDataAccess(dbClass);
+        AuthData fresh = login(db, "alice");
+        AuthData old = login(db, "bob");
+        expireIn(db, fresh.authToken(), DAY_SECONDS * 3 / 4);
+        expireIn(db, old.authToken(), DAY_SECONDS / 4);
+
+        assertEquals(fresh, db.getAuth(fresh.authToken()));
+        assertEquals(old, db.getAuth(old.authToken()));
+
+        assertTrue(secondsLeft(db, fresh.authToken()) <= DAY_SECONDS * 3 / 4);
+        assertTrue(secondsLeft(db, old.authToken()) > DAY_SECONDS - 60);
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    void purgeRemovesOneBatchOfExpiredTokens(Class<? extends DataAccess> dbClass) throws Exception {
+        DataAccess db = getDataAccess(dbClass);
+        AuthData live = login(db, "alice");
+        for (int i = 0; i < 5; i++) {
+            expireIn(db, login(db, "expired" + i).authToken(), -60);
+        }
+
+        assertEquals(2, db.purgeExpiredAuths(2));
+        assertEquals(2, db.purgeExpiredAuths(2));
+        assertEquals(1, db.purgeExpiredAuths(2));
+        assertEquals(0, db.purgeExpiredAuths(2));
+        assertEquals(live, db.getAuth(live.authToken()));
+    }
+
+    @Test
+    void purgerKeepsGoingUntilABatchComesBackShort() throws Exception {
+        var db = new ScriptedPurgeDataAccess(3, 3, 1);
+        var purger = new ExpiredAuthPurger(db, 1, 3);
+        try {
+            assertTrue(db.purges.await(5, TimeUnit.SECONDS));
+        } finally {
+            purger.close();
+        }
+        // The short batch ends the run; the next one waits for the following interval
+        assertEquals(List.of(3, 3, 3), db.requested);
+    }
+}
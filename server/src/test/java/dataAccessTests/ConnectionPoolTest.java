@@ -0,0 +1,232 @@
+package dataAccessTests;
+
+import dataAccess.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+    private static final String URL = "jdbc:fakepool:test";
+    private static final List<FakeConnection> opened = new CopyOnWriteArrayList<>();
+
+    private ConnectionPool pool;
+
+    /**
+     * The state of one connection the fake driver handed out
+     */
+    private static class FakeConnection {
+        boolean autoCommit = true;
+        String catalog;
+        boolean closed;
+        boolean valid = true;
+        int rollbacks;
+        int validations;
+
+        final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getAutoCommit" -> autoCommit;
+                    case "setAutoCommit" -> {
+                        autoCommit = (boolean) args[0];
+                        yield null;
+                    }
+                    case "getCatalog" -> catalog;
+                    case "setCatalog" -> {
+                        catalog = (String) args[0];
+                        yield null;
+                    }
+                    case "rollback" -> {
+                        rollbacks++;
+                        yield null;
+                    }
+                    case "isValid" -> {
+                        validations++;
+                        yield valid && !closed;
+                    }
+                    case "isClosed" -> closed;
+                    case "close" -> {
+                        closed = true;
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    private static class FakeDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            var fake = new FakeConnection();
+            opened.add(fake);
+            return fake.connection;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:fakepool:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    @BeforeAll
+    static void registerDriver() throws SQLException {
+        DriverManager.registerDriver(new FakeDriver());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        opened.clear();
+    }
+
+    private ConnectionPool pool(int maxSize, long borrowTimeoutMillis) {
+        return pool(maxSize, borrowTimeoutMillis, 0);
+    }
+
+    private ConnectionPool pool(int maxSize, long borrowTimeoutMillis, long validateAfterIdleMillis) {
+        pool = new ConnectionPool(URL, "user", "password", "chess",
+                new ConnectionPool.Settings(0, maxSize, borrowTimeoutMillis, 1, validateAfterIdleMillis, 0, false));
+        return pool;
+    }
+
+    @Test
+    void borrowTimesOutWhenEveryConnectionIsInUse() throws Exception {
+        var pool = pool(1, 50);
+        try (var held = pool.getConnection()) {
+            assertFalse(held.isClosed());
+            long start = System.nanoTime();
+            assertThrows(SQLException.class, pool::getConnection);
+            assertTrue(System.nanoTime() - start >= 40_000_000L);
+        }
+
+        assertEquals(1, pool.getMetrics().timeouts());
+        try (var connection = pool.getConnection()) {
+            assertNotNull(connection);
+        }
+    }
+
+    @Test
+    void invalidIdleConnectionsAreReplaced() throws Exception {
+        var pool = pool(2, 1000);
+        pool.getConnection().close();
+        assertEquals(1, opened.size());
+        opened.get(0).valid = false;
+
+        try (var replacement = pool.getConnection()) {
+            assertFalse(replacement.isClosed());
+            assertEquals(2, opened.size());
+            assertTrue(opened.get(0).closed);
+        }
+        assertEquals(2, pool.getMetrics().created());
+        assertEquals(1, pool.getMetrics().discarded());
+    }
+
+    @Test
+    void returnedConnectionsAreReset() throws Exception {
+        var pool = pool(1, 1000);
+        var connection = pool.getConnection();
+        connection.setAutoCommit(false);
+        connection.setCatalog("other");
+        connection.close();
+
+        var fake = opened.get(0);
+        assertEquals(1, fake.rollbacks);
+        assertTrue(fake.autoCommit);
+        assertEquals("chess", fake.catalog);
+        assertFalse(fake.closed);
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+
+        // The same connection is lent again
+        try (var again = pool.getConnection()) {
+            assertFalse(again.isClosed());
+            assertEquals(1, opened.size());
+        }
+    }
+
+    @Test
+    void onlyConnectionsIdleForAWhileAreValidated() throws Exception {
+        var pool = pool(1, 1000, 100);
+        pool.getConnection().close();
+        pool.getConnection().close();
+        assertEquals(0, opened.get(0).validations);
+
+        Thread.sleep(150);
+        opened.get(0).valid = false;
+        try (var replacement = pool.getConnection()) {
+            assertFalse(replacement.isClosed());
+            assertEquals(1, opened.get(0).validations);
+            assertTrue(opened.get(0).closed);
+            assertEquals(2, opened.size());
+        }
+    }
+
+    @Test
+    void metricsCountBorrowsAndIdleConnections() throws Exception {
+        var pool = pool(3, 1000);
+        var first = pool.getConnection();
+        var second = pool.getConnection();
+        assertEquals(2, pool.getMetrics().active());
+        assertEquals(0, pool.getMetrics().idle());
+
+        first.close();
+        second.close();
+        var metrics = pool.getMetrics();
+        assertEquals(0, metrics.active());
+        assertEquals(2, metrics.idle());
+        assertEquals(2, metrics.borrows());
+        assertEquals(2, metrics.created());
+        assertEquals(0, metrics.timeouts());
+    }
+
+    @Test
+    void closedPoolClosesReturnedConnections() throws Exception {
+        var pool = pool(2, 1000);
+        pool.getConnection().close();
+        var borrowed = pool.getConnection();
+
+        pool.close();
+        borrowed.close();
+
+        assertTrue(opened.get(0).closed);
+        assertEquals(0, pool.getMetrics().idle());
+    }
+}
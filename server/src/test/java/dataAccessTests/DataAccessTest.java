@@ -1,6 +1,10 @@
 package dataAccessTests;
 
+import chess.ChessBoard;
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
 import dataAccess.*;
 import exception.ResponseException;
 import model.UserData;
@@ -12,6 +16,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import service.UserService;
 
 import java.sql.SQLException;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +37,14 @@ public class DataAccessTest {
         return db;
     }
 
+    private static ChessGame newGame() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        return game;
+    }
+
     @BeforeEach
     void clearDatabase() throws ResponseException, SQLException, DataAccessException {
         UserService service = new UserService(new MySqlDataAccess());
@@ -276,4 +289,78 @@ public class DataAccessTest {
         // Verify that clearing empty tables doesn't throw an error
         service.clearApplication();
     }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    void lobbyVersionFollowsTheListing(Class<? extends DataAccess> dbClass) throws DataAccessException, ResponseException, SQLException, UnauthorizedException, InvalidGameID, InvalidMoveException {
+        DataAccess dataAccess = getDataAccess(dbClass);
+        UserService service = new UserService(dataAccess);
+        AuthData auth = service.register(new UserData("magnus", "password", "magnus@mail.com"));
+
+        long version = dataAccess.getLobbyVersion();
+        int gameID = service.createGame(auth.authToken(), "versioned");
+        long created = dataAccess.getLobbyVersion();
+        assertTrue(created > version);
+
+        // Moves don't change how the game is listed
+        GameData game = dataAccess.getGameData(gameID);
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        game.getGame().makeMove(move);
+        dataAccess.recordMove(game, move);
+        assertEquals(created, dataAccess.getLobbyVersion());
+
+        service.joinGame(auth.authToken(), "WHITE", gameID);
+        assertTrue(dataAccess.getLobbyVersion() > created);
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    void createUsersStoresHashedPasswords(Class<? extends DataAccess> dbClass) throws DataAccessException, ResponseException, SQLException {
+        DataAccess dataAccess = getDataAccess(dbClass);
+        String hash = dataAccess.hashPassword("password");
+
+        dataAccess.createUsers(List.of(new UserData("ann", hash, "ann@mail.com"), new UserData("ben", hash, "ben@mail.com")));
+
+        assertEquals(2, dataAccess.getUsers().size());
+        UserData ben = dataAccess.getUser("ben");
+        assertEquals("ben@mail.com", ben.email());
+        assertTrue(dataAccess.passwordsMatch("password", ben.password()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    void createGameIDsInOrder(Class<? extends DataAccess> dbClass) throws DataAccessException, ResponseException, SQLException {
+        DataAccess dataAccess = getDataAccess(dbClass);
+
+        List<Integer> gameIDs = dataAccess.createGameIDs(List.of("first", "second", "third"));
+
+        assertEquals(3, gameIDs.size());
+        assertTrue(gameIDs.get(0) < gameIDs.get(1) && gameIDs.get(1) < gameIDs.get(2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    void createGamesWithHistory(Class<? extends DataAccess> dbClass) throws DataAccessException, ResponseException, SQLException, InvalidMoveException {
+        DataAccess dataAccess = getDataAccess(dbClass);
+        List<Integer> gameIDs = dataAccess.createGameIDs(List.of("opened", "fresh"));
+
+        var game = newGame();
+        var moves = List.of(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null),
+                new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        for (var move : moves) {
+            game.makeMove(move);
+        }
+        dataAccess.createGames(List.of(
+                new GameWrite(new GameData(gameIDs.get(0), "ann", "ben", "opened", game), moves),
+                new GameWrite(new GameData(gameIDs.get(1), null, null, "fresh", newGame()), List.of())));
+
+        assertEquals(2, dataAccess.getGames().size());
+        GameData opened = dataAccess.getGameData(gameIDs.get(0));
+        assertEquals("ann", opened.getWhiteUsername());
+        assertEquals(ChessGame.TeamColor.WHITE, opened.getGame().getTeamTurn());
+        assertNotNull(opened.getGame().getBoard().getPiece(new ChessPosition(4, 5)));
+        assertNotNull(opened.getGame().getBoard().getPiece(new ChessPosition(5, 5)));
+        assertNull(opened.getGame().getBoard().getPiece(new ChessPosition(2, 5)));
+        assertEquals("fresh", dataAccess.getGameData(gameIDs.get(1)).getGameName());
+    }
 }
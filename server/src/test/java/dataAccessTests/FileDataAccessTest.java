@@ -0,0 +1,202 @@
+package dataAccessTests;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataAccess.DataAccessException;
+import dataAccess.FileDataAccess;
+import dataAccess.GameConflictException;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileDataAccessTest {
+    private static final int HEADER_BYTES = 12;
+
+    @TempDir
+    Path directory;
+
+    private Path log() {
+        return directory.resolve("chess.wal");
+    }
+
+    private static UserData user(String username) {
+        return new UserData(username, "password", username + "@mail.com");
+    }
+
+    private static GameData newGame(int gameID, String gameName) {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        return new GameData(gameID, null, null, gameName, game);
+    }
+
+    private static long generation(Path file) throws IOException {
+        try (var in = new DataInputStream(Files.newInputStream(file))) {
+            in.readInt();
+            return in.readLong();
+        }
+    }
+
+    @Test
+    void changesAreLoggedAndReplayed() throws Exception {
+        AuthData auth;
+        int gameID;
+        try (var opened = new Closer(FileDataAccess.open(directory, true, 1000))) {
+            var store = opened.store;
+            store.createUser(user("alice"));
+            auth = store.createAuth(user("alice"));
+            gameID = store.createGameID("first");
+            store.createGame(newGame(gameID, "first"));
+            store.joinGame("alice", "WHITE", gameID);
+        }
+        assertTrue(Files.size(log()) > HEADER_BYTES);
+        assertFalse(Files.exists(directory.resolve("chess.snapshot")));
+
+        try (var reopened = new Closer(FileDataAccess.open(directory, true, 1000))) {
+            var store = reopened.store;
+            assertNotNull(store.getUser("alice"));
+            assertEquals(auth, store.getAuth(auth.authToken()));
+            assertEquals("alice", store.getGameData(gameID).getWhiteUsername());
+            assertEquals(gameID + 1, store.createGameID("second"));
+        }
+    }
+
+    @Test
+    void tornTailIsCutOff() throws Exception {
+        long beforeLastRecord;
+        try (var opened = new Closer(FileDataAccess.open(directory, false, 1000))) {
+            opened.store.createUser(user("alice"));
+            beforeLastRecord = Files.size(log());
+            opened.store.createUser(user("bob"));
+        }
+
+        // Lose the end of bob's record, as a crash mid-write would
+        try (var channel = FileChannel.open(log(), WRITE)) {
+            channel.truncate(Files.size(log()) - 3);
+        }
+
+        try (var reopened = new Closer(FileDataAccess.open(directory, false, 1000))) {
+            assertNotNull(reopened.store.getUser("alice"));
+            assertNull(reopened.store.getUser("bob"));
+            assertEquals(beforeLastRecord, Files.size(log()));
+            reopened.store.createUser(user("carol"));
+        }
+        try (var reopened = new Closer(FileDataAccess.open(directory, false, 1000))) {
+            assertNotNull(reopened.store.getUser("carol"));
+            assertNull(reopened.store.getUser("bob"));
+        }
+    }
+
+    @Test
+    void snapshotStartsANewGeneration() throws Exception {
+        try (var opened = new Closer(FileDataAccess.open(directory, false, 3))) {
+            for (String username : new String[]{"alice", "bob", "carol", "dave"}) {
+                opened.store.createUser(user(username));
+            }
+        }
+
+        Path snapshot = directory.resolve("chess.snapshot");
+        assertTrue(Files.exists(snapshot));
+        assertEquals(1, generation(snapshot));
+        assertEquals(1, generation(log()));
+        assertTrue(Files.size(log()) > HEADER_BYTES);
+
+        try (var reopened = new Closer(FileDataAccess.open(directory, false, 3))) {
+            assertEquals(4, reopened.store.getUsers().size());
+            for (String username : new String[]{"erin", "frank", "grace"}) {
+                reopened.store.createUser(user(username));
+            }
+        }
+        assertEquals(2, generation(snapshot));
+        assertEquals(2, generation(log()));
+        assertEquals(HEADER_BYTES, Files.size(log()));
+        try (var reopened = new Closer(FileDataAccess.open(directory, false, 3))) {
+            assertEquals(7, reopened.store.getUsers().size());
+        }
+    }
+
+    @Test
+    void logOlderThanTheSnapshotIsSkipped() throws Exception {
+        try (var opened = new Closer(FileDataAccess.open(directory, false, 1000))) {
+            opened.store.createUser(user("alice"));
+            int gameID = opened.store.createGameID("first");
+            opened.store.createGame(newGame(gameID, "first"));
+        }
+        Path staleLog = directory.resolve("stale.wal");
+        Files.copy(log(), staleLog);
+
+        try (var opened = new Closer(FileDataAccess.open(directory, false, 1))) {
+            opened.store.createUser(user("bob"));
+        }
+        assertEquals(1, generation(directory.resolve("chess.snapshot")));
+
+        // A crash after the snapshot was renamed but before the log was replaced
+        Files.copy(staleLog, log(), REPLACE_EXISTING);
+        assertEquals(0, generation(log()));
+
+        try (var reopened = new Closer(FileDataAccess.open(directory, false, 1000))) {
+            assertEquals(2, reopened.store.getUsers().size());
+            assertEquals(1, reopened.store.getGames().size());
+            assertEquals(1, generation(log()));
+            assertEquals(HEADER_BYTES, Files.size(log()));
+            reopened.store.createUser(user("carol"));
+        }
+        try (var reopened = new Closer(FileDataAccess.open(directory, false, 1000))) {
+            assertEquals(3, reopened.store.getUsers().size());
+        }
+    }
+
+    @Test
+    void snapshotHoldsOnlySavedGames() throws Exception {
+        int gameID;
+        try (var opened = new Closer(FileDataAccess.open(directory, false, 4))) {
+            var store = opened.store;
+            gameID = store.createGameID("first");
+            store.createGame(newGame(gameID, "first"));
+            store.joinGame("alice", "WHITE", gameID);
+
+            // One move is never saved, and another is rejected because the game changed under it
+            GameData unsaved = store.getGameData(gameID);
+            unsaved.getGame().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+            GameData stale = newGame(gameID, "first");
+            stale.getGame().makeMove(new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null));
+            assertThrows(GameConflictException.class, () -> store.updateGame(stale));
+
+            store.createUser(user("alice"));
+        }
+        assertEquals(1, generation(directory.resolve("chess.snapshot")));
+        assertEquals(HEADER_BYTES, Files.size(log()));
+
+        try (var reopened = new Closer(FileDataAccess.open(directory, false, 4))) {
+            GameData recovered = reopened.store.getGameData(gameID);
+            assertEquals("alice", recovered.getWhiteUsername());
+            assertEquals(0, recovered.getGame().getPly());
+            assertNull(recovered.getGame().getBoard().getPiece(new ChessPosition(4, 5)));
+        }
+    }
+
+    /**
+     * Lets a test close the store with try-with-resources
+     */
+    private record Closer(FileDataAccess store) implements AutoCloseable {
+        @Override
+        public void close() throws DataAccessException {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dataAccessTests;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import dataAccess.*;
+import exception.ResponseException;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameArchiveTest {
+    @TempDir
+    Path directory;
+
+    private static GameData finishedGame(int gameID) {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        game.gameIsOver();
+        return new GameData(gameID, "white" + gameID, "black" + gameID, "game" + gameID, game);
+    }
+
+    @Test
+    void readsEveryArchivedGame() throws Exception {
+        try (var archive = new GameArchive(directory)) {
+            var games = new ArrayList<GameData>();
+            for (int gameID = 100; gameID > 0; gameID -= 2) {
+                games.add(finishedGame(gameID));
+            }
+            archive.append(games);
+            archive.append(List.of(finishedGame(7), finishedGame(51)));
+
+            for (int gameID = 2; gameID <= 100; gameID += 2) {
+                GameData game = archive.read(gameID);
+                assertNotNull(game);
+                assertEquals("white" + gameID, game.getWhiteUsername());
+                assertTrue(game.getGame().getGameIsOver());
+            }
+            assertEquals("game51", archive.read(51).getGameName());
+            assertNull(archive.read(3));
+            assertNull(archive.read(101));
+        }
+    }
+
+    @Test
+    void segmentsSurviveReopening() throws Exception {
+        try (var archive = new GameArchive(directory)) {
+            archive.append(List.of(finishedGame(1), finishedGame(2)));
+        }
+        Files.writeString(directory.resolve("segment-00000002.arc.tmp"), "partial");
+
+        try (var archive = new GameArchive(directory)) {
+            assertEquals(1, archive.getSegmentCount());
+            assertEquals("game2", archive.read(2).getGameName());
+            archive.append(List.of(finishedGame(3)));
+            assertEquals(2, archive.getSegmentCount());
+        }
+        assertFalse(Files.exists(directory.resolve("segment-00000002.arc.tmp")));
+    }
+
+    @Test
+    void archivedGamesStayReadable() throws Exception {
+        // A store that hides deleted games, standing in for MySQL
+        Set<Integer> deleted = new HashSet<>();
+        var store = new ForwardingDataAccess(new MemoryDataAccess()) {
+            @Override
+            public List<GameData> listFinishedGames(long finishedBeforeMillis, int limit) throws DataAccessException, ResponseException {
+                return getGames().stream().filter(game -> game.getGame().getGameIsOver()).limit(limit).toList();
+            }
+
+            @Override
+            public void deleteFinishedGames(Collection<Integer> gameIDs) {
+                deleted.addAll(gameIDs);
+            }
+
+            @Override
+            public Collection<GameData> getGames() throws DataAccessException, ResponseException {
+                return delegate.getGames().stream().filter(game -> !deleted.contains(game.getGameID())).toList();
+            }
+
+            @Override
+            public GameData getGameData(int gameID) throws DataAccessException, SQLException, ResponseException {
+                return deleted.contains(gameID) ? null : delegate.getGameData(gameID);
+            }
+        };
+        var dataAccess = new ArchivingDataAccess(store, new GameArchive(directory));
+        for (int i = 0; i < 5; i++) {
+            int gameID = dataAccess.createGameID("game");
+            dataAccess.createGame(i % 2 == 0 ? finishedGame(gameID) : new GameData(gameID, null, null, "game", new ChessGame()));
+        }
+
+        assertEquals(3, dataAccess.archiveFinishedGames(System.currentTimeMillis(), 10));
+        assertEquals(2, dataAccess.getGames().size());
+        assertEquals(0, dataAccess.archiveFinishedGames(System.currentTimeMillis(), 10));
+        for (int gameID = 1; gameID <= 5; gameID++) {
+            assertNotNull(dataAccess.getGameData(gameID));
+        }
+        assertEquals(Set.of(1, 3, 5), deleted);
+        dataAccess.close();
+    }
+}
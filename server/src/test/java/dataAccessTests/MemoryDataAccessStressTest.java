@@ -0,0 +1,153 @@
+package dataAccessTests;
+
+import chess.ChessGame;
+import dataAccess.DataAccessException;
+import dataAccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryDataAccessStressTest {
+    private static final int THREADS = 16;
+
+    /**
+     * Runs the task once per thread, all starting together
+     */
+    private static void race(int threads, Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void gameIDsAreUnique() throws Exception {
+        MemoryDataAccess dataAccess = new MemoryDataAccess();
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        AtomicInteger created = new AtomicInteger();
+
+        race(THREADS, () -> {
+            for (int i = 0; i < 500; i++) {
+                int gameID = dataAccess.createGameID("game");
+                dataAccess.createGame(new GameData(gameID, null, null, "game", new ChessGame()));
+                ids.add(gameID);
+                created.incrementAndGet();
+            }
+            return null;
+        });
+
+        assertEquals(created.get(), ids.size());
+        assertEquals(created.get(), dataAccess.getGames().size());
+    }
+
+    @Test
+    void duplicateUsernamesAreRejected() throws Exception {
+        MemoryDataAccess dataAccess = new MemoryDataAccess() {
+            @Override
+            public String hashPassword(String password) {
+                return password;
+            }
+        };
+        AtomicInteger registered = new AtomicInteger();
+
+        race(THREADS, () -> {
+            for (int i = 0; i < 200; i++) {
+                try {
+                    dataAccess.createUser(new UserData("user" + i, "password", "user@mail.com"));
+                    registered.incrementAndGet();
+                } catch (DataAccessException ignored) {
+                }
+            }
+            return null;
+        });
+
+        assertEquals(200, registered.get());
+        assertEquals(200, dataAccess.getUsers().size());
+        for (int i = 0; i < 200; i++) {
+            assertNotNull(dataAccess.getUser("user" + i));
+        }
+    }
+
+    @Test
+    void onlyOnePlayerJoinsEachColor() throws Exception {
+        MemoryDataAccess dataAccess = new MemoryDataAccess();
+        List<Integer> gameIDs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int gameID = dataAccess.createGameID("game" + i);
+            dataAccess.createGame(new GameData(gameID, null, null, "game" + i, new ChessGame()));
+            gameIDs.add(gameID);
+        }
+        ConcurrentHashMap<Integer, Set<String>> winners = new ConcurrentHashMap<>();
+        AtomicInteger player = new AtomicInteger();
+
+        race(THREADS, () -> {
+            String username = "player" + player.incrementAndGet();
+            for (int gameID : gameIDs) {
+                for (String color : List.of("WHITE", "BLACK")) {
+                    try {
+                        dataAccess.joinGame(username, color, gameID);
+                        winners.computeIfAbsent(gameID, key -> ConcurrentHashMap.newKeySet()).add(color + username);
+                    } catch (DataAccessException ignored) {
+                    }
+                }
+            }
+            return null;
+        });
+
+        for (int gameID : gameIDs) {
+            GameData game = dataAccess.getGameData(gameID);
+            assertEquals(2, winners.get(gameID).size());
+            assertTrue(winners.get(gameID).contains("WHITE" + game.getWhiteUsername()));
+            assertTrue(winners.get(gameID).contains("BLACK" + game.getBlackUsername()));
+        }
+    }
+
+    @Test
+    void authTokensStayConsistent() throws Exception {
+        MemoryDataAccess dataAccess = new MemoryDataAccess();
+        Set<String> kept = ConcurrentHashMap.newKeySet();
+
+        race(THREADS, () -> {
+            for (int i = 0; i < 1000; i++) {
+                AuthData auth = dataAccess.createAuth(new UserData("user" + (i % 10), null, null));
+                assertEquals(auth, dataAccess.getAuth(auth.authToken()));
+                if (i % 2 == 0) {
+                    dataAccess.deleteAuth(auth);
+                    assertNull(dataAccess.getAuth(auth.authToken()));
+                } else {
+                    kept.add(auth.authToken());
+                }
+            }
+            return null;
+        });
+
+        int total = 0;
+        for (List<AuthData> auths : dataAccess.getAuths().values()) {
+            total += auths.size();
+        }
+        assertEquals(kept.size(), total);
+        for (String token : kept) {
+            assertNotNull(dataAccess.getAuth(token));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dataAccessTests;
+
+import dataAccess.MemoryDataAccess;
+import dataAccess.PasswordHasher;
+import exception.ResponseException;
+import model.UserData;
+import org.junit.jupiter.api.Test;
+import service.UserService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+    @Test
+    void fullQueueIsTurnedAwayWith503() throws Exception {
+        // One thread and one queue slot, with a cost high enough to keep both busy
+        var hasher = new PasswordHasher(14, 1, 1);
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    hasher.hash("password");
+                } catch (ResponseException ignored) {
+                }
+            });
+        }
+        Thread.sleep(200);
+
+        long start = System.nanoTime();
+        var busy = assertThrows(ResponseException.class, () -> hasher.hash("password"));
+        assertEquals(503, busy.getStatusCode());
+        assertTrue(System.nanoTime() - start < 100_000_000L, "A full queue should not make the caller wait");
+    }
+
+    @Test
+    void cheaperHashesMatchButNeedRehash() throws Exception {
+        var cheap = new PasswordHasher(4, 1, 4);
+        var configured = new PasswordHasher(6, 1, 4);
+        String cheapHash = cheap.hash("password");
+
+        assertTrue(configured.matches("password", cheapHash));
+        assertTrue(configured.needsRehash(cheapHash));
+        assertFalse(configured.needsRehash(configured.hash("password")));
+        assertFalse(cheap.needsRehash(cheapHash));
+        assertFalse(configured.needsRehash(null));
+    }
+
+    @Test
+    void loginUpgradesACheaperHash() throws Exception {
+        var dataAccess = new MemoryDataAccess();
+        String cheapHash = new PasswordHasher(4, 1, 4).hash("password");
+        dataAccess.createUsers(List.of(new UserData("alice", cheapHash, "alice@mail.com")));
+        var service = new UserService(dataAccess);
+
+        service.login("alice", "password");
+        String upgraded = dataAccess.getUser("alice").password();
+        assertNotEquals(cheapHash, upgraded);
+        assertFalse(dataAccess.passwordNeedsRehash(upgraded));
+        assertTrue(dataAccess.passwordsMatch("password", upgraded));
+
+        service.login("alice", "password");
+        assertEquals(upgraded, dataAccess.getUser("alice").password());
+    }
+}
@@ -0,0 +1,153 @@
+package dataAccessTests;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dataAccess.DataAccessException;
+import dataAccess.DatabaseManager;
+import dataAccess.MySqlDataAccess;
+import dataAccess.SchemaMigrator;
+import org.junit.jupiter.api.Test;
+import serialization.Serializer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigrationTest {
+    private static final String SCRATCH_DATABASE = "chess_migration_test";
+
+    private static void execute(Connection conn, String statement, Object... params) throws SQLException {
+        try (var ps = conn.prepareStatement(statement)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static int queryInt(Connection conn, String query) throws SQLException {
+        try (var ps = conn.prepareStatement(query); var rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    private static String userJson(String username, String password, String email) {
+        var json = new JsonObject();
+        json.addProperty("username", username);
+        json.addProperty("password", password);
+        json.addProperty("email", email);
+        return json.toString();
+    }
+
+    /**
+     * Rebuilds the version 1 layout, where everything but the keys was stored as JSON
+     */
+    private static void createBaselineSchema(Connection conn, ChessGame game) throws SQLException {
+        for (var table : List.of("moves", "games", "gameIDs", "auth_tokens", "authTokens", "users",
+                "lobby_version", "schema_version", "schema_migration_steps")) {
+            execute(conn, "DROP TABLE IF EXISTS " + table);
+        }
+        execute(conn, "CREATE TABLE users (`userID` int NOT NULL AUTO_INCREMENT, `username` TEXT DEFAULT NULL, `userData` TEXT DEFAULT NULL, PRIMARY KEY (`userID`))");
+        execute(conn, "CREATE TABLE authTokens (`userData` TEXT DEFAULT NULL, `authData` TEXT DEFAULT NULL, `authToken` TEXT DEFAULT NULL)");
+        execute(conn, "CREATE TABLE gameIDs (`gameID` int NOT NULL AUTO_INCREMENT, `gameName` TEXT DEFAULT NULL, PRIMARY KEY (`gameID`))");
+        execute(conn, "CREATE TABLE games (`gameID` int NOT NULL, `gameData` TEXT DEFAULT NULL, PRIMARY KEY (`gameID`))");
+
+        execute(conn, "INSERT INTO users (username, userData) VALUES (?, ?)",
+                "alice", userJson("alice", "hash-a", "alice@mail.com"));
+        execute(conn, "INSERT INTO users (username, userData) VALUES (?, ?)",
+                "alice", userJson("alice", "hash-duplicate", "other@mail.com"));
+        execute(conn, "INSERT INTO users (username, userData) VALUES (NULL, ?)",
+                userJson("bob", "hash-b", "bob@mail.com"));
+
+        var auth = new JsonObject();
+        auth.addProperty("authToken", "token-a");
+        auth.addProperty("username", "alice");
+        execute(conn, "INSERT INTO authTokens (userData, authData, authToken) VALUES (?, ?, ?)",
+                userJson("alice", "hash-a", "alice@mail.com"), auth.toString(), "token-a");
+
+        var gameData = new JsonObject();
+        gameData.addProperty("gameID", 1);
+        gameData.addProperty("whiteUsername", "alice");
+        gameData.addProperty("blackUsername", "bob");
+        gameData.addProperty("gameName", "old game");
+        gameData.add("game", JsonParser.parseString(Serializer.toJson(game)));
+        execute(conn, "INSERT INTO gameIDs (gameID, gameName) VALUES (1, 'old game')");
+        execute(conn, "INSERT INTO games (gameID, gameData) VALUES (1, ?)", gameData.toString());
+    }
+
+    @Test
+    void baselineDatabaseIsMigratedAndBackfilled() throws Exception {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        try (var conn = DatabaseManager.getDataSource().getConnection()) {
+            createBaselineSchema(conn, game);
+        }
+
+        var dataAccess = new MySqlDataAccess();
+        try {
+            var alice = dataAccess.getUser("alice");
+            assertEquals("hash-a", alice.password());
+            assertEquals("alice@mail.com", alice.email());
+            assertEquals("hash-b", dataAccess.getUser("bob").password());
+            assertEquals(2, dataAccess.getUsers().size());
+
+            assertEquals("alice", dataAccess.getAuth("token-a").username());
+
+            var migrated = dataAccess.getGameData(1);
+            assertEquals("old game", migrated.getGameName());
+            assertEquals("alice", migrated.getWhiteUsername());
+            assertEquals("bob", migrated.getBlackUsername());
+            assertEquals(ChessGame.TeamColor.BLACK, migrated.getGame().getTeamTurn());
+            assertEquals(ChessPiece.PieceType.PAWN, migrated.getGame().getBoard().getPiece(new ChessPosition(4, 5)).getPieceType());
+            assertNull(migrated.getGame().getBoard().getPiece(new ChessPosition(2, 5)));
+
+            try (var conn = DatabaseManager.getDataSource().getConnection()) {
+                assertEquals(9, queryInt(conn, "SELECT MAX(version) FROM schema_version"));
+                assertEquals(0, queryInt(conn, "SELECT COUNT(*) FROM schema_migration_steps"));
+                assertEquals(0, queryInt(conn, "SELECT COUNT(*) FROM games WHERE snapshot IS NULL OR gameState IS NOT NULL"));
+            }
+        } finally {
+            dataAccess.clearUsers();
+            dataAccess.clearAuthTokens();
+            dataAccess.clearGames();
+            dataAccess.clearGameIDs();
+            dataAccess.close();
+        }
+    }
+
+    @Test
+    void failedMigrationResumesAfterItsLastCompletedStatement() throws Exception {
+        try (var conn = DatabaseManager.getDataSource().getConnection()) {
+            execute(conn, "DROP DATABASE IF EXISTS " + SCRATCH_DATABASE);
+            execute(conn, "CREATE DATABASE " + SCRATCH_DATABASE);
+            conn.setCatalog(SCRATCH_DATABASE);
+            try {
+                // Neither completed statement could run twice, so a retry must skip them
+                var failing = new SchemaMigrator(List.of(new SchemaMigrator.Migration(1, "Widgets",
+                        "CREATE TABLE widgets (`id` int NOT NULL, PRIMARY KEY (`id`))",
+                        "INSERT INTO widgets (id) VALUES (1)",
+                        "INSERT INTO missing (id) VALUES (2)")));
+                var failure = assertThrows(DataAccessException.class, () -> failing.migrate(conn));
+                assertTrue(failure.getMessage().contains("statement 3"));
+                assertEquals(0, queryInt(conn, "SELECT COALESCE(MAX(version), 0) FROM schema_version"));
+
+                var fixed = new SchemaMigrator(List.of(new SchemaMigrator.Migration(1, "Widgets",
+                        "CREATE TABLE widgets (`id` int NOT NULL, PRIMARY KEY (`id`))",
+                        "INSERT INTO widgets (id) VALUES (1)",
+                        "INSERT INTO widgets (id) VALUES (2)")));
+                assertEquals(1, fixed.migrate(conn));
+                assertEquals(2, queryInt(conn, "SELECT COUNT(*) FROM widgets"));
+                assertEquals(0, queryInt(conn, "SELECT COUNT(*) FROM schema_migration_steps"));
+            } finally {
+                execute(conn, "DROP DATABASE IF EXISTS " + SCRATCH_DATABASE);
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package dataAccessTests;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.PackedGame;
+import dataAccess.DataAccessException;
+import dataAccess.GameConflictException;
+import dataAccess.GameWrite;
+import dataAccess.MemoryDataAccess;
+import dataAccess.WriteBehindDataAccess;
+import exception.ResponseException;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindDataAccessTest {
+    private static final ChessMove E4 = move(2, 5, 4, 5);
+    private static final ChessMove E5 = move(7, 5, 5, 5);
+    private static final ChessMove NF3 = move(1, 7, 3, 6);
+    private static final List<ChessMove> FOOLS_MATE = List.of(move(2, 6, 3, 6), E5, move(2, 7, 4, 7), move(8, 4, 4, 8));
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Records what each commit was given, and can fail commits on demand
+     */
+    private static class RecordingDataAccess extends MemoryDataAccess {
+        final List<List<GameWrite>> commits = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+        volatile Runnable duringCommit = () -> {};
+
+        @Override
+        public Collection<Integer> commitGames(Collection<GameWrite> writes) throws ResponseException, DataAccessException {
+            duringCommit.run();
+            if (failing) {
+                throw new ResponseException(500, "Database is down");
+            }
+            var copies = new ArrayList<GameWrite>();
+            for (var write : writes) {
+                copies.add(new GameWrite(write.gameData(), List.copyOf(write.moves())));
+            }
+            commits.add(copies);
+            return super.commitGames(writes);
+        }
+    }
+
+    private final RecordingDataAccess delegate = new RecordingDataAccess();
+
+    private static ChessMove move(int startRow, int startColumn, int endRow, int endColumn) {
+        return new ChessMove(new ChessPosition(startRow, startColumn), new ChessPosition(endRow, endColumn), null);
+    }
+
+    private WriteBehindDataAccess writeBehind(int maxBatchGames) {
+        return new WriteBehindDataAccess(delegate, 60_000, maxBatchGames, directory.resolve("fallback.jsonl"));
+    }
+
+    private int newGame(String gameName) throws DataAccessException {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        int gameID = delegate.createGameID(gameName);
+        delegate.createGame(new GameData(gameID, null, null, gameName, game));
+        return gameID;
+    }
+
+    /**
+     * Makes a move the way the server does: read the game, move, record the move
+     */
+    private static void play(WriteBehindDataAccess store, int gameID, ChessMove move) throws Exception {
+        GameData read = store.getGameData(gameID);
+        ChessGame game = PackedGame.copy(read.getGame());
+        game.makeMove(move);
+        store.recordMove(new GameData(gameID, read.getWhiteUsername(), read.getBlackUsername(), read.getGameName(),
+                game, read.getVersion()), move);
+    }
+
+    @Test
+    void movesAreSavedTogetherOnFlush() throws Exception {
+        var store = writeBehind(100);
+        int first = newGame("first");
+        int second = newGame("second");
+        play(store, first, E4);
+        play(store, second, E4);
+        play(store, first, E5);
+        assertTrue(delegate.commits.isEmpty());
+
+        store.close();
+
+        assertEquals(1, delegate.commits.size());
+        var batch = delegate.commits.get(0);
+        assertEquals(2, batch.size());
+        for (var write : batch) {
+            var expected = write.gameData().getGameID() == first ? List.of(E4, E5) : List.of(E4);
+            assertEquals(expected, write.moves());
+        }
+        assertEquals(2, delegate.getGameData(first).getGame().getPly());
+        assertEquals(1, delegate.getGameData(first).getVersion());
+    }
+
+    @Test
+    void batchesHoldAtMostMaxBatchGames() throws Exception {
+        var store = writeBehind(2);
+        var gameIDs = List.of(newGame("first"), newGame("second"), newGame("third"));
+        for (int gameID : gameIDs) {
+            play(store, gameID, E4);
+        }
+
+        store.close();
+
+        int saved = 0;
+        for (var batch : delegate.commits) {
+            assertTrue(batch.size() <= 2);
+            saved += batch.size();
+        }
+        assertEquals(3, saved);
+        for (int gameID : gameIDs) {
+            assertEquals(1, delegate.getGameData(gameID).getGame().getPly());
+        }
+    }
+
+    @Test
+    void readsSeeBufferedMoves() throws Exception {
+        var store = writeBehind(100);
+        int gameID = newGame("first");
+        play(store, gameID, E4);
+
+        assertEquals(1, store.getGameData(gameID).getGame().getPly());
+        assertEquals(1, store.getGames().iterator().next().getGame().getPly());
+        assertEquals(0, delegate.getGameData(gameID).getGame().getPly());
+        assertNotSame(store.getGameData(gameID), store.getGameData(gameID));
+        store.close();
+    }
+
+    @Test
+    void failedCommitIsRetriedBeforeLaterMoves() throws Exception {
+        var store = writeBehind(100);
+        int gameID = newGame("first");
+        play(store, gameID, E4);
+        play(store, gameID, E5);
+
+        // Nf3 arrives while e4 and e5 are being saved, then the save fails
+        delegate.failing = true;
+        delegate.duringCommit = () -> {
+            delegate.duringCommit = () -> {};
+            assertDoesNotThrow(() -> play(store, gameID, NF3));
+        };
+        assertThrows(ResponseException.class, () -> store.joinGame("alice", null, gameID));
+        assertEquals(3, store.getGameData(gameID).getGame().getPly());
+
+        delegate.failing = false;
+        store.close();
+
+        assertEquals(1, delegate.commits.size());
+        assertEquals(List.of(E4, E5, NF3), delegate.commits.get(0).get(0).moves());
+        assertEquals(3, delegate.getGameData(gameID).getGame().getPly());
+    }
+
+    @Test
+    void unsavedGamesAreWrittenToTheFallbackFileAndRecovered() throws Exception {
+        Path fallbackFile = directory.resolve("fallback.jsonl");
+        var store = writeBehind(100);
+        int gameID = newGame("first");
+        play(store, gameID, E4);
+        play(store, gameID, E5);
+
+        delegate.failing = true;
+        store.close();
+        assertEquals(1, Files.readAllLines(fallbackFile).size());
+        assertEquals(0, delegate.getGameData(gameID).getGame().getPly());
+
+        delegate.failing = false;
+        var restarted = writeBehind(100);
+        assertEquals(2, restarted.getGameData(gameID).getGame().getPly());
+        restarted.close();
+
+        assertFalse(Files.exists(fallbackFile));
+        assertEquals(List.of(E4, E5), delegate.commits.get(0).get(0).moves());
+        assertEquals(2, delegate.getGameData(gameID).getGame().getPly());
+    }
+
+    @Test
+    void movesOnAGameChangedElsewhereAreDroppedAndReported() throws Exception {
+        var store = writeBehind(100);
+        var conflicts = new CopyOnWriteArrayList<Integer>();
+        store.addConflictListener(conflicts::add);
+        int gameID = newGame("first");
+        play(store, gameID, E4);
+
+        // Another server saves the game, then this one buffers e5 on top of its own e4
+        delegate.updateGame(delegate.getGameData(gameID).changeWhiteName("bob"));
+        delegate.duringCommit = () -> {
+            delegate.duringCommit = () -> {};
+            assertDoesNotThrow(() -> play(store, gameID, E5));
+        };
+        store.joinGame("alice", null, gameID);
+
+        assertEquals(List.of(gameID), conflicts);
+        GameData saved = store.getGameData(gameID);
+        assertEquals(0, saved.getGame().getPly());
+        assertEquals("bob", saved.getWhiteUsername());
+        store.close();
+        assertEquals(1, delegate.commits.size());
+    }
+
+    @Test
+    void gameEndingMoveIsSavedBeforeRecordMoveReturns() throws Exception {
+        var store = writeBehind(100);
+        int gameID = newGame("first");
+        for (var move : FOOLS_MATE) {
+            play(store, gameID, move);
+        }
+
+        assertTrue(delegate.getGameData(gameID).getGame().getGameIsOver());
+        assertEquals(1, delegate.commits.size());
+        assertEquals(FOOLS_MATE, delegate.commits.get(0).get(0).moves());
+        store.close();
+    }
+
+    @Test
+    void gameEndingMoveOnAGameChangedElsewhereThrows() throws Exception {
+        var store = writeBehind(100);
+        int gameID = newGame("first");
+        for (var move : FOOLS_MATE.subList(0, 3)) {
+            play(store, gameID, move);
+        }
+        delegate.updateGame(delegate.getGameData(gameID).changeWhiteName("bob"));
+
+        assertThrows(GameConflictException.class, () -> play(store, gameID, FOOLS_MATE.get(3)));
+        assertEquals(0, store.getGameData(gameID).getGame().getPly());
+        store.close();
+    }
+
+    @Test
+    void gameEndingMoveThatCannotBeSavedIsRejected() throws Exception {
+        var store = writeBehind(100);
+        int gameID = newGame("first");
+        for (var move : FOOLS_MATE.subList(0, 3)) {
+            play(store, gameID, move);
+        }
+
+        delegate.failing = true;
+        assertThrows(ResponseException.class, () -> play(store, gameID, FOOLS_MATE.get(3)));
+        GameData buffered = store.getGameData(gameID);
+        assertEquals(3, buffered.getGame().getPly());
+        assertFalse(buffered.getGame().getGameIsOver());
+
+        // The moves before it are still saved once the database is back
+        delegate.failing = false;
+        store.close();
+        assertEquals(FOOLS_MATE.subList(0, 3), delegate.commits.get(0).get(0).moves());
+        assertFalse(delegate.getGameData(gameID).getGame().getGameIsOver());
+    }
+}
@@ -0,0 +1,117 @@
+package serverTests;
+
+import com.google.gson.JsonObject;
+import dataAccess.MemoryDataAccess;
+import model.GameList;
+import model.GameQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import serialization.Serializer;
+import server.Server;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final StallingDataAccess dataAccess = new StallingDataAccess();
+    private Server server;
+    private String serverUrl;
+
+    /**
+     * Holds every game listing until released, so the request keeps its slot
+     */
+    private static class StallingDataAccess extends MemoryDataAccess {
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public GameList listGameSummaries(GameQuery query) {
+            listing.countDown();
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return super.listGameSummaries(query);
+        }
+    }
+
+    @AfterEach
+    void stopServer() {
+        dataAccess.release.countDown();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void start(boolean virtualThreads) {
+        System.setProperty("http.virtualThreads", Boolean.toString(virtualThreads));
+        System.setProperty("http.maxInFlight", "1");
+        System.setProperty("http.admissionTimeoutMillis", "100");
+        try {
+            server = new Server(dataAccess);
+            serverUrl = "http://localhost:" + server.run(0);
+        } finally {
+            System.clearProperty("http.virtualThreads");
+            System.clearProperty("http.maxInFlight");
+            System.clearProperty("http.admissionTimeoutMillis");
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(serverUrl + path));
+    }
+
+    private String register() throws Exception {
+        var body = "{\"username\":\"alice\",\"password\":\"pw\",\"email\":\"a@mail.com\"}";
+        var response = http.send(request("/user").POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        return Serializer.fromJson(response.body(), JsonObject.class).get("authToken").getAsString();
+    }
+
+    private CompletableFuture<HttpResponse<String>> stalledListing(String authToken) throws InterruptedException {
+        var listing = http.sendAsync(request("/game").header("authorization", authToken).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(dataAccess.listing.await(5, TimeUnit.SECONDS));
+        return listing;
+    }
+
+    private HttpResponse<String> login() throws Exception {
+        var body = "{\"username\":\"alice\",\"password\":\"pw\"}";
+        return http.send(request("/session").POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void virtualThreadRequestsBeyondTheLimitGet503() throws Exception {
+        start(true);
+        var listing = stalledListing(register());
+
+        var turnedAway = login();
+        assertEquals(503, turnedAway.statusCode());
+        assertTrue(turnedAway.body().contains("busy"));
+
+        dataAccess.release.countDown();
+        assertEquals(200, listing.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, login().statusCode());
+    }
+
+    @Test
+    void jettyPoolRequestsAreNotLimited() throws Exception {
+        start(false);
+        var listing = stalledListing(register());
+
+        assertEquals(200, login().statusCode());
+
+        dataAccess.release.countDown();
+        assertEquals(200, listing.get(5, TimeUnit.SECONDS).statusCode());
+    }
+}
@@ -0,0 +1,91 @@
+package serverTests;
+
+import com.google.gson.JsonObject;
+import dataAccess.MemoryDataAccess;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import serialization.Serializer;
+import server.Server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameListCacheTest {
+    private static Server server;
+    private static String serverUrl;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private String authToken;
+
+    @BeforeAll
+    static void startServer() {
+        server = new Server(new MemoryDataAccess());
+        serverUrl = "http://localhost:" + server.run(0);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void setup() throws Exception {
+        send("DELETE", "/db", null, null, null);
+        var registered = send("POST", "/user", null, "{\"username\":\"alice\",\"password\":\"pw\",\"email\":\"a@mail.com\"}", null);
+        authToken = Serializer.fromJson(registered.body(), JsonObject.class).get("authToken").getAsString();
+    }
+
+    private HttpResponse<String> send(String method, String path, String authorization, String body, String ifNoneMatch)
+            throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create(serverUrl + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (authorization != null) {
+            request.header("authorization", authorization);
+        }
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String etag(HttpResponse<String> response) {
+        return response.headers().firstValue("ETag").orElseThrow();
+    }
+
+    @Test
+    void unchangedListingIsAnswered304() throws Exception {
+        var first = send("GET", "/game", authToken, null, null);
+        assertEquals(200, first.statusCode());
+
+        var again = send("GET", "/game", authToken, null, etag(first));
+        assertEquals(304, again.statusCode());
+        assertEquals("", again.body());
+        assertEquals(etag(first), etag(again));
+    }
+
+    @Test
+    void changedListingIsSentAgain() throws Exception {
+        var first = send("GET", "/game", authToken, null, null);
+        send("POST", "/game", authToken, "{\"gameName\":\"fresh\"}", null);
+
+        var changed = send("GET", "/game", authToken, null, etag(first));
+        assertEquals(200, changed.statusCode());
+        assertNotEquals(etag(first), etag(changed));
+        assertTrue(changed.body().contains("fresh"));
+    }
+
+    @Test
+    void matchingETagStillNeedsAValidToken() throws Exception {
+        var first = send("GET", "/game", authToken, null, null);
+
+        var response = send("GET", "/game", "not-a-token", null, etag(first));
+        assertEquals(401, response.statusCode());
+    }
+}
@@ -0,0 +1,137 @@
+package serverTests;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.JsonObject;
+import dataAccess.MemoryDataAccess;
+import model.AuthData;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
+import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import serialization.Serializer;
+import server.Server;
+import webSocketMessages.serverMessages.ServerMessage;
+import webSocketMessages.userCommands.JoinObserver;
+import webSocketMessages.userCommands.JoinPlayer;
+import webSocketMessages.userCommands.MakeMove;
+import webSocketMessages.userCommands.UserGameCommand;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebSocketWireTest {
+    private static Server server;
+    private static String serverUrl;
+    private static WebSocketClient webSocketClient;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    /**
+     * Queues every text message the server sends
+     */
+    private static class Listener extends WebSocketAdapter {
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onWebSocketText(String message) {
+            received.add(message);
+        }
+
+        ServerMessage.ServerMessageType next() throws InterruptedException {
+            String message = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message, "Expected another message");
+            return Serializer.fromJson(message, ServerMessage.class).getServerMessageType();
+        }
+    }
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new Server(new MemoryDataAccess());
+        serverUrl = "http://localhost:" + server.run(0);
+        webSocketClient = new WebSocketClient();
+        webSocketClient.start();
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        webSocketClient.stop();
+        server.stop();
+    }
+
+    private JsonObject send(String method, String path, String authorization, String body) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(serverUrl + path))
+                .method(method, HttpRequest.BodyPublishers.ofString(body));
+        if (authorization != null) {
+            request.header("authorization", authorization);
+        }
+        return Serializer.fromJson(http.send(request.build(), HttpResponse.BodyHandlers.ofString()).body(), JsonObject.class);
+    }
+
+    private AuthData register(String username) throws Exception {
+        var body = String.format("{\"username\":\"%s\",\"password\":\"pw\",\"email\":\"%s@mail.com\"}", username, username);
+        return Serializer.fromJson(send("POST", "/user", null, body).toString(), AuthData.class);
+    }
+
+    private Session connect(Listener listener, boolean offerDeflate) throws Exception {
+        var request = new ClientUpgradeRequest();
+        if (offerDeflate) {
+            request.addExtensions("permessage-deflate");
+        }
+        URI uri = URI.create(serverUrl.replace("http", "ws") + "/connect");
+        return webSocketClient.connect(listener, uri, request).get(5, TimeUnit.SECONDS);
+    }
+
+    private static void send(Session session, UserGameCommand command, UserGameCommand.CommandType type) throws Exception {
+        command.setCommandType(type);
+        session.getRemote().sendString(Serializer.toJson(command));
+    }
+
+    private static boolean negotiated(Session session, String extension) {
+        var extensions = session.getUpgradeResponse().getExtensions();
+        return extensions != null && extensions.stream().map(ExtensionConfig::getName).anyMatch(extension::equals);
+    }
+
+    @Test
+    void plainJsonClientsGetCompressedBatchedMessages() throws Exception {
+        AuthData white = register("alice");
+        AuthData observer = register("carol");
+        int gameID = send("POST", "/game", white.authToken(), "{\"gameName\":\"wire\"}").get("gameID").getAsInt();
+        send("PUT", "/game", white.authToken(), "{\"playerColor\":\"WHITE\",\"gameID\":" + gameID + "}");
+
+        var whiteListener = new Listener();
+        Session whiteSession = connect(whiteListener, true);
+        assertTrue(negotiated(whiteSession, "permessage-deflate"));
+        send(whiteSession, new JoinPlayer(white, gameID, ChessGame.TeamColor.WHITE), UserGameCommand.CommandType.JOIN_PLAYER);
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, whiteListener.next());
+
+        var observerListener = new Listener();
+        Session observerSession = connect(observerListener, false);
+        assertFalse(negotiated(observerSession, "permessage-deflate"));
+        send(observerSession, new JoinObserver(observer, gameID), UserGameCommand.CommandType.JOIN_OBSERVER);
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, observerListener.next());
+        assertEquals(ServerMessage.ServerMessageType.NOTIFICATION, whiteListener.next());
+
+        // The move's notification and board go to the observer in one batch, still as two messages in order
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        send(whiteSession, new MakeMove(white, gameID, move), UserGameCommand.CommandType.MAKE_MOVE);
+        assertEquals(ServerMessage.ServerMessageType.NOTIFICATION, observerListener.next());
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, observerListener.next());
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, whiteListener.next());
+
+        whiteSession.close();
+        observerSession.close();
+    }
+}
@@ -0,0 +1,146 @@
+package serviceTests;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataAccess.DataAccessException;
+import dataAccess.GameConflictException;
+import dataAccess.MemoryDataAccess;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import service.UserService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameConflictTest {
+    private UserService service;
+
+    /**
+     * Lets another writer save the game just before each of the next few updates
+     */
+    private static class RacingDataAccess extends MemoryDataAccess {
+        int racesLeft;
+        int updates;
+
+        @Override
+        public void updateGame(GameData gameData) throws DataAccessException {
+            updates++;
+            if (racesLeft > 0) {
+                racesLeft--;
+                GameData current = getGameData(gameData.getGameID());
+                super.updateGame(new GameData(current.getGameID(), current.getWhiteUsername(), current.getBlackUsername(),
+                        current.getGameName(), current.getGame(), current.getVersion()));
+            }
+            super.updateGame(gameData);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    private static GameData copyOf(GameData gameData) {
+        return new GameData(gameData.getGameID(), gameData.getWhiteUsername(), gameData.getBlackUsername(),
+                gameData.getGameName(), gameData.getGame(), gameData.getVersion());
+    }
+
+    private static GameData newGame(MemoryDataAccess dataAccess) throws DataAccessException {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        int gameID = dataAccess.createGameID("first");
+        dataAccess.createGame(new GameData(gameID, null, null, "first", game));
+        return dataAccess.getGameData(gameID);
+    }
+
+    @Test
+    void savingAStaleCopyConflicts() throws Exception {
+        var dataAccess = new MemoryDataAccess();
+        GameData stored = newGame(dataAccess);
+        var first = copyOf(stored);
+        var second = copyOf(stored);
+
+        dataAccess.updateGame(first.changeWhiteName("alice"));
+        first = dataAccess.getGameData(stored.getGameID());
+        assertEquals(stored.getVersion() + 1, first.getVersion());
+
+        var conflict = assertThrows(GameConflictException.class, () -> dataAccess.updateGame(second.changeBlackName("bob")));
+        assertEquals(stored.getGameID(), conflict.getGameID());
+        assertNull(dataAccess.getGameData(stored.getGameID()).getBlackUsername());
+
+        // A saved copy carries its new version, so it can be saved again
+        dataAccess.updateGame(first);
+        assertEquals(stored.getVersion() + 2, first.getVersion());
+    }
+
+    @Test
+    void recordingAMoveOnAStaleCopyConflicts() throws Exception {
+        var dataAccess = new MemoryDataAccess();
+        GameData stored = newGame(dataAccess);
+        var stale = copyOf(stored);
+        dataAccess.updateGame(copyOf(stored).changeWhiteName("alice"));
+
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        assertThrows(GameConflictException.class, () -> dataAccess.recordMove(stale, move));
+    }
+
+    @Test
+    void movingOnAReadGameOnlyChangesTheStoreOnceSaved() throws Exception {
+        var dataAccess = new MemoryDataAccess();
+        int gameID = newGame(dataAccess).getGameID();
+        GameData first = dataAccess.getGameData(gameID);
+        GameData second = dataAccess.getGameData(gameID);
+
+        first.getGame().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertEquals(0, dataAccess.getGameData(gameID).getGame().getPly());
+        dataAccess.updateGame(first);
+        assertEquals(1, dataAccess.getGameData(gameID).getGame().getPly());
+
+        // The second reader moves on its own copy, so its rejected move never reaches the stored board
+        second.getGame().makeMove(new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null));
+        assertThrows(GameConflictException.class, () -> dataAccess.updateGame(second));
+        ChessBoard stored = dataAccess.getGameData(gameID).getGame().getBoard();
+        assertEquals(1, dataAccess.getGameData(gameID).getGame().getPly());
+        assertNotNull(stored.getPiece(new ChessPosition(4, 5)));
+        assertNull(stored.getPiece(new ChessPosition(4, 4)));
+        assertNotNull(stored.getPiece(new ChessPosition(2, 4)));
+    }
+
+    @Test
+    void leaveRetriesAfterAConflict() throws Exception {
+        var dataAccess = new RacingDataAccess();
+        service = new UserService(dataAccess);
+        String authToken = service.register(new UserData("alice", "password", "alice@mail.com")).authToken();
+        int gameID = service.createGame(authToken, "first");
+        service.joinGame(authToken, "WHITE", gameID);
+
+        dataAccess.racesLeft = 2;
+        assertTrue(service.leaveGame(authToken, gameID));
+
+        assertEquals(3, dataAccess.updates);
+        assertNull(dataAccess.getGameData(gameID).getWhiteUsername());
+    }
+
+    @Test
+    void leaveGivesUpAfterTheConfiguredRetries() throws Exception {
+        var dataAccess = new RacingDataAccess();
+        service = new UserService(dataAccess);
+        String authToken = service.register(new UserData("bob", "password", "bob@mail.com")).authToken();
+        int gameID = service.createGame(authToken, "first");
+        service.joinGame(authToken, "BLACK", gameID);
+
+        dataAccess.racesLeft = 100;
+        assertThrows(GameConflictException.class, () -> service.leaveGame(authToken, gameID));
+
+        // One attempt plus db.conflictRetries (3) more
+        assertEquals(4, dataAccess.updates);
+        assertEquals("bob", dataAccess.getGameData(gameID).getBlackUsername());
+    }
+}
@@ -0,0 +1,62 @@
+package serviceTests;
+
+import dataAccess.MemoryDataAccess;
+import model.LobbyEvent;
+import model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LobbyFeedTest {
+    private UserService service;
+    private final List<LobbyEvent> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new UserService(new MemoryDataAccess());
+        service.getLobby().subscribe(events::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void publishesLobbyChangesInVersionOrder() throws Exception {
+        String authToken = service.register(new UserData("alice", "password", "alice@mail.com")).authToken();
+
+        int gameID = service.createGame(authToken, "first");
+        service.joinGame(authToken, "WHITE", gameID);
+        service.joinGame(authToken, null, gameID);
+        assertTrue(service.leaveGame(authToken, gameID));
+
+        assertEquals(List.of(LobbyEvent.Type.CREATED, LobbyEvent.Type.JOINED, LobbyEvent.Type.LEFT),
+                events.stream().map(LobbyEvent::type).toList());
+        assertEquals("alice", events.get(1).game().whiteUsername());
+        assertNull(events.get(2).game().whiteUsername());
+        assertEquals(List.of(1L, 2L, 3L), events.stream().map(LobbyEvent::version).toList());
+        assertEquals(3, service.getLobby().getVersion());
+    }
+
+    @Test
+    void snapshotListsActiveGamesAtItsVersion() throws Exception {
+        String authToken = service.register(new UserData("bob", "password", "bob@mail.com")).authToken();
+        service.createGame(authToken, "first");
+        service.createGame(authToken, "second");
+
+        var snapshot = service.lobbySnapshotAsync(authToken).get();
+        assertEquals(LobbyEvent.Type.SNAPSHOT, snapshot.type());
+        assertEquals(2, snapshot.version());
+        assertEquals(2, snapshot.games().size());
+
+        service.clearApplication();
+        assertEquals(LobbyEvent.Type.CLEARED, events.get(events.size() - 1).type());
+    }
+}
@@ -0,0 +1,174 @@
+package webSocketTests;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import server.webSocket.ConnectionManager;
+import server.webSocket.ObserverFanOut;
+import webSocketMessages.serverMessages.LoadGame;
+import webSocketMessages.serverMessages.Notification;
+import webSocketMessages.serverMessages.ServerMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionManagerTest {
+    private final ObserverFanOut fanOut = new ObserverFanOut(1, 64, 1);
+    private final ConnectionManager manager = new ConnectionManager(8, fanOut, -1);
+
+    @AfterEach
+    void tearDown() {
+        fanOut.close();
+    }
+
+    @Test
+    void sweepPingsLiveConnections() {
+        var player = new FakeSession();
+        var observer = new FakeSession();
+        manager.add("player-token", player.session, true);
+        manager.add("observer-token", observer.session, false);
+
+        manager.sweep(60_000);
+
+        assertEquals(1, player.pings);
+        assertEquals(1, observer.pings);
+        assertEquals(2, manager.connections.size());
+    }
+
+    @Test
+    void sweepEvictsIdleConnections() throws Exception {
+        var quiet = new FakeSession();
+        var answering = new FakeSession();
+        manager.add("quiet-token", quiet.session, true);
+        manager.add("answering-token", answering.session, true);
+
+        Thread.sleep(30);
+        // A pong counts as hearing from the client
+        manager.touch(answering.session);
+        manager.sweep(20);
+
+        assertFalse(manager.connections.containsKey("quiet-token"));
+        assertEquals(1001, quiet.closeCode);
+        assertTrue(manager.connections.containsKey("answering-token"));
+        assertTrue(answering.open);
+    }
+
+    @Test
+    void sweepDropsClosedAndUnreachableConnections() {
+        var closed = new FakeSession();
+        var unreachable = new FakeSession();
+        manager.add("closed-token", closed.session, false);
+        manager.add("unreachable-token", unreachable.session, false);
+        closed.open = false;
+        unreachable.failPings = true;
+
+        manager.sweep(60_000);
+
+        assertTrue(manager.connections.isEmpty());
+        assertEquals(0, closed.pings);
+        assertTrue(manager.isExpired(-1));
+        assertFalse(manager.isExpired(60_000));
+    }
+
+    @Test
+    void removeDropsOnlyThatVisitor() {
+        var first = new FakeSession();
+        var second = new FakeSession();
+        manager.add("first-token", first.session, true);
+        manager.add("second-token", second.session, false);
+
+        manager.remove("first-token");
+
+        assertFalse(manager.connections.containsKey("first-token"));
+        assertTrue(manager.connections.containsKey("second-token"));
+        assertFalse(manager.isExpired(-1));
+    }
+
+    @Test
+    void replaySendsMissedEventsWithOnlyTheNewestBoard() throws Exception {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        manager.broadcast("", new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "seen"));
+        manager.broadcast("", new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, game));
+        manager.broadcast("mover-token", new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "moved"));
+        manager.broadcast("", new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, game));
+        manager.broadcast("", new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "check"));
+
+        var mover = new FakeSession();
+        manager.add("mover-token", mover.session, true);
+        assertTrue(manager.replay("mover-token", 1));
+
+        // The first board is superseded and the mover's own notification was never theirs
+        assertEquals(2, mover.sent.size());
+        assertTrue(mover.sent.get(0).contains("\"sequence\":4"));
+        assertTrue(mover.sent.get(0).contains("LOAD_GAME"));
+        assertTrue(mover.sent.get(1).contains("check"));
+    }
+
+    @Test
+    void replayFailsOnceMissedEventsAreGone() throws Exception {
+        var small = new ConnectionManager(2, fanOut, -1);
+        for (int i = 0; i < 5; i++) {
+            small.broadcast("", new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "event " + i));
+        }
+        var session = new FakeSession();
+        small.add("late-token", session.session, false);
+
+        assertFalse(small.replay("late-token", 1));
+        assertFalse(small.replay("unknown-token", 4));
+        assertTrue(session.sent.isEmpty());
+    }
+
+    private static void awaitMessages(FakeSession session, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (session.sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, session.sent.size());
+    }
+
+    @Test
+    void fewObserversAreSentToOnTheCallersThread() throws Exception {
+        var observer = new FakeSession();
+        manager.add("observer-token", observer.session, false);
+
+        manager.broadcast("", new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "direct"));
+
+        assertEquals(1, observer.sent.size());
+        assertEquals(Thread.currentThread().getName(), observer.senders.get(0));
+    }
+
+    @Test
+    void observersPastTheThresholdAreShardedAndKeepTheirOrder() throws Exception {
+        var shardedFanOut = new ObserverFanOut(4, 2, 3);
+        try {
+            var sharded = new ConnectionManager(8, shardedFanOut, -1);
+            var player = new FakeSession();
+            sharded.add("player-token", player.session, true);
+            var observers = new FakeSession[8];
+            for (int i = 0; i < observers.length; i++) {
+                observers[i] = new FakeSession();
+                sharded.add("observer-" + i, observers[i].session, false);
+            }
+
+            int messages = 50;
+            for (int i = 0; i < messages; i++) {
+                sharded.broadcast("", new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "message " + i));
+            }
+
+            // The player is never queued behind the observers
+            assertEquals(messages, player.sent.size());
+            for (var observer : observers) {
+                awaitMessages(observer, messages);
+                for (int i = 0; i < messages; i++) {
+                    assertTrue(observer.sent.get(i).contains("\"message " + i + "\""), observer.sent.get(i));
+                    assertTrue(observer.senders.get(i).startsWith("observer-fan-out-"));
+                }
+            }
+        } finally {
+            shardedFanOut.close();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package webSocketTests;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A WebSocket session that records what is sent to it instead of talking to a client
+ */
+public class FakeSession {
+    public final List<String> sent = new CopyOnWriteArrayList<>();
+    // The thread each message in sent was written on
+    public final List<String> senders = new CopyOnWriteArrayList<>();
+    public volatile int pings;
+    public volatile int closeCode;
+    public volatile boolean open = true;
+    public volatile boolean failPings;
+
+    public final Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+            new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "isOpen" -> open;
+                case "getRemote" -> remote();
+                case "close" -> {
+                    open = false;
+                    closeCode = args != null && args.length == 2 ? (int) args[0] : 1000;
+                    yield null;
+                }
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "FakeSession";
+                default -> null;
+            });
+
+    private void record(String message) {
+        senders.add(Thread.currentThread().getName());
+        sent.add(message);
+    }
+
+    private RemoteEndpoint remote() {
+        return (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "sendString" -> {
+                        record((String) args[0]);
+                        yield null;
+                    }
+                    case "sendStringByFuture" -> {
+                        record((String) args[0]);
+                        yield CompletableFuture.completedFuture(null);
+                    }
+                    case "sendPing" -> {
+                        if (failPings) {
+                            throw new IOException("Connection reset");
+                        }
+                        pings++;
+                        yield null;
+                    }
+                    default -> null;
+                });
+    }
+}
@@ -0,0 +1,64 @@
+package webSocketTests;
+
+import org.junit.jupiter.api.Test;
+import server.webSocket.GameEventLog;
+import webSocketMessages.serverMessages.Notification;
+import webSocketMessages.serverMessages.ServerMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventLogTest {
+    private static Notification notification(String message) {
+        return new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message);
+    }
+
+    private static List<Long> sequences(List<GameEventLog.Event> events) {
+        return events.stream().map(GameEventLog.Event::sequence).toList();
+    }
+
+    @Test
+    void numbersEventsInOrder() {
+        var log = new GameEventLog(4);
+        var first = notification("first");
+        var second = notification("second");
+
+        assertEquals(1, log.append("alice", first));
+        assertEquals(2, log.append(null, second));
+
+        assertEquals(1, first.getSequence());
+        assertEquals(2, second.getSequence());
+        assertEquals(2, log.getLastSequence());
+        var missed = log.since(0);
+        assertEquals(List.of(1L, 2L), sequences(missed));
+        assertEquals("alice", missed.get(0).excludeVisitorName());
+        assertSame(second, missed.get(1).message());
+    }
+
+    @Test
+    void keepsTheNewestEventsAfterWrappingAround() {
+        var log = new GameEventLog(4);
+        for (int i = 1; i <= 10; i++) {
+            log.append(null, notification("event " + i));
+        }
+
+        assertEquals(List.of(7L, 8L, 9L, 10L), sequences(log.since(6)));
+        assertEquals(List.of(10L), sequences(log.since(9)));
+        assertEquals("event 8", ((Notification) log.since(7).get(0).message()).getMessage());
+        assertTrue(log.since(10).isEmpty());
+    }
+
+    @Test
+    void reportsAGapAsNull() {
+        var log = new GameEventLog(4);
+        for (int i = 1; i <= 10; i++) {
+            log.append(null, notification("event " + i));
+        }
+
+        assertNull(log.since(5));
+        assertNull(log.since(0));
+        // A client can't have seen events the log hasn't numbered yet
+        assertNull(log.since(11));
+    }
+}
@@ -0,0 +1,218 @@
+package webSocketTests;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.PackedGame;
+import dataAccess.DataAccessException;
+import dataAccess.MemoryDataAccess;
+import dataAccess.WriteBehindDataAccess;
+import model.AuthData;
+import model.GameList;
+import model.GameQuery;
+import model.GameSummary;
+import model.LobbyEvent;
+import model.LobbySubscription;
+import model.UserData;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import serialization.Serializer;
+import server.webSocket.LobbyHandler;
+import service.UserService;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LobbyHandlerTest {
+    private UserService service;
+    private LobbyHandler handler;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Can hold one follower's snapshot either before or after it reads the lobby version
+     */
+    private static class PausingDataAccess extends MemoryDataAccess {
+        final CountDownLatch paused = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        volatile String pauseOnToken;
+        volatile boolean pauseListing;
+
+        @Override
+        public AuthData getAuth(String authToken) throws DataAccessException {
+            if (authToken != null && authToken.equals(pauseOnToken)) {
+                pause();
+            }
+            return super.getAuth(authToken);
+        }
+
+        @Override
+        public GameList listGameSummaries(GameQuery query) {
+            if (pauseListing) {
+                pause();
+            }
+            return super.listGameSummaries(query);
+        }
+
+        private void pause() {
+            paused.countDown();
+            try {
+                assertTrue(resume.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null) {
+            handler.close();
+        }
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    private void start(UserService userService) {
+        service = userService;
+        handler = new LobbyHandler(service);
+    }
+
+    private String register(String username) throws Exception {
+        return service.register(new UserData(username, "password", username + "@mail.com")).authToken();
+    }
+
+    private FakeSession follow(String authToken) {
+        var follower = new FakeSession();
+        handler.onMessage(follower.session, Serializer.toJson(new LobbySubscription(authToken)));
+        return follower;
+    }
+
+    private static LobbyEvent awaitEvent(FakeSession follower, int index) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (follower.sent.size() <= index && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(follower.sent.size() > index, "Expected event " + index);
+        return Serializer.fromJson(follower.sent.get(index), LobbyEvent.class);
+    }
+
+    private static void awaitClose(FakeSession follower) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (follower.open && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(follower.open);
+    }
+
+    @Test
+    void followerGetsASnapshotThenChanges() throws Exception {
+        start(new UserService(new MemoryDataAccess()));
+        String authToken = register("alice");
+        service.createGame(authToken, "first");
+
+        var follower = follow(authToken);
+        LobbyEvent snapshot = awaitEvent(follower, 0);
+        assertEquals(LobbyEvent.Type.SNAPSHOT, snapshot.type());
+        assertEquals(1, snapshot.games().size());
+
+        service.createGame(authToken, "second");
+        LobbyEvent created = awaitEvent(follower, 1);
+        assertEquals(LobbyEvent.Type.CREATED, created.type());
+        assertEquals("second", created.game().gameName());
+        assertTrue(created.version() > snapshot.version());
+    }
+
+    @Test
+    void changesTheSnapshotAlreadyShowsAreDropped() throws Exception {
+        var dataAccess = new PausingDataAccess();
+        start(new UserService(dataAccess));
+        String authToken = register("alice");
+        dataAccess.pauseOnToken = register("bob");
+
+        // The game is created after bob follows but before his snapshot reads the version
+        var follower = follow(dataAccess.pauseOnToken);
+        assertTrue(dataAccess.paused.await(5, TimeUnit.SECONDS));
+        service.createGame(authToken, "first");
+        dataAccess.resume.countDown();
+
+        LobbyEvent snapshot = awaitEvent(follower, 0);
+        assertEquals(1, snapshot.games().size());
+        Thread.sleep(100);
+        assertEquals(1, follower.sent.size());
+    }
+
+    @Test
+    void changesDuringTheSnapshotFollowIt() throws Exception {
+        var dataAccess = new PausingDataAccess();
+        start(new UserService(dataAccess));
+        String authToken = register("alice");
+
+        // The game is created after the snapshot reads the version but before it lists
+        dataAccess.pauseListing = true;
+        var follower = follow(authToken);
+        assertTrue(dataAccess.paused.await(5, TimeUnit.SECONDS));
+        service.createGame(authToken, "first");
+        dataAccess.resume.countDown();
+
+        LobbyEvent snapshot = awaitEvent(follower, 0);
+        assertEquals(LobbyEvent.Type.SNAPSHOT, snapshot.type());
+        LobbyEvent created = awaitEvent(follower, 1);
+        assertEquals(LobbyEvent.Type.CREATED, created.type());
+        assertTrue(created.version() > snapshot.version());
+    }
+
+    @Test
+    void finishedGameIsNotInLaterSnapshots() throws Exception {
+        var store = new WriteBehindDataAccess(new MemoryDataAccess(), 60_000, 100, directory.resolve("fallback.jsonl"));
+        start(new UserService(store));
+        String white = register("alice");
+        String black = register("bob");
+        int gameID = service.createGame(white, "mate");
+        service.joinGame(white, "WHITE", gameID);
+        service.joinGame(black, "BLACK", gameID);
+
+        // Fool's mate, ended by black
+        String[] players = {white, black, white, black};
+        int[][] moves = {{2, 6, 3, 6}, {7, 5, 5, 5}, {2, 7, 4, 7}, {8, 4, 4, 8}};
+        for (int i = 0; i < moves.length; i++) {
+            var move = new ChessMove(new ChessPosition(moves[i][0], moves[i][1]), new ChessPosition(moves[i][2], moves[i][3]), null);
+            ChessGame game = PackedGame.copy(service.getGameData(players[i], gameID).getGame());
+            game.makeMove(move);
+            service.recordMove(players[i], game, move, gameID);
+        }
+
+        LobbyEvent snapshot = awaitEvent(follow(white), 0);
+        assertTrue(snapshot.version() >= service.getLobby().getVersion());
+        assertTrue(snapshot.games().stream().map(GameSummary::gameID).noneMatch(id -> id == gameID));
+        store.close();
+    }
+
+    @Test
+    void unknownTokenIsTurnedAway() throws Exception {
+        start(new UserService(new MemoryDataAccess()));
+
+        var follower = follow("not-a-token");
+        awaitClose(follower);
+        assertEquals(StatusCode.POLICY_VIOLATION, follower.closeCode);
+        assertTrue(follower.sent.isEmpty());
+    }
+
+    @Test
+    void subscriptionWithoutATokenIsRejected() {
+        start(new UserService(new MemoryDataAccess()));
+
+        for (String message : new String[]{"not json", "{}"}) {
+            var follower = new FakeSession();
+            handler.onMessage(follower.session, message);
+            assertEquals(StatusCode.BAD_DATA, follower.closeCode);
+        }
+    }
+}
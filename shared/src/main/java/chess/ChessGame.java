@@ -17,6 +17,7 @@ public class ChessGame {
     private boolean canEnPassant = false;
     private ChessPosition enPassantPosition = null;
     private boolean gameIsOver = false;
+    private int ply = 0;
 
     public ChessGame() {
     }
@@ -344,6 +345,7 @@ public class ChessGame {
         }
 
         setTeamTurn(getTeamTurn() == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
+        ply++;
     }
 
     /**
@@ -493,7 +495,54 @@ public class ChessGame {
         gameIsOver = true;
     }
 
+    /**
+     * @return bit set of which kings and rooks have moved, in the order
+     * white king, black king, white queen rook, white king rook, black queen rook, black king rook
+     */
+    int getMovedFlags() {
+        boolean[] moved = {whiteKingMoved, blackKingMoved, whiteQueenRookMoved, whiteKingRookMoved, blackQueenRookMoved, blackKingRookMoved};
+        int flags = 0;
+        for (int i = 0; i < moved.length; i++) {
+            if (moved[i]) {
+                flags |= 1 << i;
+            }
+        }
+        return flags;
+    }
+
+    void setMovedFlags(int flags) {
+        whiteKingMoved = (flags & 1) != 0;
+        blackKingMoved = (flags & 1 << 1) != 0;
+        whiteQueenRookMoved = (flags & 1 << 2) != 0;
+        whiteKingRookMoved = (flags & 1 << 3) != 0;
+        blackQueenRookMoved = (flags & 1 << 4) != 0;
+        blackKingRookMoved = (flags & 1 << 5) != 0;
+    }
+
+    /**
+     * @return the pawn that can be captured en passant, or null if there isn't one
+     */
+    ChessPosition getEnPassantPosition() {
+        return canEnPassant ? enPassantPosition : null;
+    }
+
+    void setEnPassantPosition(ChessPosition position) {
+        canEnPassant = position != null;
+        enPassantPosition = position;
+    }
+
     public boolean getGameIsOver() {
         return gameIsOver;
     }
+
+    /**
+     * @return the number of moves (by either side) made so far
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    public void setPly(int ply) {
+        this.ply = ply;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+package chess;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streaming Gson adapters for the chess classes. They read and write the same JSON
+ * that reflection produced, so stored games and older clients still work, but without
+ * reflection. Pieces and squares are immutable, so reading reuses shared instances.
+ */
+public final class ChessJson {
+    private static final ChessPosition[][] SQUARES = new ChessPosition[9][9];
+    private static final ChessPiece[][] PIECES = new ChessPiece[2][ChessPiece.PieceType.values().length];
+
+    static {
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                SQUARES[row][col] = new ChessPosition(row, col);
+            }
+        }
+        for (var color : ChessGame.TeamColor.values()) {
+            for (var type : ChessPiece.PieceType.values()) {
+                PIECES[color.ordinal()][type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
+    public static final TypeAdapter<ChessPosition> POSITION = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, ChessPosition position) throws IOException {
+            if (position == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("row").value(position.getRow());
+            out.name("col").value(position.getColumn());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPosition read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            int row = 0;
+            int col = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "row" -> row = in.nextInt();
+                    case "col" -> col = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return row >= 1 && row <= 8 && col >= 1 && col <= 8 ? SQUARES[row][col] : new ChessPosition(row, col);
+        }
+    };
+
+    public static final TypeAdapter<ChessPiece> PIECE = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            if (piece == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("pieceColor").value(piece.getTeamColor() == null ? null : piece.getTeamColor().name());
+            out.name("type").value(piece.getPieceType() == null ? null : piece.getPieceType().name());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ChessGame.TeamColor color = null;
+            ChessPiece.PieceType type = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "pieceColor" -> color = readEnum(in, ChessGame.TeamColor.class);
+                    case "type" -> type = readEnum(in, ChessPiece.PieceType.class);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return color != null && type != null ? PIECES[color.ordinal()][type.ordinal()] : new ChessPiece(color, type);
+        }
+    };
+
+    public static final TypeAdapter<ChessMove> MOVE = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, ChessMove move) throws IOException {
+            if (move == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("startPosition");
+            POSITION.write(out, move.getStartPosition());
+            out.name("endPosition");
+            POSITION.write(out, move.getEndPosition());
+            out.name("promotionPiece").value(move.getPromotionPiece() == null ? null : move.getPromotionPiece().name());
+            out.endObject();
+        }
+
+        @Override
+        public ChessMove read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ChessPosition start = null;
+            ChessPosition end = null;
+            ChessPiece.PieceType promotion = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "startPosition" -> start = POSITION.read(in);
+                    case "endPosition" -> end = POSITION.read(in);
+                    case "promotionPiece" -> promotion = readEnum(in, ChessPiece.PieceType.class);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ChessMove(start, end, promotion);
+        }
+    };
+
+    public static final TypeAdapter<ChessBoard> BOARD = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, ChessBoard board) throws IOException {
+            if (board == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("board").beginArray();
+            for (int row = 1; row <= 8; row++) {
+                out.beginArray();
+                for (int col = 1; col <= 8; col++) {
+                    PIECE.write(out, board.getPiece(SQUARES[row][col]));
+                }
+                out.endArray();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public ChessBoard read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            var board = new ChessBoard();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("board") || in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                for (int row = 1; in.hasNext(); row++) {
+                    in.beginArray();
+                    for (int col = 1; in.hasNext(); col++) {
+                        ChessPiece piece = PIECE.read(in);
+                        if (row > 8 || col > 8) {
+                            throw new IOException("Board is larger than 8x8");
+                        }
+                        board.addPiece(SQUARES[row][col], piece);
+                    }
+                    in.endArray();
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return board;
+        }
+    };
+
+    public static final TypeAdapter<ChessGame> GAME = new TypeAdapter<>() {
+        private static final String[] MOVED_FLAGS = {"whiteKingMoved", "blackKingMoved", "whiteQueenRookMoved",
+                "whiteKingRookMoved", "blackQueenRookMoved", "blackKingRookMoved"};
+
+        @Override
+        public void write(JsonWriter out, ChessGame game) throws IOException {
+            if (game == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("teamTurn").value(game.getTeamTurn() == null ? null : game.getTeamTurn().name());
+            out.name("gameBoard");
+            BOARD.write(out, game.getBoard());
+            int moved = game.getMovedFlags();
+            for (int i = 0; i < MOVED_FLAGS.length; i++) {
+                out.name(MOVED_FLAGS[i]).value((moved & 1 << i) != 0);
+            }
+            ChessPosition enPassant = game.getEnPassantPosition();
+            out.name("canEnPassant").value(enPassant != null);
+            out.name("enPassantPosition");
+            POSITION.write(out, enPassant);
+            out.name("gameIsOver").value(game.getGameIsOver());
+            out.name("ply").value(game.getPly());
+            out.endObject();
+        }
+
+        @Override
+        public ChessGame read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            var game = new ChessGame();
+            int moved = 0;
+            boolean canEnPassant = false;
+            ChessPosition enPassant = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "teamTurn" -> game.setTeamTurn(readEnum(in, ChessGame.TeamColor.class));
+                    case "gameBoard" -> {
+                        ChessBoard board = BOARD.read(in);
+                        if (board != null) {
+                            game.setBoard(board);
+                        }
+                    }
+                    case "canEnPassant" -> canEnPassant = in.nextBoolean();
+                    case "enPassantPosition" -> enPassant = POSITION.read(in);
+                    case "gameIsOver" -> {
+                        if (in.nextBoolean()) {
+                            game.gameIsOver();
+                        }
+                    }
+                    case "ply" -> game.setPly(in.nextInt());
+                    default -> {
+                        int flag = indexOf(name);
+                        if (flag < 0) {
+                            in.skipValue();
+                        } else if (in.nextBoolean()) {
+                            moved |= 1 << flag;
+                        }
+                    }
+                }
+            }
+            in.endObject();
+            game.setMovedFlags(moved);
+            game.setEnPassantPosition(canEnPassant ? enPassant : null);
+            return game;
+        }
+
+        private static int indexOf(String name) {
+            for (int i = 0; i < MOVED_FLAGS.length; i++) {
+                if (MOVED_FLAGS[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    };
+
+    private ChessJson() {
+    }
+
+    /**
+     * Reads an enum by name. Unknown names read as null, as they did with reflection.
+     */
+    public static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> type) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = in.nextString();
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equals(name)) {
+                return constant;
+            }
+        }
+        return null;
+    }
+}
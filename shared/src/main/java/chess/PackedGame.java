@@ -0,0 +1,129 @@
+package chess;
+
+import java.io.*;
+
+/**
+ * Fixed-size binary layouts for squares, moves and whole games.
+ * <p>
+ * A square is one byte, (row - 1) * 8 + (column - 1). A move fits in 15 bits:
+ * start square, end square shifted by 6, and the promotion piece
+ * (0 for none, otherwise ordinal + 1) shifted by 12. A game is 34 bytes:
+ * the board as 64 four-bit pieces, a flags byte and the en passant square.
+ */
+public class PackedGame {
+    public static final int GAME_BYTES = 34;
+
+    private static final int NO_SQUARE = 0xFF;
+    private static final int BLACK_TURN = 1 << 6;
+    private static final int GAME_OVER = 1 << 7;
+
+    private PackedGame() {
+    }
+
+    public static int packSquare(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + (position.getColumn() - 1);
+    }
+
+    public static ChessPosition unpackSquare(int square) {
+        if (square < 0 || square > 63) {
+            throw new IllegalArgumentException("Invalid square: " + square);
+        }
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
+    public static int packMove(ChessMove move) {
+        int promotion = move.getPromotionPiece() == null ? 0 : move.getPromotionPiece().ordinal() + 1;
+        return packSquare(move.getStartPosition()) | packSquare(move.getEndPosition()) << 6 | promotion << 12;
+    }
+
+    public static ChessMove unpackMove(int packed) {
+        int promotion = (packed >> 12) & 0x7;
+        if (promotion > ChessPiece.PieceType.values().length) {
+            throw new IllegalArgumentException("Invalid promotion piece: " + promotion);
+        }
+        return new ChessMove(unpackSquare(packed & 0x3F), unpackSquare((packed >> 6) & 0x3F),
+                promotion == 0 ? null : ChessPiece.PieceType.values()[promotion - 1]);
+    }
+
+    /**
+     * @return 0 for an empty square, otherwise the piece type ordinal + 1 with bit 3 set for black
+     */
+    public static int packPiece(ChessPiece piece) {
+        if (piece == null) {
+            return 0;
+        }
+        int color = piece.getTeamColor() == ChessGame.TeamColor.BLACK ? 0x8 : 0;
+        return color | (piece.getPieceType().ordinal() + 1);
+    }
+
+    public static ChessPiece unpackPiece(int packed) {
+        int type = packed & 0x7;
+        if (type == 0) {
+            return null;
+        }
+        if (type > ChessPiece.PieceType.values().length) {
+            throw new IllegalArgumentException("Invalid piece: " + packed);
+        }
+        var color = (packed & 0x8) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return new ChessPiece(color, ChessPiece.PieceType.values()[type - 1]);
+    }
+
+    public static void writeGame(ChessGame game, DataOutput out) throws IOException {
+        ChessBoard board = game.getBoard();
+        for (int square = 0; square < 64; square += 2) {
+            int low = packPiece(board.getPiece(unpackSquare(square)));
+            int high = packPiece(board.getPiece(unpackSquare(square + 1)));
+            out.writeByte(low | high << 4);
+        }
+
+        int flags = game.getMovedFlags();
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            flags |= BLACK_TURN;
+        }
+        if (game.getGameIsOver()) {
+            flags |= GAME_OVER;
+        }
+        out.writeByte(flags);
+
+        ChessPosition enPassant = game.getEnPassantPosition();
+        out.writeByte(enPassant == null ? NO_SQUARE : packSquare(enPassant));
+    }
+
+    public static ChessGame readGame(DataInput in) throws IOException {
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square += 2) {
+            int pair = in.readUnsignedByte();
+            board.addPiece(unpackSquare(square), unpackPiece(pair & 0xF));
+            board.addPiece(unpackSquare(square + 1), unpackPiece(pair >> 4));
+        }
+
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+
+        int flags = in.readUnsignedByte();
+        game.setMovedFlags(flags);
+        game.setTeamTurn((flags & BLACK_TURN) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        if ((flags & GAME_OVER) != 0) {
+            game.gameIsOver();
+        }
+
+        int enPassant = in.readUnsignedByte();
+        game.setEnPassantPosition(enPassant == NO_SQUARE ? null : unpackSquare(enPassant));
+        return game;
+    }
+
+    /**
+     * @return an independent deep copy of the game, including its ply count
+     */
+    public static ChessGame copy(ChessGame game) {
+        try {
+            var bytes = new ByteArrayOutputStream(GAME_BYTES);
+            writeGame(game, new DataOutputStream(bytes));
+            ChessGame copy = readGame(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            copy.setPly(game.getPly());
+            return copy;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package model;
+
+import chess.ChessGame;
+import chess.PackedGame;
+import serialization.Serializer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Versioned binary encoding for stored games.
+ * <p>
+ * A game is a version byte, the ply count as a varint, then the 34-byte
+ * {@link PackedGame} layout. A GameData is a version byte, the game ID, a byte saying
+ * which of white, black and name are present, those strings, then the game without
+ * its version byte. Decoding also accepts the unversioned 34-byte snapshots and the
+ * JSON that older servers stored.
+ */
+public class GameCodec {
+    public static final int VERSION = 1;
+
+    private static final int HAS_WHITE = 1;
+    private static final int HAS_BLACK = 1 << 1;
+    private static final int HAS_NAME = 1 << 2;
+
+    private GameCodec() {
+    }
+
+    public static byte[] encodeGame(ChessGame game) {
+        var bytes = new ByteArrayOutputStream(PackedGame.GAME_BYTES + 4);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeGame(game, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the game, with ply 0 if it is an unversioned snapshot
+     */
+    public static ChessGame decodeGame(byte[] bytes) throws IOException {
+        if (bytes.length == PackedGame.GAME_BYTES) {
+            return PackedGame.readGame(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+        var in = new DataInputStream(new ByteArrayInputStream(bytes));
+        checkVersion(in.readUnsignedByte());
+        return readGame(in);
+    }
+
+    public static byte[] encode(GameData gameData) {
+        var bytes = new ByteArrayOutputStream(PackedGame.GAME_BYTES + 64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(gameData.getGameID());
+            int present = (gameData.getWhiteUsername() != null ? HAS_WHITE : 0)
+                    | (gameData.getBlackUsername() != null ? HAS_BLACK : 0)
+                    | (gameData.getGameName() != null ? HAS_NAME : 0);
+            out.writeByte(present);
+            if (gameData.getWhiteUsername() != null) {
+                out.writeUTF(gameData.getWhiteUsername());
+            }
+            if (gameData.getBlackUsername() != null) {
+                out.writeUTF(gameData.getBlackUsername());
+            }
+            if (gameData.getGameName() != null) {
+                out.writeUTF(gameData.getGameName());
+            }
+            writeGame(gameData.getGame(), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static GameData decode(byte[] bytes) throws IOException {
+        if (bytes.length > 0 && bytes[0] == '{') {
+            return Serializer.fromJson(new String(bytes, StandardCharsets.UTF_8), GameData.class);
+        }
+
+        var in = new DataInputStream(new ByteArrayInputStream(bytes));
+        checkVersion(in.readUnsignedByte());
+        int gameID = in.readInt();
+        int present = in.readUnsignedByte();
+        String whiteUsername = (present & HAS_WHITE) != 0 ? in.readUTF() : null;
+        String blackUsername = (present & HAS_BLACK) != 0 ? in.readUTF() : null;
+        String gameName = (present & HAS_NAME) != 0 ? in.readUTF() : null;
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, readGame(in));
+    }
+
+    private static void writeGame(ChessGame game, DataOutputStream out) throws IOException {
+        int ply = game.getPly();
+        while ((ply & ~0x7F) != 0) {
+            out.writeByte((ply & 0x7F) | 0x80);
+            ply >>>= 7;
+        }
+        out.writeByte(ply);
+        PackedGame.writeGame(game, out);
+    }
+
+    private static ChessGame readGame(DataInputStream in) throws IOException {
+        int ply = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 28) {
+                throw new IOException("Ply count is too long");
+            }
+            int next = in.readUnsignedByte();
+            ply |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                break;
+            }
+        }
+        ChessGame game = PackedGame.readGame(in);
+        game.setPly(ply);
+        return game;
+    }
+
+    private static void checkVersion(int version) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unsupported game encoding version " + version);
+        }
+    }
+}
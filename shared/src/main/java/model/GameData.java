@@ -1,6 +1,7 @@
 package model;
 
 import chess.ChessGame;
+import chess.PackedGame;
 
 public class GameData {
     private final int gameID;
@@ -8,13 +9,23 @@ public class GameData {
     private final String blackUsername;
     private final String gameName;
     private ChessGame game;
+    private int version;
 
     public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, 0);
+    }
+
+    /**
+     * @param version how many times the stored game has been updated; an update only
+     *                succeeds if it was made from the current version
+     */
+    public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game, int version) {
         this.gameID = gameID;
         this.whiteUsername = whiteUsername;
         this.blackUsername = blackUsername;
         this.gameName = gameName;
         this.game = game;
+        this.version = version;
     }
 
     public int getGameID() {
@@ -41,11 +52,26 @@ public class GameData {
         this.game = game;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    /**
+     * @return a copy with its own board, so changes to one don't show in the other
+     */
+    public GameData copy() {
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, game == null ? null : PackedGame.copy(game), version);
+    }
+
     public GameData changeWhiteName(String username) {
-        return new GameData(gameID, username, blackUsername, gameName, game);
+        return new GameData(gameID, username, blackUsername, gameName, game, version);
     }
 
     public GameData changeBlackName(String username) {
-        return new GameData(gameID, whiteUsername, username, gameName, game);
+        return new GameData(gameID, whiteUsername, username, gameName, game, version);
     }
 }
@@ -2,5 +2,11 @@ package model;
 
 import java.util.Collection;
 
-public record GameList(Collection<GameSummary> games) {
-}
\ No newline at end of file
+/**
+ * @param nextCursor the afterGameID for the next page, or null on the last page
+ */
+public record GameList(Collection<GameSummary> games, Integer nextCursor) {
+    public GameList(Collection<GameSummary> games) {
+        this(games, null);
+    }
+}
@@ -0,0 +1,81 @@
+package model;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.StringJoiner;
+
+/**
+ * One page of the game listing. Games come back in ID order starting after
+ * afterGameID, or from the first game when it is null. openSeats keeps games with a
+ * free seat, player keeps games that user plays in, and status keeps ACTIVE or
+ * FINISHED games. Null filters match every game.
+ */
+public record GameQuery(Integer afterGameID, int limit, boolean openSeats, String player, String status) {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    public GameQuery {
+        limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    public static GameQuery firstPage() {
+        return new GameQuery(null, DEFAULT_LIMIT, false, null, null);
+    }
+
+    public GameQuery after(Integer gameID) {
+        return new GameQuery(gameID, limit, openSeats, player, status);
+    }
+
+    public static String statusOf(GameData game) {
+        return game.getGame() != null && game.getGame().getGameIsOver() ? "FINISHED" : "ACTIVE";
+    }
+
+    public boolean matches(GameData game) {
+        if (afterGameID != null && game.getGameID() <= afterGameID) {
+            return false;
+        }
+        if (openSeats && game.getWhiteUsername() != null && game.getBlackUsername() != null) {
+            return false;
+        }
+        if (player != null && !player.equals(game.getWhiteUsername()) && !player.equals(game.getBlackUsername())) {
+            return false;
+        }
+        return status == null || status.equals(statusOf(game));
+    }
+
+    /**
+     * Builds the page from games already in ID order, reading only one game past the page
+     */
+    public GameList page(Iterable<GameData> gamesInOrder) {
+        var summaries = new ArrayList<GameSummary>(limit);
+        for (GameData game : gamesInOrder) {
+            if (!matches(game)) {
+                continue;
+            }
+            if (summaries.size() == limit) {
+                return new GameList(summaries, summaries.get(limit - 1).gameID());
+            }
+            summaries.add(new GameSummary(game.getGameID(), game.getWhiteUsername(), game.getBlackUsername(), game.getGameName()));
+        }
+        return new GameList(summaries, null);
+    }
+
+    public String toQueryString() {
+        var query = new StringJoiner("&", "?", "");
+        query.add("limit=" + limit);
+        if (afterGameID != null) {
+            query.add("after=" + afterGameID);
+        }
+        if (openSeats) {
+            query.add("open=true");
+        }
+        if (player != null) {
+            query.add("player=" + URLEncoder.encode(player, StandardCharsets.UTF_8));
+        }
+        if (status != null) {
+            query.add("status=" + status);
+        }
+        return query.toString();
+    }
+}
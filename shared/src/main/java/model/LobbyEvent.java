@@ -0,0 +1,25 @@
+package model;
+
+import java.util.Collection;
+
+/**
+ * A message on the /lobby WebSocket. A SNAPSHOT lists every active game and comes
+ * first; later events each carry one game. CREATED and JOINED add or replace that game,
+ * LEFT replaces it, FINISHED removes it and CLEARED empties the lobby. Versions only go
+ * up, and events may repeat changes the snapshot already shows, so applying them by
+ * gameID is always safe.
+ */
+public record LobbyEvent(Type type, long version, GameSummary game, Collection<GameSummary> games) {
+    public enum Type {
+        SNAPSHOT,
+        CREATED,
+        JOINED,
+        LEFT,
+        FINISHED,
+        CLEARED
+    }
+
+    public static LobbyEvent snapshot(long version, Collection<GameSummary> games) {
+        return new LobbyEvent(Type.SNAPSHOT, version, null, games);
+    }
+}
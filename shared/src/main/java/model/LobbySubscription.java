@@ -0,0 +1,6 @@
+package model;
+
+/**
+ * The one message a client sends on the /lobby WebSocket, to start following it
+ */
+public record LobbySubscription(String authToken) {}
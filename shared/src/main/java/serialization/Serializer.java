@@ -0,0 +1,331 @@
+package serialization;
+
+import chess.*;
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import model.AuthData;
+import model.GameData;
+import webSocketMessages.serverMessages.Error;
+import webSocketMessages.serverMessages.LoadGame;
+import webSocketMessages.serverMessages.Notification;
+import webSocketMessages.serverMessages.ServerMessage;
+import webSocketMessages.userCommands.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * The one place JSON is configured. Gson instances are thread-safe, so everything
+ * shares one instead of building a new one per call, and the game and message
+ * classes use hand-written streaming adapters instead of reflection. The JSON is the
+ * same as reflection produced, so stored games and older peers still read it.
+ */
+public final class Serializer {
+    private static final TypeAdapter<GameData> GAME_DATA = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, GameData gameData) throws IOException {
+            if (gameData == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("gameID").value(gameData.getGameID());
+            out.name("whiteUsername").value(gameData.getWhiteUsername());
+            out.name("blackUsername").value(gameData.getBlackUsername());
+            out.name("gameName").value(gameData.getGameName());
+            out.name("game");
+            ChessJson.GAME.write(out, gameData.getGame());
+            out.name("version").value(gameData.getVersion());
+            out.endObject();
+        }
+
+        @Override
+        public GameData read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            int gameID = 0;
+            int version = 0;
+            String whiteUsername = null;
+            String blackUsername = null;
+            String gameName = null;
+            ChessGame game = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "gameID" -> gameID = in.nextInt();
+                    case "whiteUsername" -> whiteUsername = nextString(in);
+                    case "blackUsername" -> blackUsername = nextString(in);
+                    case "gameName" -> gameName = nextString(in);
+                    case "game" -> game = ChessJson.GAME.read(in);
+                    case "version" -> version = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GameData(gameID, whiteUsername, blackUsername, gameName, game, version);
+        }
+    };
+
+    /**
+     * Server messages and user commands. A server message is read as the subclass its
+     * serverMessageType names, and so is a command read as UserGameCommand, by its
+     * commandType. Both are read in one pass, whatever order the fields come in.
+     */
+    private static final TypeAdapterFactory MESSAGES = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> raw = type.getRawType();
+            if (ServerMessage.class.isAssignableFrom(raw)) {
+                return (TypeAdapter<T>) SERVER_MESSAGE;
+            }
+            if (UserGameCommand.class.isAssignableFrom(raw)) {
+                return (TypeAdapter<T>) commandAdapter((Class<? extends UserGameCommand>) raw);
+            }
+            return null;
+        }
+    };
+
+    private static final TypeAdapter<ServerMessage> SERVER_MESSAGE = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, ServerMessage message) throws IOException {
+            if (message == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            switch (message) {
+                case LoadGame loadGame -> {
+                    out.name("game");
+                    ChessJson.GAME.write(out, loadGame.getGame());
+                }
+                case Error error -> out.name("errorMessage").value(error.getErrorMessage());
+                case Notification notification -> out.name("message").value(notification.getMessage());
+                default -> {
+                }
+            }
+            var type = message.getServerMessageType();
+            out.name("serverMessageType").value(type == null ? null : type.name());
+            out.name("sequence").value(message.getSequence());
+            out.endObject();
+        }
+
+        @Override
+        public ServerMessage read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ServerMessage.ServerMessageType type = null;
+            long sequence = 0;
+            ChessGame game = null;
+            String text = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "serverMessageType" -> type = ChessJson.readEnum(in, ServerMessage.ServerMessageType.class);
+                    case "sequence" -> sequence = in.nextLong();
+                    case "game" -> game = ChessJson.GAME.read(in);
+                    case "errorMessage", "message" -> text = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (type == null) {
+                throw new JsonParseException("Server message has no serverMessageType");
+            }
+            ServerMessage message = switch (type) {
+                case LOAD_GAME -> new LoadGame(type, game);
+                case ERROR -> new Error(type, text);
+                case NOTIFICATION -> new Notification(type, text);
+            };
+            message.setSequence(sequence);
+            return message;
+        }
+    };
+
+    private static final Gson GSON = builder().create();
+
+    private Serializer() {
+    }
+
+    /**
+     * @return a builder with every adapter registered, for callers that need other
+     * settings such as serializeNulls
+     */
+    public static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(ChessPosition.class, ChessJson.POSITION)
+                .registerTypeAdapter(ChessPiece.class, ChessJson.PIECE)
+                .registerTypeAdapter(ChessMove.class, ChessJson.MOVE)
+                .registerTypeAdapter(ChessBoard.class, ChessJson.BOARD)
+                .registerTypeAdapter(ChessGame.class, ChessJson.GAME)
+                .registerTypeAdapter(GameData.class, GAME_DATA)
+                .registerTypeAdapterFactory(MESSAGES);
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+
+    public static String toJson(Object value) {
+        return GSON.toJson(value);
+    }
+
+    public static <T> T fromJson(String json, Class<T> type) {
+        return GSON.fromJson(json, type);
+    }
+
+    public static <T> T fromJson(Reader json, Class<T> type) {
+        return GSON.fromJson(json, type);
+    }
+
+    /**
+     * Decodes a command from a client in a single strict pass. Anything but exactly
+     * one command object with a known commandType is rejected, so hostile input costs
+     * no more than reading it once.
+     * @throws IOException if the message is malformed
+     */
+    public static UserGameCommand readCommand(String json) throws IOException {
+        var in = new JsonReader(new StringReader(json));
+        try {
+            UserGameCommand command = COMMAND.read(in);
+            if (command == null || command.getCommandType() == null) {
+                throw new MalformedJsonException("Missing or unknown commandType");
+            }
+            if (in.peek() != JsonToken.END_DOCUMENT) {
+                throw new MalformedJsonException("Unexpected data after the command");
+            }
+            return command;
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new MalformedJsonException(e.getMessage());
+        }
+    }
+
+    private static final TypeAdapter<UserGameCommand> COMMAND = commandAdapter(UserGameCommand.class);
+
+    private static TypeAdapter<UserGameCommand> commandAdapter(Class<? extends UserGameCommand> requested) {
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter out, UserGameCommand command) throws IOException {
+                if (command == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                switch (command) {
+                    case JoinPlayer join -> {
+                        out.name("gameID").value(join.getGameID());
+                        out.name("playerColor").value(join.getPlayerColor() == null ? null : join.getPlayerColor().name());
+                        out.name("username").value(join.getUsername());
+                    }
+                    case JoinObserver observe -> {
+                        out.name("gameID").value(observe.getGameID());
+                        out.name("username").value(observe.getUsername());
+                    }
+                    case MakeMove makeMove -> {
+                        out.name("gameID").value(makeMove.getGameID());
+                        out.name("move");
+                        ChessJson.MOVE.write(out, makeMove.getMove());
+                        out.name("username").value(makeMove.getUsername());
+                    }
+                    case Leave leave -> {
+                        out.name("gameID").value(leave.getGameID());
+                        out.name("username").value(leave.getUsername());
+                    }
+                    case Resign resign -> {
+                        out.name("gameID").value(resign.getGameID());
+                        out.name("username").value(resign.getUsername());
+                    }
+                    case Resume resume -> {
+                        out.name("gameID").value(resume.getGameID());
+                        out.name("username").value(resume.getUsername());
+                        out.name("lastSequence").value(resume.getLastSequence());
+                    }
+                    default -> {
+                    }
+                }
+                var commandType = command.getCommandType();
+                out.name("commandType").value(commandType == null ? null : commandType.name());
+                out.name("authToken").value(command.getAuthString());
+                out.endObject();
+            }
+
+            @Override
+            public UserGameCommand read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                UserGameCommand.CommandType commandType = null;
+                String authToken = null;
+                String username = null;
+                int gameID = 0;
+                ChessGame.TeamColor playerColor = null;
+                ChessMove move = null;
+                long lastSequence = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "commandType" -> commandType = ChessJson.readEnum(in, UserGameCommand.CommandType.class);
+                        case "authToken" -> authToken = nextString(in);
+                        case "username" -> username = nextString(in);
+                        case "gameID" -> gameID = in.nextInt();
+                        case "playerColor" -> playerColor = ChessJson.readEnum(in, ChessGame.TeamColor.class);
+                        case "move" -> move = ChessJson.MOVE.read(in);
+                        case "lastSequence" -> lastSequence = in.nextLong();
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+
+                var authData = new AuthData(authToken, username);
+                Class<? extends UserGameCommand> type = requested;
+                if (type == UserGameCommand.class && commandType != null) {
+                    type = switch (commandType) {
+                        case JOIN_PLAYER -> JoinPlayer.class;
+                        case JOIN_OBSERVER -> JoinObserver.class;
+                        case MAKE_MOVE -> MakeMove.class;
+                        case LEAVE -> Leave.class;
+                        case RESIGN -> Resign.class;
+                        case RESUME -> Resume.class;
+                    };
+                }
+                UserGameCommand command;
+                if (type == JoinPlayer.class) {
+                    command = new JoinPlayer(authData, gameID, playerColor);
+                } else if (type == JoinObserver.class) {
+                    command = new JoinObserver(authData, gameID);
+                } else if (type == MakeMove.class) {
+                    command = new MakeMove(authData, gameID, move);
+                } else if (type == Leave.class) {
+                    command = new Leave(authData, gameID);
+                } else if (type == Resign.class) {
+                    command = new Resign(authData, gameID);
+                } else if (type == Resume.class) {
+                    command = new Resume(authData, gameID, lastSequence);
+                } else {
+                    command = new UserGameCommand(authToken);
+                }
+                command.setCommandType(commandType);
+                return command;
+            }
+        };
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
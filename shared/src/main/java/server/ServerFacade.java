@@ -1,8 +1,8 @@
 package server;
 
-import com.google.gson.Gson;
 import exception.ResponseException;
 import model.*;
+import serialization.Serializer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -11,9 +11,16 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.util.zip.GZIPInputStream;
 
 public class ServerFacade {
     private final String serverUrl;
+    private volatile CachedListing cachedListing;
+
+    /**
+     * The last page listed, replayed when the server says the lobby hasn't changed
+     */
+    private record CachedListing(String path, String etag, GameList games) {}
 
     public ServerFacade(String url) {
         this.serverUrl = url;
@@ -35,8 +42,34 @@ public class ServerFacade {
     }
 
     public GameList listGames(String authToken) throws ResponseException {
-        var path = "/game";
-        return makeRequest("GET", path, authToken, null, GameList.class);
+        return listGames(authToken, GameQuery.firstPage());
+    }
+
+    /**
+     * Fetches one page. Pass the returned nextCursor to query.after for the next one.
+     * Asking for the same page again costs the server no work unless the lobby changed.
+     */
+    public GameList listGames(String authToken, GameQuery query) throws ResponseException {
+        var path = "/game" + query.toQueryString();
+        var cached = cachedListing;
+        try {
+            HttpURLConnection http = openConnection("GET", path);
+            writeHeader(authToken, http);
+            if (cached != null && cached.path().equals(path)) {
+                http.addRequestProperty("If-None-Match", cached.etag());
+            }
+            http.connect();
+            if (cached != null && http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return cached.games();
+            }
+            throwIfNotSuccessful(http);
+            GameList games = readBody(http, GameList.class);
+            String etag = http.getHeaderField("ETag");
+            cachedListing = etag == null ? null : new CachedListing(path, etag, games);
+            return games;
+        } catch (Exception ex) {
+            throw new ResponseException(500, ex.getMessage());
+        }
     }
 
     public void joinGame(JoinInformation joinInformation, String authToken) throws ResponseException {
@@ -56,10 +89,7 @@ public class ServerFacade {
 
     public <T> T makeRequest(String method, String path, String authToken, Object request, Class<T> responseClass) throws ResponseException {
         try {
-            URL url = (new URI(serverUrl + path)).toURL();
-            HttpURLConnection http = (HttpURLConnection) url.openConnection();
-            http.setRequestMethod(method);
-            http.setDoOutput(true);
+            HttpURLConnection http = openConnection(method, path);
 
             writeHeader(authToken, http);
             writeBody(request, http);
@@ -71,7 +101,16 @@ public class ServerFacade {
         }
     }
 
+    private HttpURLConnection openConnection(String method, String path) throws Exception {
+        URL url = (new URI(serverUrl + path)).toURL();
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        http.setRequestMethod(method);
+        http.setDoOutput(true);
+        return http;
+    }
+
     private void writeHeader(String authToken, HttpURLConnection http) {
+        http.addRequestProperty("Accept-Encoding", "gzip");
         if (authToken != null) {
             http.addRequestProperty("authorization", authToken);
         }
@@ -80,7 +119,7 @@ public class ServerFacade {
     private static void writeBody(Object request, HttpURLConnection http) throws IOException {
         if (request != null) {
             http.addRequestProperty("Content-Type", "application/json");
-            String reqData = new Gson().toJson(request);
+            String reqData = Serializer.toJson(request);
             try (OutputStream reqBody = http.getOutputStream()) {
                 reqBody.write(reqData.getBytes());
             }
@@ -97,10 +136,11 @@ public class ServerFacade {
     private static <T> T readBody(HttpURLConnection http, Class<T> responseClass) throws IOException {
         T response = null;
         if (http.getContentLength() < 0) {
-            try (InputStream respBody = http.getInputStream()) {
+            try (InputStream respBody = "gzip".equals(http.getContentEncoding()) ?
+                    new GZIPInputStream(http.getInputStream()) : http.getInputStream()) {
                 InputStreamReader reader = new InputStreamReader(respBody);
                 if (responseClass != null) {
-                    response = new Gson().fromJson(reader, responseClass);
+                    response = Serializer.fromJson(reader, responseClass);
                 }
             }
         }
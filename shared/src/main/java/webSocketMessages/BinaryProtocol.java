@@ -0,0 +1,148 @@
+package webSocketMessages;
+
+import chess.ChessGame;
+import chess.PackedGame;
+import model.AuthData;
+import webSocketMessages.serverMessages.Error;
+import webSocketMessages.serverMessages.LoadGame;
+import webSocketMessages.serverMessages.Notification;
+import webSocketMessages.serverMessages.ServerMessage;
+import webSocketMessages.userCommands.*;
+
+import java.io.*;
+
+/**
+ * Compact binary frame format for WebSocket traffic, used instead of JSON when a
+ * client connects with ?protocol=chess-binary-1.
+ * <p>
+ * Every frame starts with a tag byte. Commands are tagged 0x10 + the command type
+ * ordinal and continue with the game ID (int), auth token and username (UTF), then:
+ * <ul>
+ *     <li>JOIN_PLAYER: team color ordinal, or 0xFF for none (byte)</li>
+ *     <li>MAKE_MOVE: packed move (short)</li>
+ *     <li>RESUME: last seen sequence number (long)</li>
+ * </ul>
+ * Server messages are tagged 0x20 + the message type ordinal and continue with the
+ * sequence number (long), then either a packed game (LOAD_GAME) or a UTF string.
+ */
+public class BinaryProtocol {
+    public static final String NAME = "chess-binary-1";
+
+    private static final int COMMAND_TAG = 0x10;
+    private static final int SERVER_MESSAGE_TAG = 0x20;
+    private static final int NONE = 0xFF;
+
+    private BinaryProtocol() {
+    }
+
+    public static byte[] encodeCommand(UserGameCommand command) throws IOException {
+        var bytes = new ByteArrayOutputStream(64);
+        var out = new DataOutputStream(bytes);
+        out.writeByte(COMMAND_TAG + command.getCommandType().ordinal());
+
+        switch (command) {
+            case JoinPlayer join -> {
+                writeHeader(out, join.getGameID(), command, join.getUsername());
+                out.writeByte(join.getPlayerColor() == null ? NONE : join.getPlayerColor().ordinal());
+            }
+            case JoinObserver observe -> writeHeader(out, observe.getGameID(), command, observe.getUsername());
+            case MakeMove move -> {
+                writeHeader(out, move.getGameID(), command, move.getUsername());
+                out.writeShort(PackedGame.packMove(move.getMove()));
+            }
+            case Leave leave -> writeHeader(out, leave.getGameID(), command, leave.getUsername());
+            case Resign resign -> writeHeader(out, resign.getGameID(), command, resign.getUsername());
+            case Resume resume -> {
+                writeHeader(out, resume.getGameID(), command, resume.getUsername());
+                out.writeLong(resume.getLastSequence());
+            }
+            default -> throw new IOException("Unsupported command: " + command.getClass().getSimpleName());
+        }
+        return bytes.toByteArray();
+    }
+
+    public static UserGameCommand decodeCommand(byte[] payload, int offset, int length) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(payload, offset, length));
+        var commandTypes = UserGameCommand.CommandType.values();
+        int type = in.readUnsignedByte() - COMMAND_TAG;
+        if (type < 0 || type >= commandTypes.length) {
+            throw new IOException("Unknown command tag");
+        }
+
+        int gameID = in.readInt();
+        var authData = new AuthData(readString(in), readString(in));
+        var commandType = commandTypes[type];
+        try {
+            UserGameCommand command = switch (commandType) {
+                case JOIN_PLAYER -> new JoinPlayer(authData, gameID, readEnum(in, ChessGame.TeamColor.values()));
+                case JOIN_OBSERVER -> new JoinObserver(authData, gameID);
+                case MAKE_MOVE -> new MakeMove(authData, gameID, PackedGame.unpackMove(in.readUnsignedShort()));
+                case LEAVE -> new Leave(authData, gameID);
+                case RESIGN -> new Resign(authData, gameID);
+                case RESUME -> new Resume(authData, gameID, in.readLong());
+            };
+            command.setCommandType(commandType);
+            return command;
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    public static byte[] encodeServerMessage(ServerMessage message) throws IOException {
+        var bytes = new ByteArrayOutputStream(64);
+        var out = new DataOutputStream(bytes);
+        out.writeByte(SERVER_MESSAGE_TAG + message.getServerMessageType().ordinal());
+        out.writeLong(message.getSequence());
+
+        switch (message.getServerMessageType()) {
+            case LOAD_GAME -> PackedGame.writeGame(((LoadGame) message).getGame(), out);
+            case ERROR -> writeString(out, ((Error) message).getErrorMessage());
+            case NOTIFICATION -> writeString(out, ((Notification) message).getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ServerMessage decodeServerMessage(byte[] payload, int offset, int length) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(payload, offset, length));
+        var messageTypes = ServerMessage.ServerMessageType.values();
+        int type = in.readUnsignedByte() - SERVER_MESSAGE_TAG;
+        if (type < 0 || type >= messageTypes.length) {
+            throw new IOException("Unknown server message tag");
+        }
+
+        var messageType = messageTypes[type];
+        long sequence = in.readLong();
+        ServerMessage message = switch (messageType) {
+            case LOAD_GAME -> new LoadGame(messageType, PackedGame.readGame(in));
+            case ERROR -> new Error(messageType, readString(in));
+            case NOTIFICATION -> new Notification(messageType, readString(in));
+        };
+        message.setSequence(sequence);
+        return message;
+    }
+
+    private static void writeHeader(DataOutputStream out, int gameID, UserGameCommand command, String username) throws IOException {
+        out.writeInt(gameID);
+        writeString(out, command.getAuthString());
+        writeString(out, username);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeUTF(value == null ? "" : value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        String value = in.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <T> T readEnum(DataInputStream in, T[] values) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal == NONE) {
+            return null;
+        } else if (ordinal >= values.length) {
+            throw new IOException("Invalid enum ordinal: " + ordinal);
+        }
+        return values[ordinal];
+    }
+}
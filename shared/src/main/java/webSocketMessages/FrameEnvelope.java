@@ -0,0 +1,141 @@
+package webSocketMessages;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary frame that carries one or more server messages, optionally deflated.
+ * Clients opt in when they open the socket with ?deflate=true (large messages are
+ * compressed) and/or ?batch=true (messages produced by one command share a frame).
+ * <p>
+ * The frame starts with a tag byte, 0x30, with bit 0 set if the rest of the frame is
+ * raw deflate data. The (inflated) body is an unsigned short entry count followed by
+ * each entry: a kind byte (0 for a JSON message, 1 for a {@link BinaryProtocol}
+ * message), its length (int) and its bytes.
+ */
+public class FrameEnvelope {
+    public static final String DEFLATE_PARAM = "deflate";
+    public static final String BATCH_PARAM = "batch";
+
+    private static final int TAG = 0x30;
+    private static final int DEFLATED = 0x01;
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final int MAX_INFLATED_BYTES = 1 << 20;
+
+    public record Entry(boolean text, byte[] payload) {
+        public static Entry of(String json) {
+            return new Entry(true, json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String asText() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    private FrameEnvelope() {
+    }
+
+    public static boolean isEnvelope(byte[] frame, int offset, int length) {
+        return length > 0 && (frame[offset] & ~DEFLATED & 0xFF) == TAG;
+    }
+
+    /**
+     * @param deflateMinBytes compress the body if it is at least this long, or -1 to never compress
+     */
+    public static byte[] encode(List<Entry> entries, int deflateMinBytes) throws IOException {
+        if (entries.isEmpty() || entries.size() > MAX_ENTRIES) {
+            throw new IOException("Invalid envelope size: " + entries.size());
+        }
+
+        var body = new ByteArrayOutputStream(64);
+        var out = new DataOutputStream(body);
+        out.writeShort(entries.size());
+        for (var entry : entries) {
+            out.writeByte(entry.text() ? 0 : 1);
+            out.writeInt(entry.payload().length);
+            out.write(entry.payload());
+        }
+
+        var frame = new ByteArrayOutputStream(body.size() + 1);
+        if (deflateMinBytes >= 0 && body.size() >= deflateMinBytes) {
+            frame.write(TAG | DEFLATED);
+            deflate(body.toByteArray(), frame);
+        } else {
+            frame.write(TAG);
+            body.writeTo(frame);
+        }
+        return frame.toByteArray();
+    }
+
+    public static List<Entry> decode(byte[] frame, int offset, int length) throws IOException {
+        if (!isEnvelope(frame, offset, length)) {
+            throw new IOException("Not an envelope frame");
+        }
+
+        byte[] body;
+        if ((frame[offset] & DEFLATED) != 0) {
+            body = inflate(frame, offset + 1, length - 1);
+        } else {
+            body = new byte[length - 1];
+            System.arraycopy(frame, offset + 1, body, 0, body.length);
+        }
+
+        var in = new DataInputStream(new ByteArrayInputStream(body));
+        int count = in.readUnsignedShort();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean text = in.readUnsignedByte() == 0;
+            int size = in.readInt();
+            if (size < 0 || size > in.available()) {
+                throw new IOException("Truncated envelope entry");
+            }
+            byte[] payload = new byte[size];
+            in.readFully(payload);
+            entries.add(new Entry(text, payload));
+        }
+        return entries;
+    }
+
+    private static void deflate(byte[] input, OutputStream out) throws IOException {
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int offset, int length) throws IOException {
+        var inflater = new Inflater(true);
+        try {
+            inflater.setInput(input, offset, length);
+            var out = new ByteArrayOutputStream(length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated deflate data");
+                }
+                out.write(buffer, 0, inflated);
+                if (out.size() > MAX_INFLATED_BYTES) {
+                    throw new IOException("Envelope is too large");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException ex) {
+            throw new IOException(ex.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
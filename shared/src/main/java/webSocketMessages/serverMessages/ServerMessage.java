@@ -10,6 +10,7 @@ import java.util.Objects;
  */
 public class ServerMessage {
     ServerMessageType serverMessageType;
+    long sequence;
 
     public enum ServerMessageType {
         LOAD_GAME,
@@ -25,6 +26,18 @@ public class ServerMessage {
         return this.serverMessageType;
     }
 
+    /**
+     * @return the game event number this message carries, used by clients to RESUME
+     * after a dropped connection
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
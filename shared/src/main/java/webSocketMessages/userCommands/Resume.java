@@ -0,0 +1,28 @@
+package webSocketMessages.userCommands;
+
+import model.AuthData;
+
+public class Resume extends UserGameCommand {
+    private final int gameID;
+    private final String username;
+    private final long lastSequence;
+
+    public Resume(AuthData authData, int gameID, long lastSequence) {
+        super(authData.authToken());
+        this.gameID = gameID;
+        this.username = authData.username();
+        this.lastSequence = lastSequence;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+}
@@ -0,0 +1,83 @@
+package protocolTests;
+
+import chess.*;
+import model.AuthData;
+import org.junit.jupiter.api.Test;
+import webSocketMessages.BinaryProtocol;
+import webSocketMessages.serverMessages.LoadGame;
+import webSocketMessages.serverMessages.Notification;
+import webSocketMessages.serverMessages.ServerMessage;
+import webSocketMessages.userCommands.MakeMove;
+import webSocketMessages.userCommands.Resume;
+import webSocketMessages.userCommands.UserGameCommand;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryProtocolTest {
+    private final AuthData authData = new AuthData("0b9c2b7e-5d0e-4a47-9d0b-3f6f3c2e8a11", "magnus");
+
+    @Test
+    void makeMoveRoundTrip() throws IOException {
+        var move = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN);
+        var command = new MakeMove(authData, 42, move);
+        command.setCommandType(UserGameCommand.CommandType.MAKE_MOVE);
+
+        byte[] frame = BinaryProtocol.encodeCommand(command);
+        var decoded = (MakeMove) BinaryProtocol.decodeCommand(frame, 0, frame.length);
+
+        assertEquals(command, decoded);
+        assertEquals(42, decoded.getGameID());
+        assertEquals("magnus", decoded.getUsername());
+        assertEquals(move, decoded.getMove());
+    }
+
+    @Test
+    void resumeRoundTrip() throws IOException {
+        var command = new Resume(authData, 7, 1234567890123L);
+        command.setCommandType(UserGameCommand.CommandType.RESUME);
+
+        byte[] frame = BinaryProtocol.encodeCommand(command);
+        var decoded = (Resume) BinaryProtocol.decodeCommand(frame, 0, frame.length);
+
+        assertEquals(1234567890123L, decoded.getLastSequence());
+    }
+
+    @Test
+    void loadGameRoundTrip() throws IOException, InvalidMoveException {
+        var game = new ChessGame();
+        var board = new ChessBoard();
+        board.resetBoard();
+        game.setBoard(board);
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+
+        var message = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, game);
+        message.setSequence(9);
+        byte[] frame = BinaryProtocol.encodeServerMessage(message);
+        var decoded = (LoadGame) BinaryProtocol.decodeServerMessage(frame, 0, frame.length);
+
+        assertEquals(9, decoded.getSequence());
+        assertEquals(game.getBoard(), decoded.getGame().getBoard());
+        assertEquals(ChessGame.TeamColor.BLACK, decoded.getGame().getTeamTurn());
+        assertFalse(decoded.getGame().getGameIsOver());
+    }
+
+    @Test
+    void notificationRoundTrip() throws IOException {
+        var message = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "White is in check");
+        byte[] frame = BinaryProtocol.encodeServerMessage(message);
+        var decoded = (Notification) BinaryProtocol.decodeServerMessage(frame, 0, frame.length);
+
+        assertEquals("White is in check", decoded.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedFrame() throws IOException {
+        var command = new Resume(authData, 7, 3);
+        command.setCommandType(UserGameCommand.CommandType.RESUME);
+        byte[] frame = BinaryProtocol.encodeCommand(command);
+
+        assertThrows(IOException.class, () -> BinaryProtocol.decodeCommand(frame, 0, frame.length - 4));
+    }
+}
@@ -0,0 +1,62 @@
+package protocolTests;
+
+import org.junit.jupiter.api.Test;
+import webSocketMessages.FrameEnvelope;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameEnvelopeTest {
+
+    @Test
+    void batchRoundTrip() throws IOException {
+        var entries = List.of(
+                FrameEnvelope.Entry.of("{\"serverMessageType\":\"NOTIFICATION\",\"message\":\"White is in check\"}"),
+                new FrameEnvelope.Entry(false, new byte[]{0x20, 1, 2, 3}));
+
+        byte[] frame = FrameEnvelope.encode(entries, -1);
+        assertTrue(FrameEnvelope.isEnvelope(frame, 0, frame.length));
+
+        var decoded = FrameEnvelope.decode(frame, 0, frame.length);
+        assertEquals(2, decoded.size());
+        assertTrue(decoded.get(0).text());
+        assertEquals(entries.get(0).asText(), decoded.get(0).asText());
+        assertFalse(decoded.get(1).text());
+        assertArrayEquals(entries.get(1).payload(), decoded.get(1).payload());
+    }
+
+    @Test
+    void largeMessagesAreDeflated() throws IOException {
+        char[] board = new char[4000];
+        Arrays.fill(board, 'p');
+        var entries = List.of(FrameEnvelope.Entry.of(new String(board)));
+
+        byte[] frame = FrameEnvelope.encode(entries, 512);
+        assertTrue(frame.length < 200);
+
+        var decoded = FrameEnvelope.decode(frame, 0, frame.length);
+        assertEquals(new String(board), decoded.get(0).asText());
+    }
+
+    @Test
+    void smallMessagesAreNotDeflated() throws IOException {
+        var entries = List.of(FrameEnvelope.Entry.of("short"));
+        byte[] frame = FrameEnvelope.encode(entries, 512);
+        assertEquals(1 + 2 + 1 + 4 + 5, frame.length);
+    }
+
+    @Test
+    void protocolFramesAreNotEnvelopes() {
+        assertFalse(FrameEnvelope.isEnvelope(new byte[]{0x20, 0}, 0, 2));
+        assertFalse(FrameEnvelope.isEnvelope(new byte[]{0x10, 0}, 0, 2));
+    }
+
+    @Test
+    void truncatedFrameIsRejected() throws IOException {
+        byte[] frame = FrameEnvelope.encode(List.of(FrameEnvelope.Entry.of("hello")), -1);
+        assertThrows(IOException.class, () -> FrameEnvelope.decode(frame, 0, frame.length - 2));
+    }
+}
@@ -0,0 +1,83 @@
+package protocolTests;
+
+import chess.*;
+import com.google.gson.Gson;
+import model.GameCodec;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameCodecTest {
+    // A fixed opening with captures, checks and both sides castling
+    private static final List<ChessMove> SCRIPTED_GAME = List.of(
+            move("e2", "e4"), move("e7", "e5"), move("g1", "f3"), move("b8", "c6"),
+            move("f1", "c4"), move("f8", "c5"), move("c2", "c3"), move("g8", "f6"),
+            move("d2", "d4"), move("e5", "d4"), move("c3", "d4"), move("c5", "b4"),
+            move("c1", "d2"), move("b4", "d2"), move("b1", "d2"), move("d7", "d5"),
+            move("e4", "d5"), move("f6", "d5"), move("d1", "b3"), move("c6", "e7"),
+            move("e1", "g1"), move("e8", "g8"), move("f1", "e1"), move("c7", "c6"));
+
+    @Test
+    void gameDataRoundTrips() throws IOException, InvalidMoveException {
+        var game = newGame();
+        for (var move : SCRIPTED_GAME) {
+            game.makeMove(move);
+        }
+        var gameData = new GameData(42, "white", null, "casual", game);
+
+        byte[] bytes = GameCodec.encode(gameData);
+        var decoded = GameCodec.decode(bytes);
+
+        assertEquals(42, decoded.getGameID());
+        assertEquals("white", decoded.getWhiteUsername());
+        assertNull(decoded.getBlackUsername());
+        assertEquals("casual", decoded.getGameName());
+        assertEquals(game.getBoard(), decoded.getGame().getBoard());
+        assertEquals(game.getTeamTurn(), decoded.getGame().getTeamTurn());
+        assertEquals(SCRIPTED_GAME.size(), decoded.getGame().getPly());
+
+        int jsonBytes = new Gson().toJson(gameData).getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(bytes.length * 10 < jsonBytes, bytes.length + " bytes vs " + jsonBytes + " as JSON");
+    }
+
+    @Test
+    void decodesLegacyFormats() throws IOException {
+        var game = newGame();
+        var legacySnapshot = new ByteArrayOutputStream();
+        PackedGame.writeGame(game, new DataOutputStream(legacySnapshot));
+        assertEquals(game.getBoard(), GameCodec.decodeGame(legacySnapshot.toByteArray()).getBoard());
+
+        var gameData = new GameData(7, null, "black", "old", game);
+        byte[] json = new Gson().toJson(gameData).getBytes(StandardCharsets.UTF_8);
+        var decoded = GameCodec.decode(json);
+        assertEquals("black", decoded.getBlackUsername());
+        assertEquals(game.getBoard(), decoded.getGame().getBoard());
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] bytes = GameCodec.encodeGame(newGame());
+        bytes[0] = 99;
+        assertThrows(IOException.class, () -> GameCodec.decodeGame(bytes));
+    }
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(new ChessPosition(from.charAt(1) - '0', from.charAt(0) - 'a' + 1),
+                new ChessPosition(to.charAt(1) - '0', to.charAt(0) - 'a' + 1), null);
+    }
+
+    private static ChessGame newGame() {
+        var game = new ChessGame();
+        var board = new ChessBoard();
+        board.resetBoard();
+        game.setBoard(board);
+        return game;
+    }
+}
@@ -0,0 +1,55 @@
+package protocolTests;
+
+import chess.ChessGame;
+import model.GameData;
+import model.GameQuery;
+import model.GameSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameQueryTest {
+
+    @Test
+    void pagesFollowCursor() {
+        var games = new ArrayList<GameData>();
+        for (int id = 1; id <= 7; id++) {
+            games.add(new GameData(id, id % 2 == 0 ? "white" : null, null, "game" + id, new ChessGame()));
+        }
+
+        var query = new GameQuery(null, 3, false, null, null);
+        var seen = new ArrayList<Integer>();
+        var page = query.page(games);
+        while (true) {
+            page.games().forEach(summary -> seen.add(summary.gameID()));
+            if (page.nextCursor() == null) {
+                break;
+            }
+            query = query.after(page.nextCursor());
+            page = query.page(games);
+        }
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), seen);
+    }
+
+    @Test
+    void filtersByPlayerAndOpenSeat() {
+        var games = List.of(
+                new GameData(1, "alice", "bob", "full", new ChessGame()),
+                new GameData(2, "alice", null, "open", new ChessGame()),
+                new GameData(3, null, "carol", "other", new ChessGame()));
+
+        var mine = new GameQuery(null, 10, true, "alice", null).page(games);
+        assertEquals(List.of(2), mine.games().stream().map(GameSummary::gameID).toList());
+        assertNull(mine.nextCursor());
+    }
+
+    @Test
+    void clampsLimitAndEncodesQuery() {
+        var query = new GameQuery(5, 10_000, true, "a b", "ACTIVE");
+        assertEquals(GameQuery.MAX_LIMIT, query.limit());
+        assertEquals("?limit=200&after=5&open=true&player=a+b&status=ACTIVE", query.toQueryString());
+    }
+}
@@ -0,0 +1,56 @@
+package protocolTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedGameTest {
+
+    @Test
+    void snapshotPlusMoveLogRebuildsGame() throws IOException, InvalidMoveException {
+        var moves = List.of(
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null),
+                new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null),
+                new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null),
+                new ChessMove(new ChessPosition(8, 2), new ChessPosition(6, 3), null),
+                new ChessMove(new ChessPosition(1, 6), new ChessPosition(4, 3), null),
+                new ChessMove(new ChessPosition(8, 7), new ChessPosition(6, 6), null),
+                new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 7), null));
+
+        var live = newGame();
+        for (var move : moves) {
+            live.makeMove(move);
+        }
+        assertEquals(moves.size(), live.getPly());
+
+        var snapshotSource = newGame();
+        for (var move : moves.subList(0, 4)) {
+            snapshotSource.makeMove(move);
+        }
+        var bytes = new ByteArrayOutputStream();
+        PackedGame.writeGame(snapshotSource, new DataOutputStream(bytes));
+        assertEquals(PackedGame.GAME_BYTES, bytes.size());
+
+        var rebuilt = PackedGame.readGame(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        rebuilt.setPly(4);
+        for (var move : moves.subList(4, moves.size())) {
+            rebuilt.makeMove(PackedGame.unpackMove(PackedGame.packMove(move)));
+        }
+
+        assertEquals(live.getBoard(), rebuilt.getBoard());
+        assertEquals(live.getTeamTurn(), rebuilt.getTeamTurn());
+        assertEquals(live.getPly(), rebuilt.getPly());
+    }
+
+    private static ChessGame newGame() {
+        var game = new ChessGame();
+        var board = new ChessBoard();
+        board.resetBoard();
+        game.setBoard(board);
+        return game;
+    }
+}
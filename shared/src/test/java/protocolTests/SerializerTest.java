@@ -0,0 +1,119 @@
+package protocolTests;
+
+import chess.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import model.AuthData;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import serialization.Serializer;
+import webSocketMessages.serverMessages.Error;
+import webSocketMessages.serverMessages.LoadGame;
+import webSocketMessages.serverMessages.Notification;
+import webSocketMessages.serverMessages.ServerMessage;
+import webSocketMessages.userCommands.JoinPlayer;
+import webSocketMessages.userCommands.MakeMove;
+import webSocketMessages.userCommands.Resume;
+import webSocketMessages.userCommands.UserGameCommand;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerializerTest {
+    private final AuthData authData = new AuthData("0b9c2b7e-5d0e-4a47-9d0b-3f6f3c2e8a11", "magnus");
+
+    @Test
+    void gameMatchesReflectiveJson() throws InvalidMoveException {
+        var game = playedGame();
+        var gameData = new GameData(42, "white", null, "casual", game, 3);
+
+        String json = Serializer.toJson(gameData);
+        assertEquals(JsonParser.parseString(new Gson().toJson(gameData)), JsonParser.parseString(json));
+
+        var decoded = Serializer.fromJson(new Gson().toJson(gameData), GameData.class);
+        assertEquals(42, decoded.getGameID());
+        assertEquals(3, decoded.getVersion());
+        assertNull(decoded.getBlackUsername());
+        assertEquals(game.getBoard(), decoded.getGame().getBoard());
+        assertEquals(game.getTeamTurn(), decoded.getGame().getTeamTurn());
+        assertEquals(game.getPly(), decoded.getGame().getPly());
+        assertEquals(json, Serializer.toJson(decoded));
+    }
+
+    @Test
+    void serverMessagesDecodeAsTheirType() throws InvalidMoveException {
+        var loadGame = new LoadGame(ServerMessage.ServerMessageType.LOAD_GAME, playedGame());
+        loadGame.setSequence(17);
+        var error = new Error(ServerMessage.ServerMessageType.ERROR, "Error: not your turn");
+        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "bob joined");
+
+        for (ServerMessage message : new ServerMessage[]{loadGame, error, notification}) {
+            String json = Serializer.toJson(message);
+            assertEquals(JsonParser.parseString(new Gson().toJson(message)), JsonParser.parseString(json));
+            var decoded = Serializer.fromJson(json, ServerMessage.class);
+            assertEquals(message.getClass(), decoded.getClass());
+            assertEquals(message.getSequence(), decoded.getSequence());
+        }
+
+        var decoded = (LoadGame) Serializer.fromJson(Serializer.toJson(loadGame), ServerMessage.class);
+        assertEquals(loadGame.getGame().getBoard(), decoded.getGame().getBoard());
+        assertEquals("Error: not your turn", ((Error) Serializer.fromJson(Serializer.toJson(error), ServerMessage.class)).getErrorMessage());
+    }
+
+    @Test
+    void commandsMatchReflectiveJson() {
+        var move = new MakeMove(authData, 42, new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN));
+        move.setCommandType(UserGameCommand.CommandType.MAKE_MOVE);
+        var join = new JoinPlayer(authData, 42, ChessGame.TeamColor.BLACK);
+        join.setCommandType(UserGameCommand.CommandType.JOIN_PLAYER);
+        var resume = new Resume(authData, 42, 1234567890123L);
+        resume.setCommandType(UserGameCommand.CommandType.RESUME);
+
+        for (UserGameCommand command : new UserGameCommand[]{move, join, resume}) {
+            String json = Serializer.toJson(command);
+            assertEquals(JsonParser.parseString(new Gson().toJson(command)), JsonParser.parseString(json));
+            assertEquals(command.getCommandType(), Serializer.fromJson(json, UserGameCommand.class).getCommandType());
+            assertEquals(command, Serializer.fromJson(new Gson().toJson(command), command.getClass()));
+        }
+
+        var decoded = Serializer.fromJson(Serializer.toJson(move), MakeMove.class);
+        assertEquals(move.getMove(), decoded.getMove());
+        assertEquals("magnus", decoded.getUsername());
+        assertEquals(1234567890123L, Serializer.fromJson(Serializer.toJson(resume), Resume.class).getLastSequence());
+    }
+
+    @Test
+    void readCommandPicksTheTypeInOnePass() throws IOException {
+        var command = Serializer.readCommand("{\"gameID\":9,\"move\":{\"startPosition\":{\"row\":2,\"col\":5}," +
+                "\"endPosition\":{\"row\":4,\"col\":5}},\"authToken\":\"token\",\"commandType\":\"MAKE_MOVE\"}");
+
+        var makeMove = assertInstanceOf(MakeMove.class, command);
+        assertEquals(9, makeMove.getGameID());
+        assertEquals("token", makeMove.getAuthString());
+        assertEquals(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), makeMove.getMove());
+
+        var resume = new Resume(authData, 42, 77);
+        resume.setCommandType(UserGameCommand.CommandType.RESUME);
+        assertEquals(resume, Serializer.readCommand(Serializer.toJson(resume)));
+    }
+
+    @Test
+    void readCommandRejectsMalformedInput() {
+        for (String json : new String[]{"", "[]", "{}", "{\"commandType\":\"SHUTDOWN\"}", "{\"commandType\":\"LEAVE\",\"gameID\":\"x\"}",
+                "{\"commandType\":\"LEAVE\"} {}", "{\"commandType\":\"LEAVE\",", "{commandType:LEAVE}"}) {
+            assertThrows(IOException.class, () -> Serializer.readCommand(json), json);
+        }
+    }
+
+    private static ChessGame playedGame() throws InvalidMoveException {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var game = new ChessGame();
+        game.setBoard(board);
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(1, 5), new ChessPosition(2, 5), null));
+        return game;
+    }
+}